@@ -0,0 +1,62 @@
+package com.vgrazi.regextester.action;
+
+import java.util.SplittableRandom;
+
+/**
+ * The texts and patterns the benchmarks run over. The texts are log lines, mostly INFO lines, with ERROR lines
+ * mixed in at the rate of the density; every pattern shape looks for the ERROR lines, so the density is the
+ * match density. The texts are generated from a fixed seed, so every run sees the same input
+ */
+final class BenchmarkCorpus {
+    // 1 line in 100 is an ERROR line
+    static final String SPARSE = "sparse";
+    // 1 line in 2 is an ERROR line
+    static final String DENSE = "dense";
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * @param size    the length of the text, in characters
+     * @param density {@link #SPARSE} or {@link #DENSE}
+     */
+    static String logText(int size, String density) {
+        double errorRate = switch (density) {
+            case SPARSE -> 0.01;
+            case DENSE -> 0.5;
+            default -> throw new IllegalArgumentException("Unknown density " + density);
+        };
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder text = new StringBuilder(size + 128);
+        while (text.length() < size) {
+            text.append("2024-03-").append(10 + random.nextInt(20)).append(" 12:")
+                    .append(10 + random.nextInt(50)).append(':').append(10 + random.nextInt(50))
+                    .append('.').append(100 + random.nextInt(900));
+            if (random.nextDouble() < errorRate) {
+                text.append(" ERROR [worker-").append(random.nextInt(16)).append("] request failed code=E")
+                        .append(1000 + random.nextInt(9000));
+            } else {
+                text.append(" INFO  [worker-").append(random.nextInt(16)).append("] request ok status=200 took=")
+                        .append(random.nextInt(500)).append("ms");
+            }
+            text.append(" user=u").append(random.nextInt(100_000)).append('\n');
+        }
+        text.setLength(size);
+        return text.toString();
+    }
+
+    /**
+     * @param shape literal, class, groups, alternation or lazy
+     * @return the pattern of that shape
+     */
+    static String pattern(String shape) {
+        return switch (shape) {
+            case "literal" -> "ERROR";
+            case "class" -> "E\\d{4}";
+            case "groups" -> "ERROR \\[(\\w+)-(\\d+)\\] .*?code=(E\\d+)";
+            case "alternation" -> "ERROR|FATAL|PANIC";
+            case "lazy" -> "ERROR.*?user=(u\\d+)";
+            default -> throw new IllegalArgumentException("Unknown shape " + shape);
+        };
+    }
+}
@@ -0,0 +1,100 @@
+package com.vgrazi.regextester.action;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each radio-button command through {@link Calculator#calculate}, as a render runs it on the match worker.
+ * Consecutive invocations alternate between two texts that differ in their first character, as consecutive edits
+ * do, so that the {@link MatchSnapshot} remembered from the previous invocation does not turn the scan into a lookup.
+ * The match budget is lifted, so that the largest texts are matched to the end
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true",
+        "-Dregextester.match.millis=3600000", "-Dregextester.match.steps=9223372036854775807"})
+public class CalculatorBenchmark {
+    @Param({"1024", "1048576", "104857600"})
+    public int size;
+
+    @Param({BenchmarkCorpus.SPARSE, BenchmarkCorpus.DENSE})
+    public String density;
+
+    @Param({"literal", "class", "groups", "alternation", "lazy"})
+    public String shape;
+
+    private String regex;
+    private String[] texts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        regex = BenchmarkCorpus.pattern(shape);
+        String text = BenchmarkCorpus.logText(size, density);
+        texts = new String[]{text, '#' + text.substring(1)};
+    }
+
+    private MatchResult calculate(String actionCommand, String replacement) {
+        next ^= 1;
+        return Calculator.calculate(new MatchRequest(next, regex, 0, actionCommand, texts[next]).withReplacement(replacement));
+    }
+
+    @Benchmark
+    public MatchResult find() {
+        return calculate("find", "");
+    }
+
+    @Benchmark
+    public MatchResult matches() {
+        return calculate("matches", "");
+    }
+
+    @Benchmark
+    public MatchResult lookingAt() {
+        return calculate("looking-at", "");
+    }
+
+    @Benchmark
+    public MatchResult split() {
+        return calculate("split", "");
+    }
+
+    @Benchmark
+    public MatchResult splitWithLimit() {
+        return calculate("split-with-limit", "10");
+    }
+
+    @Benchmark
+    public MatchResult splitWithDelimiters() {
+        return calculate("split-with-delimiters", "");
+    }
+
+    @Benchmark
+    public MatchResult replaceAll() {
+        return calculate("replace-all", "[$0]");
+    }
+
+    @Benchmark
+    public MatchResult replaceFirst() {
+        return calculate("replace-first", "[$0]");
+    }
+
+    @Benchmark
+    public MatchResult heatmap() {
+        return calculate("heatmap", "");
+    }
+}
@@ -0,0 +1,73 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.ColorRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The line feed counts behind every highlight range: counting a copied prefix per match, as {@link Utils#countLines}
+ * does, against the {@link LineIndex} lookups the render path makes, and the whole of
+ * {@link Calculator#processFindCommand(MatchSnapshot)}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LineCountBenchmark {
+    // the substring count is quadratic, so the sizes stop well short of the Calculator benchmark's
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    @Param({BenchmarkCorpus.SPARSE, BenchmarkCorpus.DENSE})
+    public String density;
+
+    private String text;
+    private MatchSnapshot snapshot;
+    private int[] starts;
+
+    @Setup
+    public void setUp() {
+        text = BenchmarkCorpus.logText(size, density);
+        snapshot = MatchSnapshot.scan(Pattern.compile("ERROR"), text);
+        starts = new int[snapshot.getMatchCount()];
+        for (int match = 0; match < starts.length; match++) {
+            starts[match] = snapshot.start(match, 0);
+        }
+    }
+
+    @Benchmark
+    public void countLinesOfPrefix(Blackhole blackhole) {
+        for (int start : starts) {
+            blackhole.consume(Utils.countLines(text.substring(0, start)));
+        }
+    }
+
+    @Benchmark
+    public void lineIndex(Blackhole blackhole) {
+        LineIndex index = LineIndex.of(text);
+        for (int start : starts) {
+            blackhole.consume(index.countLinesBefore(start));
+        }
+    }
+
+    @Benchmark
+    public List<ColorRange> processFindCommand() {
+        return Calculator.processFindCommand(snapshot);
+    }
+}
@@ -0,0 +1,54 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.ColorRange;
+import com.vgrazi.regextester.component.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Calculator#parseGroupRanges}, parsing the {@link GroupStructure} that the pattern pane builds once per
+ * edit, over patterns with more and more groups, mixing capturing, non-capturing and escaped parentheses, and the
+ * lookup of the group at the caret that it makes on every caret move. 2000 groups is a pattern of about 50 KB
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ParseGroupRangesBenchmark {
+    @Param({"10", "100", "1000", "2000"})
+    public int groups;
+
+    private String regex;
+    private GroupStructure structure;
+    private int caret;
+
+    @Setup
+    public void setUp() {
+        regex = "(\\w+)=(?:\\d+)\\(\\s*\\)".repeat(groups);
+        structure = GroupStructure.parse(regex, 0);
+    }
+
+    @Benchmark
+    public ColorRange[] parseGroupRanges() {
+        return Calculator.parseGroupRanges(regex, Constants.GROUP_COLOR);
+    }
+
+    @Benchmark
+    public GroupStructure.Group capturingGroupAt() {
+        caret = caret + 1 == regex.length() ? 0 : caret + 1;
+        return structure.capturingGroupAt(caret);
+    }
+}
@@ -0,0 +1,72 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.ColorRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.StyledDocument;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Styling the character pane: {@link Renderer#colorize} of a find's highlights on a headless DefaultStyledDocument,
+ * as the pane is styled for a text below the viewport threshold, and the full render path from the text
+ * through {@link Calculator#calculate} to the styled document
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class RenderBenchmark {
+    // a document of many megabytes is styled a viewport at a time instead, see ViewportHighlighter
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    @Param({BenchmarkCorpus.SPARSE, BenchmarkCorpus.DENSE})
+    public String density;
+
+    @Param({"literal", "groups"})
+    public String shape;
+
+    private String regex;
+    private String[] texts;
+    private int next;
+    private StyledDocument document;
+    private ColorRange[] ranges;
+
+    @Setup
+    public void setUp() throws BadLocationException {
+        regex = BenchmarkCorpus.pattern(shape);
+        String text = BenchmarkCorpus.logText(size, density);
+        texts = new String[]{text, '#' + text.substring(1)};
+        document = new DefaultStyledDocument();
+        document.insertString(0, text, null);
+        ranges = Calculator.calculate(new MatchRequest(0, regex, 0, "find", text)).getRanges().toArray(new ColorRange[0]);
+    }
+
+    @Benchmark
+    public StyledDocument colorize() {
+        Renderer.colorize(document, true, ranges);
+        return document;
+    }
+
+    @Benchmark
+    public StyledDocument renderPath() {
+        next ^= 1;
+        MatchResult result = Calculator.calculate(new MatchRequest(next, regex, 0, "find", texts[next]));
+        Renderer.colorize(document, true, result.getRanges().toArray(new ColorRange[0]));
+        return document;
+    }
+}
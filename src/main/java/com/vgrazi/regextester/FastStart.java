@@ -0,0 +1,34 @@
+package com.vgrazi.regextester;
+
+import com.vgrazi.regextester.action.Prewarm;
+
+import javax.swing.*;
+import java.awt.GraphicsEnvironment;
+
+/**
+ * Launches the window directly, without building the Spring context, which the window does not use. Run it with
+ * {@code java -jar regex-tester.jar fast}, or from the jar the cds profile builds, with the class data sharing
+ * archive of its training run, see the pom.
+ * With --train, the training run of that profile, it waits for the {@link Prewarm} runs and for the first frame,
+ * and exits, which is when the JVM writes the archive of the classes loaded. Without a display, it only prewarms
+ */
+public final class FastStart {
+    private FastStart() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean train = args.length > 0 && args[0].equals("--train");
+        if (train && GraphicsEnvironment.isHeadless()) {
+            Prewarm.start().join();
+            System.exit(0);
+        }
+        new RegexTester().launch();
+        if (train) {
+            Prewarm.start().join();
+            // after the first frame, whose painting is queued behind the launch
+            SwingUtilities.invokeAndWait(() -> {
+            });
+            System.exit(0);
+        }
+    }
+}
@@ -1,18 +1,49 @@
 package com.vgrazi.regextester;
 
+import com.vgrazi.regextester.action.AuxiliaryStream;
+import com.vgrazi.regextester.action.Calculator;
+import com.vgrazi.regextester.action.InterruptibleCharSequence;
+import com.vgrazi.regextester.action.MappedFileCharSequence;
+import com.vgrazi.regextester.action.MappedFileSearch;
+import com.vgrazi.regextester.action.MatchBudget;
+import com.vgrazi.regextester.action.MatchRequest;
+import com.vgrazi.regextester.action.MatchResult;
+import com.vgrazi.regextester.action.MatchWorker;
+import com.vgrazi.regextester.action.PatternCache;
+import com.vgrazi.regextester.action.PipelineMetrics;
+import com.vgrazi.regextester.action.Prewarm;
+import com.vgrazi.regextester.action.RenderScheduler;
+import com.vgrazi.regextester.action.RenderScheduler.Stage;
+import com.vgrazi.regextester.action.ReplacementTemplate;
+import com.vgrazi.regextester.action.ResultRows;
+import com.vgrazi.regextester.action.StallDetector;
+import com.vgrazi.regextester.action.TextEdit;
 import com.vgrazi.regextester.action.Renderer;
+import com.vgrazi.regextester.action.ViewportHighlighter;
+import com.vgrazi.regextester.batch.CorpusScan;
 import com.vgrazi.regextester.component.Constants;
 import com.vgrazi.regextester.component.PatternPane;
+import com.vgrazi.regextester.component.ResultList;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.plaf.basic.BasicSplitPaneDivider;
 import javax.swing.plaf.basic.BasicSplitPaneUI;
 import javax.swing.text.BadLocationException;
-import javax.swing.text.StyledDocument;
+import javax.swing.text.Document;
 import javax.swing.undo.UndoManager;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import static com.vgrazi.regextester.component.Constants.DEFAULT_LABEL_FONT;
@@ -20,9 +51,33 @@ import static com.vgrazi.regextester.component.Constants.DEFAULT_PANE_FONT;
 import static com.vgrazi.regextester.component.Constants.DEFAULT_BUTTON_FONT;
 
 public class RegexTester {
-    private final static JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
-
-    private static int flags;
+    // the commands that run over the page of an open file, rather than over the whole file
+    private static final Set<String> PAGE_COMMANDS = Set.of("heatmap", "benchmark", "pattern-set", "compare-engines");
+    private static final String TEXT_CARD = "text";
+    private static final String ROWS_CARD = "rows";
+    private final JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
+    // runs the match stage off the event dispatch thread, see renderCharacterPane
+    private final MatchWorker matchWorker = new MatchWorker("regex-match-worker");
+    // writes the full replace output to a file, apart from the match worker so that typing does not cancel it
+    private final MatchWorker saveWorker = new MatchWorker("regex-save-worker");
+    // runs the pattern over a folder, apart from the match worker so that the typed text does not cancel it
+    private final MatchWorker corpusWorker = new MatchWorker("regex-corpus-worker");
+    // every listener posts the stages its event made dirty here, rather than rendering itself
+    private final RenderScheduler renderScheduler = new RenderScheduler(Constants.RENDER_FRAME_MILLIS);
+    // renders both the MATCHES and the AUXILIARY stages, which one match run produces together
+    private final Runnable matchRenderer = this::renderCharacterPane;
+    // times the pattern for the Benchmark radio once no render has restarted it for a while, rather than on every render
+    private final Timer benchmarkTimer = new Timer(Constants.BENCHMARK_SETTLE_MILLIS, _ -> renderCharacterPane(true));
+    // logs the times the window froze, with what it was matching, see showStallLog
+    private final StallDetector stallDetector = new StallDetector(StallDetector.threshold());
+
+    private int flags;
+    // split large texts into chunks searched on all cores, see MatchSnapshot.scanParallel
+    private boolean parallelFind;
+    private boolean linearEngine;
+    // the character pane text of the last match request, and the edits made to it since, see MatchSnapshot.rescan
+    private String submittedText;
+    private TextEdit pendingEdit;
     // Create a 16×16 transparent image
     private static BufferedImage cursorImg = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
 
@@ -31,10 +86,10 @@ public class RegexTester {
             .createCustomCursor(cursorImg, new Point(0, 0), "blank cursor");
 
     // Flag to track cursor visibility
-    private static boolean cursorVisible = true;
+    private boolean cursorVisible = true;
 
     // Method to toggle cursor visibility
-    private static void toggleCursorVisibility(Component component) {
+    private void toggleCursorVisibility(Component component) {
         cursorVisible = !cursorVisible;
         Cursor cursor = cursorVisible ? Cursor.getDefaultCursor() : blankCursor;
         setCursorRecursively(component, cursor);
@@ -75,11 +130,21 @@ public class RegexTester {
 
 
     public void launch() {
+        // loads and compiles the match and styling code while the frame is built
+        Prewarm.start();
+        PipelineMetrics.register();
+        stallDetector.start();
         JFrame frame = new JFrame("Regex Test Tool");
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                PipelineMetrics.shared().firstFrame();
+            }
+        });
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 
         // Create buttonGroup early so it's available for undo functionality
-        ButtonGroup buttonGroup = new ButtonGroup();
+        buttonGroup = new ButtonGroup();
 
         // Add F1 and F2 key bindings to switch focus
         InputMap inputMap = frame.getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
@@ -117,6 +182,7 @@ public class RegexTester {
         actionMap.put("clearPanes", new AbstractAction() {
             @Override
             public void actionPerformed(ActionEvent e) {
+                closeFile();
                 patternPane.setText("");
                 characterPane.setText("");
                 replacementPane.setText("");
@@ -134,6 +200,15 @@ public class RegexTester {
             }
         });
 
+        // F9 - Show the stall log
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_F9, 0), "showStallLog");
+        actionMap.put("showStallLog", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showStallLog(frame);
+            }
+        });
+
         // F10 - Toggle help
         inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_F10, 0), "showHelp");
 
@@ -148,14 +223,14 @@ public class RegexTester {
                                     F3 - Enter replacement
                                     F4 - Clear
                                     F5 - Toggle cursor visibility
+                                    F9 - Show stall log
                             """;
                     characterPane.setText(helpText);
                     showingHelp = true;
                 } else {
                     showingHelp = false;
+                    // the character pane's document listener renders the cleared pane
                     characterPane.setText("");
-                    // Trigger a re-render of the character pane
-                    renderCharacterPane(characterPane, patternPane, auxiliaryPane, replacementPane, buttonGroup);
                 }
             }
         });
@@ -221,9 +296,15 @@ public class RegexTester {
         bottomPanel.setCursor(blankCursor);
         characterPane = new JTextPane();
         characterPane.setCursor(Cursor.getPredefinedCursor(Cursor.TEXT_CURSOR));
-        UndoManager characterUndoManager = setupUndoFunctionality(characterPane, buttonGroup);
+        UndoManager characterUndoManager = setupUndoFunctionality(characterPane);
         formatCharacterPane(characterPane);
-        bottomPanel.add(characterPane, BorderLayout.CENTER);
+        JScrollPane characterScrollPane = new JScrollPane(characterPane);
+        ViewportHighlighter.install(characterPane, characterScrollPane);
+        bottomPanel.add(characterScrollPane, BorderLayout.CENTER);
+        JPanel navigationPanel = new JPanel(new GridLayout(0, 1));
+        navigationPanel.add(createFileNavigationPanel());
+        navigationPanel.add(createCorpusNavigationPanel());
+        bottomPanel.add(navigationPanel, BorderLayout.SOUTH);
         auxiliarySplit = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
         auxiliarySplit.setCursor(blankCursor);
         auxiliarySplit.setDividerLocation(40);
@@ -248,19 +329,42 @@ public class RegexTester {
         replacementLabel.setFont(DEFAULT_LABEL_FONT);
         replacementPanel.add(replacementLabel, BorderLayout.WEST);
         replacementPanel.add(replacementPane, BorderLayout.CENTER);
+        // the auxiliary pane only previews the replace output up to a cap; this writes all of it
+        saveOutputButton = new JButton("Save output...");
+        saveOutputButton.setCursor(Cursor.getDefaultCursor());
+        saveOutputButton.setFont(DEFAULT_BUTTON_FONT);
+        saveOutputButton.setVerticalAlignment(SwingConstants.TOP);
+        saveOutputButton.addActionListener(_ -> saveReplaceOutput());
+        replacementPanel.add(saveOutputButton, BorderLayout.EAST);
         
         // Create panel for auxiliary pane with label
         JPanel auxiliaryPanel = new JPanel();
         auxiliaryPanel.setLayout(new BorderLayout());
         auxiliaryPanel.setCursor(blankCursor);
-        JLabel auxiliaryLabel = new JLabel("Results  ");
+        auxiliaryLabel = new JLabel("Results  ");
         auxiliaryLabel.setCursor(blankCursor);
         auxiliaryLabel.setVerticalAlignment(SwingConstants.TOP);
         auxiliaryLabel.setBackground(Color.WHITE);
         auxiliaryLabel.setOpaque(true);
         auxiliaryLabel.setFont(DEFAULT_LABEL_FONT);
         auxiliaryPanel.add(auxiliaryLabel, BorderLayout.NORTH);
-        auxiliaryPanel.add(auxiliaryPane, BorderLayout.CENTER);
+        // the find and split listings show in a list that only builds the rows in view; other output is text
+        resultList = new ResultList();
+        // a click on a file of the corpus listing opens that file
+        resultList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = resultList.locationToIndex(e.getPoint());
+                CorpusScan.FileResult file = corpusScan == null || row < 0 ? null : corpusScan.fileAt(row);
+                if (file != null) {
+                    openFile(file.file());
+                }
+            }
+        });
+        auxiliaryCards = new JPanel(new CardLayout());
+        auxiliaryCards.add(auxiliaryPane, TEXT_CARD);
+        auxiliaryCards.add(new JScrollPane(resultList), ROWS_CARD);
+        auxiliaryPanel.add(auxiliaryCards, BorderLayout.CENTER);
         
         auxiliarySplit.add(replacementPanel);
         auxiliarySplit.add(auxiliaryPanel);
@@ -269,118 +373,52 @@ public class RegexTester {
         replacementPanel.setVisible(false);
         
         patternPane = new PatternPane(characterPane, auxiliaryPane, replacementPane);
-        patternPane.setCharacterPaneRenderer(() -> renderCharacterPane(characterPane, patternPane, auxiliaryPane, replacementPane, buttonGroup));
+        patternPane.setRenderScheduler(renderScheduler);
+        renderScheduler.setRenderer(Stage.PATTERN, patternPane::renderMatchingGroupsInCharacterPane);
+        renderScheduler.setRenderer(Stage.MATCHES, matchRenderer);
+        renderScheduler.setRenderer(Stage.AUXILIARY, matchRenderer);
+        renderScheduler.setRenderer(Stage.LAYOUT, this::adjustPatternPaneHeight);
+        benchmarkTimer.setRepeats(false);
         patternPane.setCursor(Cursor.getPredefinedCursor(Cursor.TEXT_CURSOR));
-        UndoManager patternUndoManager = setupUndoFunctionality(patternPane, buttonGroup);
+        UndoManager patternUndoManager = setupUndoFunctionality(patternPane);
         
         // Wrap pattern pane in a panel with border
         JPanel patternPanelWrapper = new JPanel(new BorderLayout());
         patternPanelWrapper.setBorder(BorderFactory.createLineBorder(Color.GRAY, 1));
         patternPanelWrapper.add(patternPane, BorderLayout.CENTER);
         patternPanelWrapper.setCursor(blankCursor);
-        JPanel buttonPanel = createButtonPanel(patternPane, characterPane, auxiliaryPane, replacementPane, buttonGroup);
+        JPanel buttonPanel = createButtonPanel(buttonGroup);
         bottomPanel.add(buttonPanel, BorderLayout.NORTH);
 
         formatPatternPane(patternPane);
 
-        // Add document listener to trigger height adjustment when text changes
-        patternPane.getStyledDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
-            @Override
-            public void insertUpdate(javax.swing.event.DocumentEvent e) {
-                SwingUtilities.invokeLater(RegexTester::adjustPatternPaneHeight);
-                // Also trigger rerendering for pattern changes
-                SwingUtilities.invokeLater(() -> {
-                    patternPane.renderMatchingGroupsInCharacterPane();
-                    renderCharacterPane(characterPane, patternPane, auxiliaryPane, replacementPane, buttonGroup);
-                });
-            }
-
-            @Override
-            public void removeUpdate(javax.swing.event.DocumentEvent e) {
-                System.out.println("RegexTester removeUpdate fired - length: " + e.getLength() + " offset: " + e.getOffset());
-                SwingUtilities.invokeLater(RegexTester::adjustPatternPaneHeight);
-                // Also trigger rerendering for pattern changes
-                SwingUtilities.invokeLater(() -> {
-                    System.out.println("RegexTester - calling renderCharacterPane after remove");
-                    patternPane.renderMatchingGroupsInCharacterPane();
-                    renderCharacterPane(characterPane, patternPane, auxiliaryPane, replacementPane, buttonGroup);
-                });
-            }
-
-            @Override
-            public void changedUpdate(javax.swing.event.DocumentEvent e) {
-                SwingUtilities.invokeLater(RegexTester::adjustPatternPaneHeight);
-            }
-        });
+        // the pattern pane renders its own coloring and the matches; the height only changes with the text
+        patternPane.getStyledDocument().addDocumentListener(onEdit(_ -> renderScheduler.request(Stage.LAYOUT)));
 
         // Add component listener to automatically adjust pattern pane height based on content
         patternPane.addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent e) {
-                adjustPatternPaneHeight();
+                renderScheduler.request(Stage.LAYOUT);
             }
         });
 
         topPanel.add(patternPanelWrapper, BorderLayout.CENTER);
 
-        KeyAdapter keyListener = new KeyAdapter() {
-            @Override
-            public void keyReleased(KeyEvent e) {
-                if (e.isActionKey() || e.getKeyChar() == KeyEvent.CHAR_UNDEFINED) {
-                    return;
-                }
-                try {
-                    renderCharacterPane(characterPane, patternPane, auxiliaryPane, replacementPane, buttonGroup);
-                    Pattern pattern = Pattern.compile(patternPane.getText(), flags);
-                    Renderer.renderCharacterPane(characterPane, auxiliaryPane, pattern, replacementPane, patternPane.getText(), buttonGroup.getSelection().getActionCommand());
-                } catch (Exception ex) {
-                    showException(ex);
-                }
-            }
-        };
-
-        characterPane.addKeyListener(keyListener);
-        patternPane.addKeyListener(keyListener);
-        replacementPane.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyTyped(KeyEvent e) {
-                // Only re-render for split-with-delimiters when limit changes
-                try {
-                    String actionCommand = buttonGroup.getSelection().getActionCommand();
-                    if ("split-with-delimiters".equals(actionCommand)) {
-                        Pattern pattern = Pattern.compile(patternPane.getText(), flags);
-                        Renderer.renderCharacterPane(characterPane, auxiliaryPane, pattern, replacementPane, patternPane.getText(), actionCommand);
-                    }
-                } catch (Exception ex) {
-                    showException(ex);
-                }
-            }
-        });
+        // edits rather than key events, so that pastes, cuts and undos render too, and each edit only once
+        characterPane.getDocument().addDocumentListener(onEdit(this::recordEdit));
+        replacementPane.getDocument().addDocumentListener(onEdit(_ -> renderScheduler.request(Stage.AUXILIARY)));
 
         // even though there is a focus listener, we still need a mouse listener, in case the pattern pane already has
         // focus, when user clicks the mouse
         MouseAdapter mouseListener = new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
-                StyledDocument styledDocument = patternPane.getStyledDocument();
-                try {
-                    Renderer.renderCharacterPane(characterPane, auxiliaryPane,
-                            Pattern.compile(styledDocument.getText(0, styledDocument.getLength())),
-                            replacementPane, characterPane.getText(), buttonGroup.getSelection().getActionCommand());
-                    Renderer.resetColor(patternPane.getStyledDocument());
-                    patternPane.renderMatchingGroupsInCharacterPane();
-                } catch (BadLocationException e1) {
-                    e1.printStackTrace();
-                    showException(e1);
-                } catch (Exception e1) {
-                    e1.printStackTrace();
-                    showException(e1);
-                }
+                renderScheduler.request(Stage.PATTERN, Stage.MATCHES);
             }
         };
         patternPane.addMouseListener(mouseListener);
 //        replacementPane.addMouseListener(mouseListener);
-        replacementPane.addKeyListener(keyListener);
 
 
         bottomPane.add(bottomPanel);
@@ -443,7 +481,7 @@ public class RegexTester {
         // Don't set cursor recursively to preserve text cursor on text panes
     }
 
-    private static void formatPatternPane(PatternPane patternPane) {
+    private void formatPatternPane(PatternPane patternPane) {
         patternPane.setFont(Constants.DEFAULT_PANE_FONT);
         patternPane.setForeground(Constants.FONT_COLOR);
         patternPane.setBackground(Constants.BACKGROUND_COLOR);
@@ -462,7 +500,7 @@ public class RegexTester {
         });
     }
 
-    private static void formatCharacterPane(JTextPane characterPane) {
+    private void formatCharacterPane(JTextPane characterPane) {
         characterPane.setForeground(Constants.FONT_COLOR);
         characterPane.setBackground(Constants.BACKGROUND_COLOR);
         characterPane.setFont(Constants.DEFAULT_PANE_FONT);
@@ -482,7 +520,7 @@ public class RegexTester {
         });
     }
 
-    private static JPanel createButtonPanel(PatternPane patternPane, JTextPane characterPane, JTextPane auxiliaryPane, JTextPane replacementPane, ButtonGroup buttonGroup) {
+    private JPanel createButtonPanel(ButtonGroup buttonGroup) {
         JRadioButton matchButton = new JRadioButton("Matches");
         JRadioButton lookingAtButton = new JRadioButton("Looking at");
         JRadioButton splitButton = new JRadioButton("Split");
@@ -491,6 +529,14 @@ public class RegexTester {
         JRadioButton replaceAllButton = new JRadioButton("Replace all");
         JRadioButton replaceFirstButton = new JRadioButton("Replace first");
         JRadioButton findButton = new JRadioButton("Find");
+        JRadioButton heatmapButton = new JRadioButton("Heatmap");
+        JRadioButton benchmarkButton = new JRadioButton("Benchmark");
+        JRadioButton patternSetButton = new JRadioButton("Pattern set");
+        JRadioButton compareEnginesButton = new JRadioButton("Compare engines");
+        compareEnginesButton.setToolTipText("Run the pattern on java.util.regex and on the linear engine, time both, and highlight the matches that differ");
+        patternSetButton.setToolTipText("Run each line of the pattern as a pattern of its own, highlighting each in its own color, and time each one");
+        benchmarkButton.setToolTipText("Time the pattern over the text: runs per second, time per character and per match, allocation and latency");
+        heatmapButton.setToolTipText("Color each character by how often the matcher reads it, to see where a slow pattern backtracks");
 
         // Set cursor to default for radio buttons
         matchButton.setCursor(Cursor.getDefaultCursor());
@@ -501,6 +547,10 @@ public class RegexTester {
         replaceAllButton.setCursor(Cursor.getDefaultCursor());
         replaceFirstButton.setCursor(Cursor.getDefaultCursor());
         findButton.setCursor(Cursor.getDefaultCursor());
+        heatmapButton.setCursor(Cursor.getDefaultCursor());
+        benchmarkButton.setCursor(Cursor.getDefaultCursor());
+        patternSetButton.setCursor(Cursor.getDefaultCursor());
+        compareEnginesButton.setCursor(Cursor.getDefaultCursor());
         findButton.setSelected(true);
 
         findButton.setActionCommand("find");
@@ -511,6 +561,10 @@ public class RegexTester {
         splitWithDelimitersButton.setActionCommand("split-with-delimiters");
         replaceAllButton.setActionCommand("replace-all");
         replaceFirstButton.setActionCommand("replace-first");
+        heatmapButton.setActionCommand("heatmap");
+        benchmarkButton.setActionCommand("benchmark");
+        patternSetButton.setActionCommand("pattern-set");
+        compareEnginesButton.setActionCommand("compare-engines");
 
         buttonGroup.add(findButton);
         buttonGroup.add(matchButton);
@@ -520,6 +574,10 @@ public class RegexTester {
         buttonGroup.add(splitWithDelimitersButton);
         buttonGroup.add(replaceAllButton);
         buttonGroup.add(replaceFirstButton);
+        buttonGroup.add(heatmapButton);
+        buttonGroup.add(benchmarkButton);
+        buttonGroup.add(patternSetButton);
+        buttonGroup.add(compareEnginesButton);
 
         findButton.setFont(DEFAULT_BUTTON_FONT);
         matchButton.setFont(DEFAULT_BUTTON_FONT);
@@ -529,12 +587,36 @@ public class RegexTester {
         splitWithDelimitersButton.setFont(DEFAULT_BUTTON_FONT);
         replaceAllButton.setFont(DEFAULT_BUTTON_FONT);
         replaceFirstButton.setFont(DEFAULT_BUTTON_FONT);
+        heatmapButton.setFont(DEFAULT_BUTTON_FONT);
+        benchmarkButton.setFont(DEFAULT_BUTTON_FONT);
+        patternSetButton.setFont(DEFAULT_BUTTON_FONT);
+        compareEnginesButton.setFont(DEFAULT_BUTTON_FONT);
+
+        JButton openFileButton = new JButton("Open file...");
+        openFileButton.setCursor(Cursor.getDefaultCursor());
+        openFileButton.setFont(DEFAULT_BUTTON_FONT);
+        openFileButton.addActionListener(_ -> openFile());
+
+        JButton runOverFolderButton = new JButton("Run over folder...");
+        runOverFolderButton.setCursor(Cursor.getDefaultCursor());
+        runOverFolderButton.setFont(DEFAULT_BUTTON_FONT);
+        runOverFolderButton.setToolTipText("Run the pattern over every file in a folder, listing the matches and time of each");
+        runOverFolderButton.addActionListener(_ -> openCorpus());
+
+        JButton loadPatternsButton = new JButton("Load patterns...");
+        loadPatternsButton.setCursor(Cursor.getDefaultCursor());
+        loadPatternsButton.setFont(DEFAULT_BUTTON_FONT);
+        loadPatternsButton.addActionListener(_ -> loadPatternSet(patternSetButton));
 
         JCheckBox caseButton = new JCheckBox("Case Insensitive");
         JCheckBox commentsButton = new JCheckBox("Comments");
         JCheckBox dotallButton = new JCheckBox("Dot All");
         JCheckBox literalButton = new JCheckBox("Literal");
         JCheckBox multilineButton = new JCheckBox("Multiline");
+        JCheckBox parallelButton = new JCheckBox("Parallel");
+        parallelButton.setToolTipText("Search texts of a megabyte or more in chunks, on all cores");
+        JCheckBox linearButton = new JCheckBox("Linear engine");
+        linearButton.setToolTipText("Find the matches with an engine that takes linear time and can't backtrack; patterns with backreferences or lookarounds still run on java.util.regex");
 
         // Set cursor to default for checkboxes
         caseButton.setCursor(Cursor.getDefaultCursor());
@@ -542,12 +624,16 @@ public class RegexTester {
         dotallButton.setCursor(Cursor.getDefaultCursor());
         literalButton.setCursor(Cursor.getDefaultCursor());
         multilineButton.setCursor(Cursor.getDefaultCursor());
+        parallelButton.setCursor(Cursor.getDefaultCursor());
+        linearButton.setCursor(Cursor.getDefaultCursor());
 
         caseButton.setFont(DEFAULT_BUTTON_FONT);
         commentsButton.setFont(DEFAULT_BUTTON_FONT);
         dotallButton.setFont(DEFAULT_BUTTON_FONT);
         literalButton.setFont(DEFAULT_BUTTON_FONT);
         multilineButton.setFont(DEFAULT_BUTTON_FONT);
+        parallelButton.setFont(DEFAULT_BUTTON_FONT);
+        linearButton.setFont(DEFAULT_BUTTON_FONT);
 
         JPanel buttonPanel = new JPanel();
         buttonPanel.setCursor(blankCursor);
@@ -563,11 +649,20 @@ public class RegexTester {
         buttonPanel.add(splitWithDelimitersButton);
         buttonPanel.add(replaceAllButton);
         buttonPanel.add(replaceFirstButton);
+        buttonPanel.add(heatmapButton);
+        buttonPanel.add(benchmarkButton);
+        buttonPanel.add(patternSetButton);
+        buttonPanel.add(compareEnginesButton);
         buttonPanel.add(caseButton);
         buttonPanel.add(commentsButton);
         buttonPanel.add(dotallButton);
         buttonPanel.add(literalButton);
         buttonPanel.add(multilineButton);
+        buttonPanel.add(parallelButton);
+        buttonPanel.add(linearButton);
+        buttonPanel.add(openFileButton);
+        buttonPanel.add(runOverFolderButton);
+        buttonPanel.add(loadPatternsButton);
 
         // Add component listener to dynamically adjust height based on button layout
         final boolean[] adjustingHeight = {false}; // Guard flag to prevent recursion
@@ -622,7 +717,7 @@ public class RegexTester {
 
         ActionListener recalcFlagListener = _ -> {
             flags = recalculateFlags(caseButton, commentsButton, dotallButton, literalButton, multilineButton);
-            renderCharacterPane(characterPane, patternPane, auxiliaryPane, replacementPane, buttonGroup);
+            renderScheduler.request(Stage.MATCHES, Stage.AUXILIARY);
             patternPane.setFlags(flags);
         };
         caseButton.addActionListener(recalcFlagListener);
@@ -630,6 +725,14 @@ public class RegexTester {
         dotallButton.addActionListener(recalcFlagListener);
         literalButton.addActionListener(recalcFlagListener);
         multilineButton.addActionListener(recalcFlagListener);
+        parallelButton.addActionListener(_ -> {
+            parallelFind = parallelButton.isSelected();
+            renderScheduler.request(Stage.MATCHES);
+        });
+        linearButton.addActionListener(_ -> {
+            linearEngine = linearButton.isSelected();
+            renderScheduler.request(Stage.MATCHES);
+        });
         ActionListener actionListener = _ -> {
             if (updatingVisibility) return; // Prevent recursive calls
             updatingVisibility = true;
@@ -640,6 +743,7 @@ public class RegexTester {
                     case "split-with-limit", "split-with-delimiters" -> {
                         replacementLabel.setText("Limit  ");
                         replacementPanel.setVisible(true);
+                        saveOutputButton.setVisible(false);
                         // Set minimum sizes and divider location
                         replacementPanel.setMinimumSize(new Dimension(0, 40));
                         auxiliaryPane.setMinimumSize(new Dimension(0, 0));
@@ -648,6 +752,7 @@ public class RegexTester {
                     case "replace-all", "replace-first" -> {
                         replacementLabel.setText("Replacement  ");
                         replacementPanel.setVisible(true);
+                        saveOutputButton.setVisible(true);
                         // Set minimum sizes and divider location
                         replacementPanel.setMinimumSize(new Dimension(0, 40));
                         auxiliaryPane.setMinimumSize(new Dimension(0, 0));
@@ -662,10 +767,11 @@ public class RegexTester {
                         auxiliarySplit.setDividerLocation(0);
                     }
                 }
+                patternPane.setPatternSet(actionCommand.equals("pattern-set"));
                 // Revalidate the split pane to apply visibility changes
                 auxiliarySplit.revalidate();
                 auxiliarySplit.repaint();
-                renderCharacterPane(characterPane, patternPane, auxiliaryPane, replacementPane, buttonGroup);
+                renderScheduler.request(Stage.MATCHES, Stage.AUXILIARY);
             } finally {
                 updatingVisibility = false;
             }
@@ -678,6 +784,10 @@ public class RegexTester {
         splitButton.addActionListener(actionListener);
         splitWithLimitButton.addActionListener(actionListener);
         splitWithDelimitersButton.addActionListener(actionListener);
+        heatmapButton.addActionListener(actionListener);
+        benchmarkButton.addActionListener(actionListener);
+        patternSetButton.addActionListener(actionListener);
+        compareEnginesButton.addActionListener(actionListener);
         return buttonPanel;
     }
 
@@ -691,7 +801,7 @@ public class RegexTester {
         return flags;
     }
 
-    private static void adjustPatternPaneHeight() {
+    private void adjustPatternPaneHeight() {
         if (adjustingPatternHeight) return; // Prevent recursive calls
         adjustingPatternHeight = true;
         try {
@@ -717,21 +827,38 @@ public class RegexTester {
         }
     }
 
-    private static JTextPane characterPane;
-    private static PatternPane patternPane;
-    private static JTextPane replacementPane;
-    private static JTextPane auxiliaryPane;
-    private static JTextPane exceptionPane;
-    private static JScrollPane exceptionScrollPane;
-    private static JPanel exceptionPanel;
-    private static JLabel replacementLabel;
-    private static JPanel replacementPanel;
-    private static JSplitPane auxiliarySplit;
-    private static boolean showingHelp = false;
-    private static boolean updatingVisibility = false;
-    private static boolean adjustingPatternHeight = false;
-
-    private static UndoManager setupUndoFunctionality(JTextPane textPane, ButtonGroup buttonGroup) {
+    private JTextPane characterPane;
+    private PatternPane patternPane;
+    private JTextPane replacementPane;
+    private JTextPane auxiliaryPane;
+    private ResultList resultList;
+    private JPanel auxiliaryCards;
+    private JTextPane exceptionPane;
+    private JScrollPane exceptionScrollPane;
+    private JPanel exceptionPanel;
+    private JLabel replacementLabel;
+    private JLabel auxiliaryLabel;
+    private JPanel replacementPanel;
+    private JButton saveOutputButton;
+    private JSplitPane auxiliarySplit;
+    private ButtonGroup buttonGroup;
+    // set while a memory-mapped file, rather than the typed text, is the target
+    private MappedFileSearch fileSearch;
+    private int filePage;
+    private JPanel fileNavigationPanel;
+    private JLabel filePageLabel;
+    // set while the pattern is run over a folder; the corpus listing then takes the auxiliary pane's place
+    private Path corpusDirectory;
+    private CorpusScan corpusScan;
+    // the pattern, flags, command and replacement of the last run over the folder
+    private String corpusKey;
+    private JPanel corpusNavigationPanel;
+    private JLabel corpusLabel;
+    private boolean showingHelp = false;
+    private boolean updatingVisibility = false;
+    private boolean adjustingPatternHeight = false;
+
+    private UndoManager setupUndoFunctionality(JTextPane textPane) {
         UndoManager undoManager = new UndoManager();
         // Set a reasonable limit for undo history (100 edits)
         undoManager.setLimit(100);
@@ -757,13 +884,7 @@ public class RegexTester {
                 if (undoManager.canUndo()) {
                     undoManager.undo();
                     System.out.println("Undo performed. Can undo: " + undoManager.canUndo() + ", Can redo: " + undoManager.canRedo());
-                    // Trigger a re-render if this is the pattern pane
-                    if (textPane instanceof PatternPane) {
-                        SwingUtilities.invokeLater(() -> {
-                            ((PatternPane) textPane).renderMatchingGroupsInCharacterPane();
-                            renderCharacterPane(characterPane, (PatternPane) textPane, auxiliaryPane, replacementPane, buttonGroup);
-                        });
-                    }
+                    // the pane's document listener renders the undone text
                 } else {
                     System.out.println("No more undo operations available");
                 }
@@ -778,13 +899,7 @@ public class RegexTester {
                 if (undoManager.canRedo()) {
                     undoManager.redo();
                     System.out.println("Redo performed. Can undo: " + undoManager.canUndo() + ", Can redo: " + undoManager.canRedo());
-                    // Trigger a re-render if this is the pattern pane
-                    if (textPane instanceof PatternPane) {
-                        SwingUtilities.invokeLater(() -> {
-                            ((PatternPane) textPane).renderMatchingGroupsInCharacterPane();
-                            renderCharacterPane(characterPane, (PatternPane) textPane, auxiliaryPane, replacementPane, buttonGroup);
-                        });
-                    }
+                    // the pane's document listener renders the redone text
                 } else {
                     System.out.println("No more redo operations available");
                 }
@@ -794,23 +909,437 @@ public class RegexTester {
         return undoManager;
     }
 
-    private static void renderCharacterPane(JTextPane characterPane, PatternPane patternPane, JTextPane auxiliaryPane, JTextPane replacementPane, ButtonGroup buttonGroup) {
+    /**
+     * Merges an edit of the character pane into the edits since the last match request, and requests a render
+     */
+    private void recordEdit(DocumentEvent e) {
+        if (fileSearch != null) {
+            // the file view renders each page as it shows it, and the next typed text is matched from scratch
+            submittedText = null;
+            pendingEdit = null;
+            return;
+        }
+        int removed = e.getType() == DocumentEvent.EventType.REMOVE ? e.getLength() : 0;
+        int inserted = e.getType() == DocumentEvent.EventType.INSERT ? e.getLength() : 0;
+        pendingEdit = pendingEdit == null ? TextEdit.replace(e.getOffset(), removed, inserted)
+                : pendingEdit.then(e.getOffset(), removed, inserted);
+        renderScheduler.request(Stage.MATCHES, Stage.AUXILIARY);
+    }
+
+    /**
+     * @return a document listener running the action on every insert and remove. Style changes, which rendering
+     * makes itself, are ignored
+     */
+    private static DocumentListener onEdit(Consumer<DocumentEvent> action) {
+        return new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                action.accept(e);
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                action.accept(e);
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // a style change, not an edit
+            }
+        };
+    }
+
+    /**
+     * Snapshots the pattern, flags, action command and text on the event dispatch thread, and hands the snapshot
+     * to the match worker. Any render still in flight for an older edit is cancelled; only the result of the
+     * latest edit is applied to the panes, back on the event dispatch thread
+     */
+    private void renderCharacterPane() {
+        renderCharacterPane(false);
+    }
+
+    /**
+     * @param benchmark whether to time the pattern, if the Benchmark radio is selected, rather than only highlight
+     *                  its matches and wait for the edits to settle
+     */
+    private void renderCharacterPane(boolean benchmark) {
+        if (corpusDirectory != null && !corpusKey().equals(corpusKey)) {
+            runCorpus();
+        }
+        // the heatmap, the benchmark and the engine comparison are of the page being shown, rather than of the whole file
+        if (fileSearch != null && !PAGE_COMMANDS.contains(buttonGroup.getSelection().getActionCommand())) {
+            renderFile();
+            return;
+        }
+        String text = Renderer.normalizedText(characterPane);
+        PipelineMetrics.shared().matchRenderRequested();
+        stallDetector.setContext(new StallDetector.Context(patternPane.getText(), flags, buttonGroup.getSelection().getActionCommand(), text.length()));
+        MatchRequest request = new MatchRequest(matchWorker.nextGeneration(), patternPane.getText(), flags,
+                buttonGroup.getSelection().getActionCommand(), text)
+                .withReplacement(replacementPane.getText())
+                .withParallel(parallelFind)
+                .withEdit(submittedText, pendingEdit)
+                .withLinear(linearEngine)
+                .withBenchmark(benchmark);
+        if (request.getActionCommand().equals("benchmark") && !benchmark) {
+            benchmarkTimer.restart();
+        } else {
+            benchmarkTimer.stop();
+        }
+        submittedText = text;
+        pendingEdit = null;
+        // the replace output is streamed into the auxiliary pane as it is produced, rather than set at the end
+        AuxiliaryStream replaceOutput = null;
+        if (request.getActionCommand().startsWith("replace")) {
+            replaceOutput = new AuxiliaryStream(auxiliaryPane, matchWorker, request.getGeneration(), AuxiliaryStream.previewCap());
+            showResultRows(null);
+        }
+        AuxiliaryStream output = replaceOutput;
+        matchWorker.submit(request.getGeneration(), () -> Calculator.calculate(request, output), this::applyMatchResult, this::showMatchException);
+    }
+
+    /**
+     * Writes the whole output of the selected replace command, of the typed text or of the open file, to a file
+     * of the user's choosing: uncapped, and without the ">" continuation marks of the preview. Each find runs on a
+     * budget of its own, as the preview's does, so that a runaway pattern gives up. A save that fails, or that is
+     * cancelled by starting another, deletes what it had written, rather than leave a file that looks complete
+     */
+    private void saveReplaceOutput() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(replacementPane) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path path = chooser.getSelectedFile().toPath();
+        String regex = patternPane.getText();
+        int flags = this.flags;
+        String replacement = replacementPane.getText();
+        boolean all = buttonGroup.getSelection().getActionCommand().equals("replace-all");
+        // an open file is read as ISO-8859-1, so it is written back that way, leaving its other bytes as they were
+        CharSequence text = fileSearch != null ? fileSearch.getFile() : Renderer.normalizedText(characterPane);
+        Charset charset = fileSearch != null ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8;
+        saveWorker.submit(saveWorker.nextGeneration(), () -> {
+                    Pattern pattern = PatternCache.shared().compile(regex, flags);
+                    // check the replacement before the file is created, rather than after some output has been written
+                    ReplacementTemplate template = ReplacementTemplate.compile(replacement, pattern);
+                    MatchBudget budget = MatchBudget.start(pattern);
+                    try (Writer out = Files.newBufferedWriter(path, charset)) {
+                        return template.replace(PatternCache.shared().matcher(pattern, new InterruptibleCharSequence(text, budget)), text, all, out, budget);
+                    } catch (IOException | RuntimeException e) {
+                        Files.deleteIfExists(path);
+                        // cancelled by the next save, as a ClosedByInterruptException from the file, or a CancellationException
+                        // from the match, either of which leaves the interrupt set; the worker reports neither
+                        if (Thread.currentThread().isInterrupted()) {
+                            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(replacementPane,
+                                    String.format("Stopped writing %s, as another save started, and deleted what had been written", path)));
+                            throw e;
+                        }
+                        throw new IOException(String.format("Could not write %s, and deleted what had been written: %s", path, e.getMessage()), e);
+                    }
+                },
+                count -> JOptionPane.showMessageDialog(replacementPane, String.format("Wrote %,d replacements to %s", count, path)),
+                this::showException);
+    }
+
+    /**
+     * Shows the log of the times the event dispatch thread stalled, each with its stack and what was being matched,
+     * and offers to save it, to attach to a report of the window freezing
+     */
+    private void showStallLog(JFrame frame) {
+        String report = stallDetector.report();
+        JTextArea textArea = new JTextArea(report, 25, 100);
+        textArea.setEditable(false);
+        textArea.setCaretPosition(0);
+        Object[] options = {"Save...", "Close"};
+        int choice = JOptionPane.showOptionDialog(frame, new JScrollPane(textArea), "Stall log", JOptionPane.DEFAULT_OPTION,
+                JOptionPane.PLAIN_MESSAGE, null, options, options[1]);
+        if (choice != 0) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
         try {
-            String regex = patternPane.getText();
-            Pattern pattern = Pattern.compile(regex, flags);
-            Renderer.renderCharacterPane(characterPane, auxiliaryPane, pattern, replacementPane, regex, buttonGroup.getSelection().getActionCommand());
-            // Clear and hide exception pane when compilation succeeds
-            hideException();
-            patternPane.setBorder(Constants.WHITE_BORDER);
-        } catch (Exception e) {
-            System.out.println("RegexTester.renderCharacterPane " + e);
-            Renderer.resetColor(characterPane.getStyledDocument());
+            Files.writeString(chooser.getSelectedFile().toPath(), report);
+        } catch (IOException e) {
+            showException(e);
+        }
+    }
+
+    /**
+     * Like {@link #renderCharacterPane()}, for an open file: scans the whole file, streaming the results into the
+     * auxiliary pane, and highlights the page being shown
+     */
+    private void renderFile() {
+        long generation = matchWorker.nextGeneration();
+        MappedFileSearch search = fileSearch;
+        String regex = patternPane.getText();
+        int flags = this.flags;
+        String actionCommand = buttonGroup.getSelection().getActionCommand();
+        String replacement = replacementPane.getText();
+        int page = filePage;
+        stallDetector.setContext(new StallDetector.Context(regex, flags, actionCommand, search.getFile().length()));
+        PipelineMetrics.shared().matchRenderRequested();
+        AuxiliaryStream auxiliary = new AuxiliaryStream(auxiliaryPane, matchWorker, generation, AuxiliaryStream.previewCap());
+        // an open file's results are streamed as text, into the auxiliary pane
+        showResultRows(null);
+        matchWorker.submit(generation, () -> search.scan(generation, regex, flags, actionCommand, replacement, page, auxiliary),
+                this::applyMatchResult, this::showMatchException);
+    }
+
+    private void applyMatchResult(MatchResult result) {
+        Renderer.renderMatchResult(characterPane, auxiliaryPane, replacementPane, result);
+        PipelineMetrics.shared().highlighted();
+        if (corpusScan != null) {
+            // the corpus listing keeps the auxiliary pane's place, where it was scrolled to
+            ((CardLayout) auxiliaryCards.getLayout()).show(auxiliaryCards, ROWS_CARD);
+        } else {
+            showResultRows(result.getAuxiliaryRows());
+        }
+        // such as how much of the text the required literal let the matcher skip
+        auxiliaryLabel.setText(result.getNote() == null ? "Results  " : "Results  (" + result.getNote() + ")  ");
+        if (result.getBudgetExceeded() != null) {
+            // the highlights are the matches found before the run gave up
             patternPane.setBorder(Constants.RED_BORDER);
+            showException(result.getBudgetExceeded());
+            return;
+        }
+        // Clear and hide exception pane when compilation succeeds
+        hideException();
+        patternPane.setBorder(Constants.WHITE_BORDER);
+    }
+
+    /**
+     * Shows the listing in the auxiliary pane's place, or the auxiliary pane itself if there is none
+     */
+    private void showResultRows(ResultRows rows) {
+        if (rows != null) {
+            resultList.setRows(rows);
+        }
+        ((CardLayout) auxiliaryCards.getLayout()).show(auxiliaryCards, rows != null ? ROWS_CARD : TEXT_CARD);
+    }
+
+    private void showMatchException(Exception e) {
+        System.out.println("RegexTester.renderCharacterPane " + e);
+        Renderer.clearHighlights(characterPane);
+        patternPane.setBorder(Constants.RED_BORDER);
+        showException(e);
+    }
+
+    private JPanel createFileNavigationPanel() {
+        JButton previousButton = new JButton("< Previous page");
+        JButton nextButton = new JButton("Next page >");
+        JButton closeButton = new JButton("Close file");
+        filePageLabel = new JLabel();
+        previousButton.setFont(DEFAULT_BUTTON_FONT);
+        nextButton.setFont(DEFAULT_BUTTON_FONT);
+        closeButton.setFont(DEFAULT_BUTTON_FONT);
+        filePageLabel.setFont(DEFAULT_BUTTON_FONT);
+        previousButton.setCursor(Cursor.getDefaultCursor());
+        nextButton.setCursor(Cursor.getDefaultCursor());
+        closeButton.setCursor(Cursor.getDefaultCursor());
+        previousButton.addActionListener(_ -> showFilePage(filePage - 1));
+        nextButton.addActionListener(_ -> showFilePage(filePage + 1));
+        closeButton.addActionListener(_ -> closeFile());
+
+        fileNavigationPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        fileNavigationPanel.setBorder(BorderFactory.createLineBorder(Color.GRAY, 1));
+        fileNavigationPanel.add(previousButton);
+        fileNavigationPanel.add(filePageLabel);
+        fileNavigationPanel.add(nextButton);
+        fileNavigationPanel.add(closeButton);
+        fileNavigationPanel.setVisible(false);
+        return fileNavigationPanel;
+    }
+
+    /**
+     * Memory-maps a file chosen by the user and makes it the target, shown one read-only page at a time
+     */
+    private void openFile() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(characterPane) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        openFile(chooser.getSelectedFile().toPath());
+    }
+
+    private void openFile(Path path) {
+        try {
+            fileSearch = new MappedFileSearch(MappedFileCharSequence.open(path), Constants.FILE_PAGE_SIZE);
+        } catch (IOException e) {
             showException(e);
+            return;
+        }
+        characterPane.setEditable(false);
+        fileNavigationPanel.setVisible(true);
+        filePage = -1;
+        // a new search has no page index yet, so this scans the whole file
+        showFilePage(0);
+    }
+
+    private JPanel createCorpusNavigationPanel() {
+        JButton rerunButton = new JButton("Rerun");
+        JButton closeButton = new JButton("Close folder");
+        corpusLabel = new JLabel();
+        rerunButton.setFont(DEFAULT_BUTTON_FONT);
+        closeButton.setFont(DEFAULT_BUTTON_FONT);
+        corpusLabel.setFont(DEFAULT_BUTTON_FONT);
+        rerunButton.setCursor(Cursor.getDefaultCursor());
+        closeButton.setCursor(Cursor.getDefaultCursor());
+        // the files may have changed on disk since the last run
+        rerunButton.addActionListener(_ -> runCorpus());
+        closeButton.addActionListener(_ -> closeCorpus());
+
+        corpusNavigationPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        corpusNavigationPanel.setBorder(BorderFactory.createLineBorder(Color.GRAY, 1));
+        corpusNavigationPanel.add(corpusLabel);
+        corpusNavigationPanel.add(rerunButton);
+        corpusNavigationPanel.add(closeButton);
+        corpusNavigationPanel.setVisible(false);
+        return corpusNavigationPanel;
+    }
+
+    /**
+     * Runs the pattern over every file in a folder chosen by the user, and again whenever the pattern, the flags,
+     * the command or the replacement change, until the folder is closed
+     */
+    private void openCorpus() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showOpenDialog(characterPane) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        corpusDirectory = chooser.getSelectedFile().toPath();
+        corpusNavigationPanel.setVisible(true);
+        runCorpus();
+    }
+
+    /**
+     * Hands the run over the folder to the corpus worker, cancelling any run still in flight
+     */
+    private void runCorpus() {
+        Path directory = corpusDirectory;
+        String regex = patternPane.getText();
+        int flags = this.flags;
+        String actionCommand = buttonGroup.getSelection().getActionCommand();
+        String replacement = replacementPane.getText();
+        corpusKey = corpusKey();
+        corpusLabel.setText("Running over " + directory + "...");
+        corpusWorker.submit(corpusWorker.nextGeneration(), () -> CorpusScan.run(directory, regex, flags, actionCommand, replacement),
+                this::applyCorpusScan, this::showCorpusException);
+    }
+
+    private void applyCorpusScan(CorpusScan scan) {
+        if (corpusDirectory == null) {
+            // closed while it ran
+            return;
+        }
+        corpusScan = scan;
+        corpusLabel.setText(String.format("%s: %,d files in %,.1f ms, click a file to open it", scan.getDirectory(),
+                scan.getResults().size(), scan.getNanos() / 1e6));
+        showResultRows(scan.rows());
+    }
+
+    private void showCorpusException(Exception e) {
+        corpusLabel.setText(corpusDirectory + ": " + e.getMessage());
+        if (!(e instanceof IOException)) {
+            // an invalid pattern or replacement, which the match worker reports as well
+            return;
+        }
+        showException(e);
+    }
+
+    /**
+     * @return what the run over the folder depends on besides the files, to tell when it needs running again
+     */
+    private String corpusKey() {
+        return patternPane.getText() + '\u0000' + flags + '\u0000' + buttonGroup.getSelection().getActionCommand()
+                + '\u0000' + replacementPane.getText();
+    }
+
+    /**
+     * Stops running the pattern over the folder, and gives the auxiliary pane back to the typed text's results
+     */
+    private void closeCorpus() {
+        if (corpusDirectory == null) {
+            return;
+        }
+        corpusWorker.cancel();
+        corpusDirectory = null;
+        corpusScan = null;
+        corpusKey = null;
+        corpusNavigationPanel.setVisible(false);
+        renderScheduler.request(Stage.MATCHES, Stage.AUXILIARY);
+    }
+
+    /**
+     * Reads a file of patterns, one per line, into the pattern pane, and selects the Pattern set radio to run them
+     */
+    private void loadPatternSet(JRadioButton patternSetButton) {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(patternPane) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            // the pattern pane's document has \n line ends, which PatternSet splits the lines at
+            patternPane.setText(Files.readString(chooser.getSelectedFile().toPath()).replace("\r\n", "\n"));
+        } catch (IOException e) {
+            showException(e);
+            return;
+        }
+        if (!patternSetButton.isSelected()) {
+            patternSetButton.doClick();
+        }
+    }
+
+    /**
+     * Returns to typing the target text into the character pane
+     */
+    private void closeFile() {
+        if (fileSearch == null) {
+            return;
+        }
+        fileSearch = null;
+        fileNavigationPanel.setVisible(false);
+        characterPane.setEditable(true);
+        characterPane.setText("");
+        auxiliaryPane.setText("");
+        renderScheduler.request(Stage.MATCHES, Stage.AUXILIARY);
+    }
+
+    /**
+     * Shows the page of the open file in the character pane. If the last full scan indexed the pages for the current
+     * pattern, only that page is rescanned for highlights; otherwise the whole file is scanned again
+     */
+    private void showFilePage(int page) {
+        if (page < 0 || page >= fileSearch.getPageCount() || page == filePage) {
+            return;
+        }
+        filePage = page;
+        filePageLabel.setText(String.format("%s page %d of %d", fileSearch.getFile().getPath().getFileName(), page + 1, fileSearch.getPageCount()));
+        // insert rather than setText, so that \r\n is not collapsed and page offsets stay equal to file offsets
+        Document document = characterPane.getDocument();
+        try {
+            document.remove(0, document.getLength());
+            document.insertString(0, fileSearch.pageText(page), null);
+        } catch (BadLocationException e) {
+            showException(e);
+        }
+        characterPane.setCaretPosition(0);
+        String regex = patternPane.getText();
+        String actionCommand = buttonGroup.getSelection().getActionCommand();
+        if (fileSearch.hasPageIndex(regex, flags) && !actionCommand.equals("matches") && !actionCommand.equals("looking-at")
+                && !PAGE_COMMANDS.contains(actionCommand)) {
+            long generation = matchWorker.nextGeneration();
+            MappedFileSearch search = fileSearch;
+            int flags = this.flags;
+            matchWorker.submit(generation, () -> search.page(generation, regex, flags, page), this::applyMatchResult, this::showMatchException);
+        } else {
+            renderCharacterPane();
         }
     }
 
-    private static void hideException() {
+    private void hideException() {
         SwingUtilities.invokeLater(() -> {
             if (exceptionPane != null) {
                 exceptionPane.setText("");
@@ -825,7 +1354,7 @@ public class RegexTester {
         });
     }
 
-    private static void showException(Exception e) {
+    private void showException(Exception e) {
         if (exceptionPane != null) {
             String exceptionText = e.getClass().getSimpleName() + ": " + e.getMessage();
             if (e.getMessage() == null || e.getMessage().isEmpty()) {
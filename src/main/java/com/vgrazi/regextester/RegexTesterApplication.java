@@ -1,13 +1,25 @@
 package com.vgrazi.regextester;
 
+import com.vgrazi.regextester.batch.BatchRunner;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 
+import java.util.Arrays;
+
 @SpringBootApplication
 public class RegexTesterApplication implements CommandLineRunner {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("batch")) {
+            // headless: no Spring context, whose banner and logging would be mixed into the results on standard output
+            System.exit(BatchRunner.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && args[0].equals("fast")) {
+            // the window does not use the Spring context, so this skips building it
+            FastStart.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         SpringApplicationBuilder builder = new SpringApplicationBuilder(RegexTesterApplication.class);
         builder.headless(false).run(args);
     }
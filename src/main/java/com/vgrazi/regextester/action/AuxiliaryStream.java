@@ -0,0 +1,146 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.Constants;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.util.function.Consumer;
+
+/**
+ * Streams results into the auxiliary pane in chunks while the match worker is still running, instead of building
+ * the whole text and calling setText at the end. Chunks are appended on the event dispatch thread, and dropped
+ * once a newer generation has started. Output beyond the cap is discarded, with a note saying so,
+ * so that neither the heap nor the pane's layout grows with the size of the input.
+ * The append methods are called from the worker thread only. Without a pane, the chunks go to any sink instead,
+ * such as a StringBuilder for callers that want the capped text as a whole
+ */
+public class AuxiliaryStream {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Consumer<String> sink;
+    private final int cap;
+    private final StringBuilder buffer = new StringBuilder();
+    private String continuationPrefix = "";
+    private long written;
+    private boolean truncated;
+
+    /**
+     * Creates the stream, and clears the pane, once the event dispatch thread gets to it
+     * @param cap the maximum number of characters to show
+     */
+    public AuxiliaryStream(JTextPane pane, MatchWorker worker, long generation, int cap) {
+        this(chunk -> post(pane, worker, generation, chunk), cap);
+        post(pane, worker, generation, null);
+    }
+
+    /**
+     * Creates a stream handing its chunks to the sink, on the calling thread
+     * @param cap the maximum number of characters to pass on
+     */
+    public AuxiliaryStream(Consumer<String> sink, int cap) {
+        this.sink = sink;
+        this.cap = cap;
+    }
+
+    /**
+     * @return the cap of the auxiliary pane's output, the system property regextester.preview.chars if set
+     */
+    public static int previewCap() {
+        return Integer.getInteger("regextester.preview.chars", Constants.MAX_STREAMED_RESULT_CHARS);
+    }
+
+    /**
+     * Inserts the supplied prefix after every line feed appended from now on, for example ">" for
+     * the replace output, so that continuation lines are marked without a second pass over the text
+     */
+    public AuxiliaryStream setContinuationPrefix(String continuationPrefix) {
+        this.continuationPrefix = continuationPrefix;
+        return this;
+    }
+
+    /**
+     * @return true once the cap has been reached, so callers can skip producing output nobody will see
+     */
+    public boolean isFull() {
+        return truncated;
+    }
+
+    public AuxiliaryStream append(CharSequence text) {
+        return append(text, 0, text.length());
+    }
+
+    /**
+     * Appends the supplied range of the text, copying at most what still fits under the cap
+     */
+    public AuxiliaryStream append(CharSequence text, int start, int end) {
+        for (int index = start; index < end && !truncated; index++) {
+            append(text.charAt(index));
+        }
+        return this;
+    }
+
+    public AuxiliaryStream append(int value) {
+        return append(String.valueOf(value));
+    }
+
+    public AuxiliaryStream append(char ch) {
+        if (truncated) {
+            return this;
+        }
+        if (written >= cap) {
+            truncated = true;
+            return this;
+        }
+        buffer.append(ch);
+        written++;
+        if (ch == '\n' && !continuationPrefix.isEmpty()) {
+            buffer.append(continuationPrefix);
+        }
+        if (buffer.length() >= CHUNK_SIZE) {
+            flush();
+        }
+        return this;
+    }
+
+    /**
+     * Sends the buffered text to the pane
+     */
+    public void flush() {
+        if (buffer.length() > 0) {
+            sink.accept(buffer.toString());
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * Flushes the remaining text, and notes the truncation if the cap was reached
+     */
+    public void close() {
+        if (truncated) {
+            buffer.append("\n... output truncated at ").append(cap).append(" characters");
+        }
+        flush();
+    }
+
+    private static void post(JTextPane pane, MatchWorker worker, long generation, String chunk) {
+        SwingUtilities.invokeLater(() -> {
+            if (!worker.isCurrent(generation)) {
+                return;
+            }
+            if (chunk == null) {
+                pane.setText("");
+                return;
+            }
+            Document document = pane.getDocument();
+            long start = System.nanoTime();
+            try {
+                document.insertString(document.getLength(), chunk, null);
+                PipelineMetrics.shared().auxiliaryUpdated(System.nanoTime() - start);
+            } catch (BadLocationException e) {
+                // can't happen, we always insert at the end
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
@@ -1,19 +1,21 @@
 package com.vgrazi.regextester.action;
 
 import com.vgrazi.regextester.component.ColorRange;
-import com.vgrazi.regextester.component.Constants;
 
-import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Stack;
+import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import static com.vgrazi.regextester.component.Constants.GROUP_COLOR;
+import static com.vgrazi.regextester.component.Constants.HEAT_COLORS;
+import static com.vgrazi.regextester.component.Constants.HEAT_REGION_COUNT;
+import static com.vgrazi.regextester.component.Constants.HEAT_REGION_SIZE;
 import static com.vgrazi.regextester.component.Constants.HIGHLIGHT_COLOR;
 
 /**
@@ -23,7 +25,8 @@ public class Calculator {
 
     /**
      * Returns a list of ColorRanges of all capture groups in the supplied regex. These are in order,
-     * beginning with capture group 1 in position 0 of the array
+     * beginning with capture group 1 in position 0 of the array. See {@link GroupStructure}, which the pattern pane
+     * keeps between edits rather than parsing again
      *
      * @param regex the regex pattern
      * @param color the color to render
@@ -31,114 +34,193 @@ public class Calculator {
      * @throws UnmatchedLeftParenException if no matching right paren
      */
     public static ColorRange[] parseGroupRanges(String regex, Color color) throws UnmatchedLeftParenException {
+        return GroupStructure.parse(regex, 0).toColorRanges(color);
+    }
+
+    /**
+     * Runs the match stage for the supplied snapshot, according to the selected radio button.
+     * Touches no Swing component, so it may be called from the {@link MatchWorker} thread
+     *
+     * @param request the snapshot of the regex, flags, action command and text
+     * @return the highlight ranges and auxiliary pane text. If the run gave up on catastrophic backtracking, the
+     * ranges are those of the matches found until then, the auxiliary text is empty, and the result says why
+     * @throws PatternSyntaxException if the regex does not compile
+     * @throws java.util.concurrent.CancellationException if the worker cancelled the run
+     */
+    public static MatchResult calculate(MatchRequest request) throws PatternSyntaxException {
+        return calculate(request, null);
+    }
+
+    /**
+     * Like {@link #calculate(MatchRequest)}, streaming the output of the replace commands into the supplied stream
+     * as it is produced, rather than returning it as the auxiliary text
+     *
+     * @param replaceOutput receives the replace output, or null to return it, capped at
+     *                      {@link AuxiliaryStream#previewCap()}, in the result
+     * @return the result, whose auxiliary text is null if the replace output went to the stream
+     */
+    public static MatchResult calculate(MatchRequest request, AuxiliaryStream replaceOutput) throws PatternSyntaxException {
+        long start = System.nanoTime();
+        MatchResult result = match(request, replaceOutput);
+        // only the runs that completed, as a cancelled or failed run's time says little about the mode
+        PipelineMetrics.shared().matched(request.getActionCommand(), System.nanoTime() - start);
+        return result;
+    }
+
+    private static MatchResult match(MatchRequest request, AuxiliaryStream replaceOutput) throws PatternSyntaxException {
+        if (request.getActionCommand().equals("pattern-set")) {
+            // the regex is a set of patterns, one per line, rather than one pattern
+            return processPatternSetCommand(request);
+        }
+        Pattern pattern = PatternCache.shared().compile(request.getRegex(), request.getFlags());
+        String text = request.getText();
+        String actionCommand = request.getActionCommand();
+        if (actionCommand.equals("heatmap")) {
+            return processHeatmapCommand(request, pattern);
+        }
+        if (actionCommand.equals("benchmark")) {
+            return PatternBenchmark.run(request, pattern);
+        }
+        if (actionCommand.equals("compare-engines")) {
+            return EngineComparison.run(request, pattern);
+        }
+        // the linear engine, if asked for and it can run the regex, and otherwise why not, for the Results label
+        LinearPattern linear = null;
+        String engineNote = null;
+        if (request.isLinear()) {
+            try {
+                linear = LinearPattern.compile(request.getRegex(), request.getFlags());
+                engineNote = "linear engine";
+            } catch (UnsupportedPatternException e) {
+                engineNote = e.getMessage() + ", so java.util.regex ran it";
+            }
+        }
+        MatchSnapshot snapshot = actionCommand.equals("matches") || actionCommand.equals("looking-at") ? null : snapshot(request, pattern, linear);
+        if (snapshot != null && snapshot.getBudgetExceeded() != null) {
+            // split and replace would be wrong without the rest of the matches, so only highlight the ones found
+            return new MatchResult(request.getGeneration(), processFindCommand(snapshot), "", false, snapshot.getBudgetExceeded());
+        }
         List<ColorRange> list = new ArrayList<>();
-        Stack<ColorRange> stack = new Stack<>();
-        for (int index = 0; index < regex.length(); index++) {
-            char ch = regex.charAt(index);
-            if (ch == '(') {
-                if (isNotEscaped(regex, index) && !isNonCapturingGroup(regex, index)) {
-                    // for now, set the size == 0. We will adjust it as required when a right paren turns up
-                    ColorRange colorRange = new ColorRange(color, index, 0, false);
-                    stack.push(colorRange);
-                    list.add(colorRange);
-                }
-            } else if (ch == ')') {
-                if (isNotEscaped(regex, index)) {
-                    // Find the corresponding opening parenthesis for this closing one
-                    int parenCount = 0;
-                    boolean foundNonCapturing = false;
-                    for (int i = index - 1; i >= 0; i--) {
-                        if (regex.charAt(i) == ')') {
-                            parenCount++;
-                        } else if (regex.charAt(i) == '(' && isNotEscaped(regex, i)) {
-                            if (parenCount == 0) {
-                                foundNonCapturing = isNonCapturingGroup(regex, i);
-                                break;
-                            } else {
-                                parenCount--;
-                            }
+        StringBuilder auxiliary = new StringBuilder();
+        // the find and split commands list their results, rather than writing them as text
+        ResultRows rows = null;
+        ReplacementSyntaxException replacementError = null;
+        try {
+            switch (actionCommand) {
+                case "find":
+                    list = processFindCommand(snapshot);
+                    rows = processGroupsCommand(snapshot);
+                    break;
+                case "looking-at":
+                    list = linear != null ? processLookingAtCommand(linear.matcher(text), text) : processLookingAtCommand(budgetedMatcher(pattern, text), text);
+                    break;
+                case "matches":
+                    list = linear != null ? processMatchesCommand(linear.matcher(text), text) : processMatchesCommand(budgetedMatcher(pattern, text), text);
+                    break;
+                case "split":
+                    list = processFindCommand(snapshot);
+                    rows = processSplitCommand(snapshot);
+                    break;
+                case "split-with-limit":
+                    list = processFindCommand(snapshot);
+                    rows = processSplitWithLimitCommand(snapshot, request.getReplacement());
+                    break;
+                case "split-with-delimiters":
+                    list = processFindCommand(snapshot);
+                    rows = processSplitWithDelimitersCommand(snapshot, request.getReplacement());
+                    break;
+                case "replace-all":
+                case "replace-first":
+                    list = processFindCommand(snapshot);
+                    AuxiliaryStream output = replaceOutput != null ? replaceOutput : new AuxiliaryStream(auxiliary::append, AuxiliaryStream.previewCap());
+                    if (!request.getRegex().trim().isEmpty()) {
+                        // validated whether or not there is a match, so that the error shows as the replacement is typed
+                        try {
+                            ReplacementTemplate template = ReplacementTemplate.compile(request.getReplacement(), pattern);
+                            processReplaceCommand(snapshot, template, actionCommand.equals("replace-all"), output);
+                        } catch (ReplacementSyntaxException e) {
+                            replacementError = e;
                         }
                     }
-                    
-                    // Only process if this closing paren belongs to a capturing group
-                    if (!foundNonCapturing) {
-                        if (!stack.isEmpty()) {
-                            ColorRange colorRange = stack.pop();
-                            colorRange.setEnd(index);
-                        } else {
-                            throw new UnmatchedLeftParenException(index);
-                        }
+                    output.close();
+                    if (replaceOutput != null) {
+                        MatchResult streamed = new MatchResult(request.getGeneration(), list, replacementError != null ? "" : null, false);
+                        return replacementError == null ? streamed : streamed.withReplacementError(replacementError);
                     }
-                }
+                    break;
             }
+        } catch (MatchBudgetExceededException e) {
+            // only matches and looking-at run a matcher of their own, rather than reading the snapshot
+            return new MatchResult(request.getGeneration(), list, "", false, e);
+        }
+        if (request.getRegex().trim().isEmpty()) {
+            auxiliary.setLength(0);
+            rows = rows == null ? null : ResultRows.EMPTY;
+        }
+        MatchResult result = rows != null ? new MatchResult(request.getGeneration(), list, rows)
+                : new MatchResult(request.getGeneration(), list, auxiliary.toString(), false);
+        if (replacementError != null) {
+            result = result.withReplacementError(replacementError);
+        }
+        String note = engineNote != null ? engineNote : snapshot == null ? null : prefilterNote(snapshot);
+        return note == null ? result : result.withNote(note);
+    }
+
+    /**
+     * @return a matcher over the text, on a budget of its own, for the commands that run it rather than reading a snapshot
+     */
+    private static Matcher budgetedMatcher(Pattern pattern, String text) {
+        return PatternCache.shared().matcher(pattern, new InterruptibleCharSequence(text, MatchBudget.start(pattern)));
+    }
+
+    /**
+     * @return how many start positions the snapshot's required literal let the scan skip, or null if it had none
+     */
+    static String prefilterNote(MatchSnapshot snapshot) {
+        RequiredLiteral literal = snapshot.getRequiredLiteral();
+        if (literal == null || snapshot.getSearchedStarts() == 0) {
+            return null;
         }
-        // find all left and right parentheses and return as 1 character ranges
-        ColorRange[] ranges = new ColorRange[list.size()];
-        list.toArray(ranges);
-        return ranges;
+        double skipped = 100.0 * (snapshot.getSearchedStarts() - snapshot.getTriedStarts()) / snapshot.getSearchedStarts();
+        return String.format("\"%s\" skipped %.1f%% of %,d positions", literal.getLiteral(), skipped, snapshot.getSearchedStarts());
     }
 
     /**
-     * Give that the user selected the Find radio, calculates the highlight ranges for all matches
+     * Give that the user selected the Find radio, calculates the highlight ranges for all matches,
+     * from the recorded snapshot rather than running the matcher
      *
-     * @param matcher the matcher matching the text and regex
-     * @param text    the target string
+     * @param snapshot the matches of the regex in the target string
      * @return the color ranges containing the matching segments
      */
-    static List<ColorRange> processFindCommand(Matcher matcher, String text) {
-        List<ColorRange> list = new ArrayList<>();
-        while (matcher.find()) {
-            processCommand(matcher, list, text);
+    static List<ColorRange> processFindCommand(MatchSnapshot snapshot) {
+        List<ColorRange> list = new ArrayList<>(snapshot.getMatchCount());
+        LineIndex lineIndex = snapshot.getLineIndex();
+        for (int match = 0; match < snapshot.getMatchCount(); match++) {
+            processCommand(snapshot.start(match, 0), snapshot.end(match, 0), list, lineIndex);
         }
         return list;
     }
 
     /**
-     * Like {@link #processFindCommand}, except displays match groups in auxiliary pabe
-     * @param matcher
-     * @param text
-     * @param auxiliaryPane
-     * @return
+     * @return the snapshot of the request's text, found by the linear engine if it is supplied, searched in parallel
+     * if the request asks for it, and otherwise only rematched around the edit since the previous request, if that
+     * is known
      */
-    static List<ColorRange> processFindCommand(Matcher matcher, String text, JEditorPane auxiliaryPane) {
-        List<ColorRange> list = new ArrayList<>();
-        int count = matcher.groupCount();
-        StringBuilder groupString = new StringBuilder();
-//        while (matcher.find()) {
-//            processCommand(matcher, list, text);
-//        }
-        while (matcher.find()) {
-            processCommand(matcher, list, text);
-        }
-        matcher.reset();
-        while (matcher.find()) {
-            for (int i = 0; i <= count; i++) {
-                String group = matcher.group(i);
-                if (group != null) {
-//                    System.out.println(group);
-                    groupString.append(i).append(". ").append(group);
-                    // the following new line is required for this pattern and input
-//                    ^(?!/admin\b)(?!/api\b)(?!/(static|assets)\b)(?!/healthz?\b).+
-                    // /users/123
-                    // /assets/
-                    // /healthy
-
-                    // However it adds an extra newline at the end
-                    // (<.*?>)
-                    // <p>Hello <b>world</b>!</p> <iframe src='hello-world.com'></iframe>
-
-                                                           groupString.append("\n"); // this adds extra space in find command.append("\n");
-                    if (i == count) {
-                        groupString.append("\n");
-                    }
-                }
-
-            }
+    private static MatchSnapshot snapshot(MatchRequest request, Pattern pattern, LinearPattern linear) {
+        if (linear != null) {
+            return MatchSnapshot.scanLinear(linear, pattern, request.getText());
         }
+        if (request.isParallel()) {
+            return MatchSnapshot.scanParallel(pattern, request.getText());
+        }
+        return MatchSnapshot.rescan(pattern, request.getText(), request.getPreviousText(), request.getEdit());
+    }
 
-        auxiliaryPane.setText(groupString.toString());
-
-        return list;
+    /**
+     * Lists the match groups for the auxiliary pane, each match's groups followed by an empty row
+     */
+    static ResultRows processGroupsCommand(MatchSnapshot snapshot) {
+        return ResultRows.groups(snapshot);
     }
 
     /**
@@ -151,7 +233,18 @@ public class Calculator {
     static List<ColorRange> processLookingAtCommand(Matcher matcher, String text) {
         List<ColorRange> list = new ArrayList<>();
         if (matcher.lookingAt()) {
-            processCommand(matcher, list, text);
+            processCommand(matcher, list, LineIndex.of(text));
+        }
+        return list;
+    }
+
+    /**
+     * Like {@link #processLookingAtCommand(Matcher, String)}, with the linear engine
+     */
+    static List<ColorRange> processLookingAtCommand(LinearMatcher matcher, String text) {
+        List<ColorRange> list = new ArrayList<>();
+        if (matcher.lookingAt()) {
+            processCommand(matcher.start(), matcher.end(), list, LineIndex.of(text));
         }
         return list;
     }
@@ -166,182 +259,346 @@ public class Calculator {
     static List<ColorRange> processMatchesCommand(Matcher matcher, String text) {
         List<ColorRange> list = new ArrayList<>();
         if (matcher.matches()) {
-            processCommand(matcher, list, text);
+            processCommand(matcher, list, LineIndex.of(text));
         }
         return list;
     }
 
-    static List<ColorRange> processSplitCommand(Matcher matcher, String text, JTextPane auxiliaryPane, Pattern pattern) {
-        List<ColorRange> list;
-        list = processFindCommand(matcher, text);
-        String[] split = pattern.split(text);
-        StringBuilder splitString = new StringBuilder();
-        if (!"".equals(text)) {
-            System.out.println(Arrays.asList(split));
-            for(int i  = 0; i < split.length; i++){
-                splitString.append(i).append(": ").append(split[i]).append("\n");
-            }
+    /**
+     * Like {@link #processMatchesCommand(Matcher, String)}, with the linear engine
+     */
+    static List<ColorRange> processMatchesCommand(LinearMatcher matcher, String text) {
+        List<ColorRange> list = new ArrayList<>();
+        if (matcher.matches()) {
+            processCommand(matcher.start(), matcher.end(), list, LineIndex.of(text));
         }
-        auxiliaryPane.setText(splitString.toString());
         return list;
     }
-    static List<ColorRange> processSplitWithLimitCommand(Matcher matcher, String text, JTextPane auxiliaryPane, Pattern pattern, JTextPane replacementPane) {
-        List<ColorRange> list;
-        list = processFindCommand(matcher, text);
-        
-        // Parse limit from replacement pane text
-        int limit = 0; // default limit
-        String replacementText = replacementPane.getText().trim();
-        if (!replacementText.isEmpty()) {
-            try {
-                limit = Integer.parseInt(replacementText);
-            } catch (NumberFormatException e) {
-                // If parsing fails, use default limit of 0
-                limit = 0;
+
+    /**
+     * Given that the user selected the Heatmap radio, runs the find loop over a {@link CountingCharSequence}, and
+     * colors each character by how often the matcher read it, on a log scale through {@link com.vgrazi.regextester.component.Constants#HEAT_COLORS}.
+     * The auxiliary pane gets the totals and the hottest regions. A run that gives up on its budget still shows
+     * the reads until then
+     *
+     * @param request the snapshot of the regex, flags and text
+     * @param pattern the compiled regex
+     * @return the heat ranges and the summary
+     */
+    static MatchResult processHeatmapCommand(MatchRequest request, Pattern pattern) {
+        String text = request.getText();
+        CountingCharSequence input = new CountingCharSequence(new InterruptibleCharSequence(text, MatchBudget.start(pattern)));
+        Matcher matcher = PatternCache.shared().matcher(pattern, input);
+        int matchCount = 0;
+        MatchBudgetExceededException budgetExceeded = null;
+        try {
+            while (matcher.find()) {
+                matchCount++;
             }
+        } catch (MatchBudgetExceededException e) {
+            budgetExceeded = e;
         }
-        
-        String[] split = pattern.split(text, limit);
-        StringBuilder splitString = new StringBuilder();
-        System.out.println(Arrays.asList(split));
-        for(int i  = 0; i < split.length; i++){
-            splitString.append(i).append(": ").append(split[i]).append("\n");
+        int[] counts = input.getCounts();
+        int max = 0;
+        for (int count : counts) {
+            max = Math.max(max, count);
         }
-        auxiliaryPane.setText(splitString.toString());
-        return list;
+        List<ColorRange> list = new ArrayList<>();
+        LineIndex lineIndex = LineIndex.of(text);
+        // one range for each run of characters of the same grade
+        int runStart = 0;
+        int runGrade = -1;
+        for (int index = 0; index <= counts.length; index++) {
+            int grade = index == counts.length ? -1 : heatGrade(counts[index], max);
+            if (grade != runGrade) {
+                if (runGrade >= 0) {
+                    processCommand(runStart, index, HEAT_COLORS[runGrade], list, lineIndex);
+                }
+                runStart = index;
+                runGrade = grade;
+            }
+        }
+        StringBuilder auxiliary = new StringBuilder();
+        if (!request.getRegex().trim().isEmpty()) {
+            appendHeatmapSummary(auxiliary, text, counts, input.getTotal(), matchCount, lineIndex);
+        }
+        return new MatchResult(request.getGeneration(), list, auxiliary.toString(), false, budgetExceeded);
     }
-    static List<ColorRange> processSplitWithDelimitersCommand(Matcher matcher, String text, JTextPane auxiliaryPane, Pattern pattern, JTextPane replacementPane) {
-        List<ColorRange> list;
-        list = processFindCommand(matcher, text);
 
-        // Parse limit from replacement pane text
-        int limit = 0; // default limit
-        String replacementText = replacementPane.getText().trim();
-        if (!replacementText.isEmpty()) {
-            try {
-                limit = Integer.parseInt(replacementText);
-            } catch (NumberFormatException e) {
-                // If parsing fails, use default limit of 0
-                limit = 0;
+    /**
+     * Given that the user selected the Pattern set radio, runs each line of the pattern pane as a pattern of its own,
+     * see {@link PatternSet}, and highlights the matches of each in its own color. Where the matches of different
+     * lines overlap, the one that starts first is shown. The auxiliary pane gets the matches and time of each line,
+     * the slowest first
+     *
+     * @param request the snapshot of the set, flags and text
+     * @return the highlights and the summary
+     * @throws PatternSyntaxException if a line does not compile
+     */
+    static MatchResult processPatternSetCommand(MatchRequest request) throws PatternSyntaxException {
+        String text = request.getText();
+        PatternSet patternSet = PatternSet.compile(request.getRegex(), request.getFlags());
+        PatternSet.Scan scan = patternSet.scan(text);
+        List<PatternSet.RuleScan> rules = scan.rules();
+
+        // the matches of all the rules, sorted by start, as the start and the index of the match among them all
+        int total = rules.stream().mapToInt(PatternSet.RuleScan::matchCount).sum();
+        long[] byStart = new long[total];
+        int[] ends = new int[total];
+        int[] ruleOf = new int[total];
+        int match = 0;
+        for (int rule = 0; rule < rules.size(); rule++) {
+            int[] offsets = rules.get(rule).offsets();
+            for (int index = 0; index < offsets.length; index += 2, match++) {
+                byStart[match] = (long) offsets[index] << 32 | match;
+                ends[match] = offsets[index + 1];
+                ruleOf[match] = rule;
             }
         }
-
-        String[] split = pattern.splitWithDelimiters(text, limit);
-        StringBuilder splitString = new StringBuilder();
-        if (!"".equals(text)) {
-            System.out.println(Arrays.asList(split));
-            for(int i  = 0; i < split.length; i++){
-                splitString.append(i).append(": ").append(split[i]).append("\n");
+        Arrays.sort(byStart);
+        // the highlighter needs ranges in document order that do not overlap, so each starts after the one before
+        List<ColorRange> list = new ArrayList<>();
+        LineIndex lineIndex = LineIndex.of(text);
+        int highlightedTo = 0;
+        for (long key : byStart) {
+            int start = Math.max((int) (key >>> 32), highlightedTo);
+            int index = (int) key;
+            if (start < ends[index]) {
+                processCommand(start, ends[index], PatternSet.colorOf(ruleOf[index]), list, lineIndex);
+                highlightedTo = ends[index];
             }
         }
-        auxiliaryPane.setText(splitString.toString());
-        return list;
+
+        MatchBudgetExceededException budgetExceeded = rules.stream().map(PatternSet.RuleScan::budgetExceeded)
+                .filter(Objects::nonNull).findFirst().orElse(null);
+        StringBuilder auxiliary = new StringBuilder();
+        if (!rules.isEmpty()) {
+            appendPatternSetSummary(auxiliary, text, scan, total);
+        }
+        return new MatchResult(request.getGeneration(), list, auxiliary.toString(), false, budgetExceeded);
     }
 
-    static List<ColorRange> processReplaceAllCommand(Matcher matcher, String text, JTextPane auxiliaryPanel, JTextPane replacementPane) {
-        List<ColorRange> list = processFindCommand(matcher, text);
-        SwingUtilities.invokeLater(() -> {
-            try {
-                String replacement = replacementPane.getText();
-                String replaced = matcher.replaceAll(replacement);
-                if (!replaced.equals("")) {
-                    replaced = replaced.replaceAll("\n", "\n>");
+    /**
+     * Lists the matches, the positions tried and the time of each line of the set, the slowest first, with its
+     * share of the time spent matching. The rest of the scan's time was spent looking up which lines to try
+     */
+    private static void appendPatternSetSummary(StringBuilder auxiliary, String text, PatternSet.Scan scan, int matchCount) {
+        List<PatternSet.RuleScan> rules = new ArrayList<>(scan.rules());
+        long matching = rules.stream().mapToLong(PatternSet.RuleScan::nanos).sum();
+        long prefiltered = rules.stream().filter(rule -> rule.attempts() >= 0).count();
+        auxiliary.append(String.format("%,d patterns over %,d characters, %,d matches in %s%n",
+                rules.size(), text.length(), matchCount, PatternBenchmark.duration(scan.nanos())));
+        auxiliary.append(String.format("%,d tried only where their literal prefix is, %,d at every position; %s finding the prefixes%n",
+                prefiltered, rules.size() - prefiltered, PatternBenchmark.duration(Math.max(0, scan.nanos() - matching))));
+        auxiliary.append(String.format("%5s %10s %10s %10s %6s  %s%n", "Line", "Matches", "Tried", "Time", "Share", "Pattern"));
+        rules.sort(Comparator.comparingLong(PatternSet.RuleScan::nanos).reversed());
+        for (PatternSet.RuleScan rule : rules) {
+            auxiliary.append(String.format("%5d %,10d %10s %10s %5.1f%%  %s%s%n", rule.rule().line(), rule.matchCount(),
+                    rule.attempts() < 0 ? "every" : String.format("%,d", rule.attempts()), PatternBenchmark.duration(rule.nanos()),
+                    100.0 * rule.nanos() / Math.max(1, matching), rule.rule().regex(),
+                    rule.budgetExceeded() == null ? ""
+                            : String.format("  (gave up after %,d steps, at offset %,d)", rule.budgetExceeded().getSteps(), rule.budgetExceeded().getOffset())));
+        }
+    }
+
+    /**
+     * @return the index into HEAT_COLORS for the number of reads, or -1 if the character was never read
+     */
+    private static int heatGrade(int count, int max) {
+        if (count == 0) {
+            return -1;
+        }
+        // count <= max < max + 1, so the grade stays below HEAT_COLORS.length
+        return (int) (HEAT_COLORS.length * Math.log(count) / Math.log(max + 1.0));
+    }
+
+    private record Region(int start, int end, long reads) {
+    }
+
+    /**
+     * Lists the total reads, and the regions of the text, of up to HEAT_REGION_SIZE characters within a line,
+     * where the matcher read the most
+     */
+    private static void appendHeatmapSummary(StringBuilder auxiliary, String text, int[] counts, long total, int matchCount, LineIndex lineIndex) {
+        auxiliary.append(String.format("%,d reads of %,d characters, %.1f per character, %,d matches%n",
+                total, text.length(), (double) total / Math.max(1, text.length()), matchCount));
+        List<Region> regions = new ArrayList<>();
+        int start = 0;
+        long reads = 0;
+        for (int index = 0; index < counts.length; index++) {
+            reads += counts[index];
+            if (index + 1 - start == HEAT_REGION_SIZE || text.charAt(index) == '\n' || index + 1 == counts.length) {
+                if (reads > 0) {
+                    regions.add(new Region(start, index + 1, reads));
                 }
-                auxiliaryPanel.setText(replaced);
-            } catch (Exception e) {
-                auxiliaryPanel.setText("");
-                replacementPane.setBorder(Constants.RED_BORDER);
+                start = index + 1;
+                reads = 0;
             }
-        });
-        return list;
+        }
+        regions.sort(Comparator.comparingLong(Region::reads).reversed());
+        if (!regions.isEmpty()) {
+            auxiliary.append("Hottest regions:\n");
+        }
+        for (Region region : regions.subList(0, Math.min(HEAT_REGION_COUNT, regions.size()))) {
+            auxiliary.append(String.format("%,d-%,d (line %,d): %,d reads, %.1f per character: %s%n",
+                    region.start(), region.end() - 1, lineIndex.countLinesBefore(region.start()) + 1, region.reads(),
+                    (double) region.reads() / (region.end() - region.start()), text.substring(region.start(), region.end()).strip()));
+        }
     }
 
-    static List<ColorRange> processReplaceFirstCommand(Matcher matcher, String text, JTextPane auxiliaryPanel, JTextPane replacementPane) {
-        List<ColorRange> list = processFindCommand(matcher, text);
-        SwingUtilities.invokeLater(() -> {
+    static ResultRows processSplitCommand(MatchSnapshot snapshot) {
+        if ("".equals(snapshot.getText())) {
+            return ResultRows.EMPTY;
+        }
+        return ResultRows.pieces(snapshot, snapshot.splitBounds(0, false));
+    }
+    static ResultRows processSplitWithLimitCommand(MatchSnapshot snapshot, String limitText) {
+        int limit = parseLimit(limitText);
+        return ResultRows.pieces(snapshot, snapshot.splitBounds(limit, false));
+    }
+    static ResultRows processSplitWithDelimitersCommand(MatchSnapshot snapshot, String limitText) {
+        if ("".equals(snapshot.getText())) {
+            return ResultRows.EMPTY;
+        }
+        int limit = parseLimit(limitText);
+        return ResultRows.pieces(snapshot, snapshot.splitBounds(limit, true));
+    }
+
+    /**
+     * Parses the split limit from the replacement pane text
+     * @param limitText the replacement pane text
+     * @return the limit, or the default limit of 0 if the text is empty or not a number
+     */
+    private static int parseLimit(String limitText) {
+        int limit = 0; // default limit
+        String trimmed = limitText.trim();
+        if (!trimmed.isEmpty()) {
             try {
-                String replacement = replacementPane.getText();
-                String replaced = matcher.replaceFirst(replacement);
-                if (!replaced.equals("")) {
-                    replaced = replaced.replaceAll("\n", "\n>");
-                }
-                auxiliaryPanel.setText(replaced);
-            } catch (Exception e) {
-                auxiliaryPanel.setText("");
-                replacementPane.setBorder(Constants.RED_BORDER);
+                limit = Integer.parseInt(trimmed);
+            } catch (NumberFormatException e) {
+                // If parsing fails, use default limit of 0
+                limit = 0;
             }
-        });
-        return list;
+        }
+        return limit;
+    }
+
+    /**
+     * Streams the replace-all or replace-first result into the auxiliary output, prefixing each continuation line
+     * with ">" as it goes. Stops producing output once the stream is full
+     * @param template the replacement, already parsed for the snapshot's pattern
+     */
+    static void processReplaceCommand(MatchSnapshot snapshot, ReplacementTemplate template, boolean all, AuxiliaryStream auxiliary) {
+        auxiliary.setContinuationPrefix(">");
+        String text = snapshot.getText();
+        int count = all ? snapshot.getMatchCount() : Math.min(1, snapshot.getMatchCount());
+        StringBuilder expanded = new StringBuilder();
+        int copiedTo = 0;
+        for (int match = 0; match < count && !auxiliary.isFull(); match++) {
+            auxiliary.append(text, copiedTo, snapshot.start(match, 0));
+            expanded.setLength(0);
+            template.appendTo(expanded, snapshot, match);
+            auxiliary.append(expanded);
+            copiedTo = snapshot.end(match, 0);
+        }
+        auxiliary.append(text, copiedTo, text.length());
     }
 
     /**
      * Used by all of the find, match, etc radios, calculates the next range in the matcher, and adds it to the supplied list
      *
-     * @param matcher the matcher matching the text and regex
-     * @param list    the list of color ranges to render
-     * @param text    the target string
+     * @param matcher   the matcher matching the text and regex
+     * @param list      the list of color ranges to render
+     * @param lineIndex the line feed offsets of the target string
+     */
+    private static void processCommand(Matcher matcher, List<ColorRange> list, LineIndex lineIndex) {
+        processCommand(matcher.start(), matcher.end(), list, lineIndex);
+    }
+
+    /**
+     * Like {@link #processCommand(Matcher, List, LineIndex)}, for a match already recorded in a {@link MatchSnapshot}
+     *
+     * @param start     the start offset of the match
+     * @param end       the end offset (exclusive) of the match
+     * @param list      the list of color ranges to render
+     * @param lineIndex the line feed offsets of the target string
      */
-    private static void processCommand(Matcher matcher, List<ColorRange> list, String text) {
-        int start = matcher.start();
-        int end = matcher.end();
+    private static void processCommand(int start, int end, List<ColorRange> list, LineIndex lineIndex) {
+        processCommand(start, end, HIGHLIGHT_COLOR, list, lineIndex);
+    }
+
+    /**
+     * Like {@link #processCommand(int, int, List, LineIndex)}, in the supplied color
+     */
+    static void processCommand(int start, int end, Color color, List<ColorRange> list, LineIndex lineIndex) {
         // count the new lines between 0 and start, and subtract those from start
-        int startLineCount = Utils.countLines(text.substring(0, start));
+        int startLineCount = lineIndex.countLinesBefore(start);
         // start and end could be on different lines, so we need a separate count for end
-        int endLineCount = Utils.countLines(text.substring(0, end));
-        ColorRange range = new ColorRange(HIGHLIGHT_COLOR, start - startLineCount, end - endLineCount - 1, true);
+        int endLineCount = lineIndex.countLinesBefore(end);
+        ColorRange range = new ColorRange(color, start - startLineCount, end - endLineCount - 1, true);
         list.add(range);
     }
 
 
     /**
      * Returns a list of all ranges from the character pane that match the group indexed.
+     * Touches no Swing component, so it may be called from the {@link MatchWorker} thread
      *
-     * @param characterPane contains the target text
+     * @param text          the target text, as snapshotted from the character pane
      * @param groupIndex    the 1-based index of the highlighted group
      * @param regex         the regex pattern
      * @param flags         the selected flags
      * @return the color ranges matching the group index
      * @throws PatternSyntaxException if a regex ccmpilation error
      */
-    static List<ColorRange> calculateMatchingGroups(JTextPane characterPane, int groupIndex, String regex, int flags) throws PatternSyntaxException {
+    public static List<ColorRange> calculateMatchingGroups(String text, int groupIndex, String regex, int flags) throws PatternSyntaxException {
         List<ColorRange> list = new ArrayList<>();
-        Pattern pattern = Pattern.compile(regex, flags);
-        Matcher matcher = pattern.matcher(characterPane.getText());
-        extractRangeByGroupIndexed(groupIndex, list, matcher);
+        Pattern pattern = PatternCache.shared().compile(regex, flags);
+        // usually the render of the same pattern and text has already recorded the snapshot, so this does not rescan
+        MatchSnapshot snapshot = MatchSnapshot.scan(pattern, text);
+        for (int match = 0; match < snapshot.getMatchCount(); match++) {
+            int start = snapshot.start(match, groupIndex);
+            int end = snapshot.end(match, groupIndex) - 1;
+            addInclusiveRangeToList(list, start, end);
+        }
         return list;
     }
 
     /**
-     * Returns a list of all ranges from the character pane that match the group indexed.
+     * Returns the ranges of every match of the pattern in the text, in document order
      *
-     * @param characterPane contains the target text
+     * @param text          the target text, as snapshotted from the character pane
+     * @param regex         the regex pattern
+     * @param flags         the selected flags
+     * @return the list of color ranges of the matches
+     * @throws PatternSyntaxException if a regex compilation error
+     */
+    static List<ColorRange> calculateFinds(String text, String regex, int flags) {
+        Pattern pattern = PatternCache.shared().compile(regex, flags);
+        // a snapshot rather than a bare matcher, so that catastrophic backtracking gives up instead of hanging the caller
+        return processFindCommand(MatchSnapshot.scan(pattern, text));
+    }
+
+    /**
+     * Returns a list of all ranges from the character pane that match the group indexed, in document order.
+     * These are kept apart from the find ranges, to be overlaid on them
+     *
+     * @param text          the target text, as snapshotted from the character pane
      * @param groupName     the name of the named group
      * @param regex         the regex pattern
      * @param flags         the selected flags
      * @return the list of color ranges matching the named group
      * @throws PatternSyntaxException if a regex compilation error
      */
-    static List<ColorRange> calculateMatchingGroup(JTextPane characterPane, String groupName, String regex, int flags) {
-
-        Pattern pattern = Pattern.compile(regex, flags);
-        Matcher matcher = pattern.matcher(characterPane.getText());
-
-        // do the finds first, then the groups, so that the group highlighting will overlay the find highlights
-        List<ColorRange> list = Calculator.processFindCommand(matcher, characterPane.getText());
-        matcher = pattern.matcher(characterPane.getText());
-
-        extractRangeByNamedGroup(groupName, matcher, list);
+    static List<ColorRange> calculateMatchingGroup(String text, String groupName, String regex, int flags) {
+        Pattern pattern = PatternCache.shared().compile(regex, flags);
+        // usually calculateFinds has just recorded the snapshot, so this does not rescan
+        MatchSnapshot snapshot = MatchSnapshot.scan(pattern, text);
+        List<ColorRange> list = new ArrayList<>();
+        extractRangeByNamedGroup(groupName, pattern, snapshot, list);
         return list;
     }
 
-    private static void extractRangeByGroupIndexed(int groupIndex, List<ColorRange> list, Matcher matcher) {
-        while (matcher.find()) {
-            int start = matcher.start(groupIndex);
-            int end = matcher.end(groupIndex) - 1;
-            addInclusiveRangeToList(list, start, end);
-        }
-    }
-
     /**
      * Helper method, mostly because IntelliJ was confusingly reporting these
      * methods as code duplicates, even though only these two calls were
@@ -355,70 +612,16 @@ public class Calculator {
         list.add(range);
     }
 
-    private static void extractRangeByNamedGroup(String groupName, Matcher matcher, List<ColorRange> list) {
-        try {
-            while (matcher.find()) {
-                int start = matcher.start(groupName);
-                int end = matcher.end(groupName) - 1;
-                addInclusiveRangeToList(list, start, end);
-            }
-        } catch (Exception e) {
-            System.out.println("Calculator.calculateMatchingGroup " + e);
+    private static void extractRangeByNamedGroup(String groupName, Pattern pattern, MatchSnapshot snapshot, List<ColorRange> list) {
+        Integer group = pattern.namedGroups().get(groupName);
+        if (group == null) {
+            System.out.println("Calculator.calculateMatchingGroup no group with name <" + groupName + ">");
+            return;
         }
-    }
-
-    /**
-     * checks that the character at the supplied index is not escaped
-     */
-    private static boolean isNotEscaped(String regex, int index) {
-        // count the number of consecutive \ characters preceding the supplied index
-        // if this is odd return true
-        int count = 0;
-        for (int i = index - 1; i >= 0; i++) {
-            if (regex.charAt(i) == '\\') {
-                count++;
-            } else {
-                break;
-            }
+        for (int match = 0; match < snapshot.getMatchCount(); match++) {
+            int start = snapshot.start(match, group);
+            int end = snapshot.end(match, group) - 1;
+            addInclusiveRangeToList(list, start, end);
         }
-        return count % 2 == 0;
-    }
-
-    /**
-     * checks if the parenthesis at the supplied index starts a non-capturing group
-     * Non-capturing groups include:
-     * (?:...) - non-capturing group
-     * (?=...) - positive lookahead
-     * (?!...) - negative lookahead
-     * (?<=...) - positive lookbehind
-     * (?<!...) - negative lookbehind
-     * (?>...) - atomic group
-     * (?#...) - comment
-     * 
-     * @param regex the regex pattern
-     * @param index the index of the opening parenthesis
-     * @return true if this is a non-capturing group, false otherwise
-     */
-    private static boolean isNonCapturingGroup(String regex, int index) {
-        if (index + 1 >= regex.length()) {
-            return false;
-        }
-        
-        // Check if the next character after '(' is '?'
-        if (regex.charAt(index + 1) == '?') {
-            if (index + 2 >= regex.length()) {
-                return false;
-            }
-            
-            char thirdChar = regex.charAt(index + 2);
-            return thirdChar == ':' ||      // (?:...) non-capturing group
-                   thirdChar == '=' ||      // (?=...) positive lookahead  
-                   thirdChar == '!' ||      // (?!...) negative lookahead
-                   thirdChar == '<' ||      // (?<=...) or (?<!...) lookbehind
-                   thirdChar == '>' ||      // (?>...) atomic group
-                   thirdChar == '#';        // (?#...) comment
-        }
-        
-        return false;
     }
 }
@@ -0,0 +1,56 @@
+package com.vgrazi.regextester.action;
+
+/**
+ * Counts every read of each character of the wrapped text. The matcher reads a character each time it tries it,
+ * so the counts show where in the text the pattern spends its time, and where it backtracks
+ */
+public class CountingCharSequence implements CharSequence {
+    private final CharSequence inner;
+    private final int[] counts;
+    private long total;
+
+    public CountingCharSequence(CharSequence inner) {
+        this.inner = inner;
+        this.counts = new int[inner.length()];
+    }
+
+    @Override
+    public char charAt(int index) {
+        char ch = inner.charAt(index);
+        counts[index]++;
+        total++;
+        return ch;
+    }
+
+    @Override
+    public int length() {
+        return inner.length();
+    }
+
+    /**
+     * Not counted: the matcher only takes subsequences to return groups, not to match
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return inner.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return inner.toString();
+    }
+
+    /**
+     * @return the number of reads of each offset
+     */
+    public int[] getCounts() {
+        return counts;
+    }
+
+    /**
+     * @return the number of reads of all offsets
+     */
+    public long getTotal() {
+        return total;
+    }
+}
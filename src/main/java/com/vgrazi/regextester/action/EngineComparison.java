@@ -0,0 +1,147 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.ColorRange;
+import com.vgrazi.regextester.component.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the pattern on both engines over the text, for the Compare engines radio: java.util.regex and the
+ * {@link LinearPattern} engine each find all the matches, and each is timed as the {@link PatternBenchmark} times
+ * a run, the fastest of {@link Constants#ENGINE_COMPARISON_RUNS} runs. The matches that differ, in their own
+ * offsets or in those of their groups, are highlighted in {@link Constants#ENGINE_DIFFERENCE_COLOR} and listed.
+ * java.util.regex first finds the matches on its budget, so a pattern that backtracks catastrophically gives up
+ * there, rather than in the timed runs, and only the linear engine is timed
+ */
+public final class EngineComparison {
+    private EngineComparison() {
+    }
+
+    /**
+     * Runs the comparison on the {@link MatchWorker} thread
+     * @return the highlights of the matches, and the report for the auxiliary pane
+     * @throws CancellationException if the worker cancelled the run
+     */
+    static MatchResult run(MatchRequest request, Pattern pattern) {
+        String text = request.getText();
+        MatchSnapshot java = MatchSnapshot.scan(pattern, text);
+        if (request.getRegex().trim().isEmpty()) {
+            return new MatchResult(request.getGeneration(), Calculator.processFindCommand(java), "", false, java.getBudgetExceeded());
+        }
+        LinearPattern linear;
+        try {
+            linear = LinearPattern.compile(request.getRegex(), request.getFlags());
+        } catch (UnsupportedPatternException e) {
+            return new MatchResult(request.getGeneration(), Calculator.processFindCommand(java),
+                    e.getMessage() + ", so there is nothing to compare\n", false, java.getBudgetExceeded());
+        }
+        MatchSnapshot found = MatchSnapshot.findLinear(linear, pattern, text);
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%s over %,d characters, %,d instructions for the linear engine%n",
+                pattern.pattern(), text.length(), linear.size()));
+        long linearNanos = fastest(() -> run(linear, text));
+        MatchBudgetExceededException budgetExceeded = java.getBudgetExceeded();
+        if (budgetExceeded != null) {
+            report.append(String.format("java.util.regex:    gave up after %,d steps, at offset %,d, having found %,d matches%n",
+                    budgetExceeded.getSteps(), budgetExceeded.getOffset(), java.getMatchCount()));
+            report.append(String.format("Linear engine:      %,d matches in %s%n", found.getMatchCount(), PatternBenchmark.duration(linearNanos)));
+            // the linear engine's matches are the whole answer, which java.util.regex never got to
+            return new MatchResult(request.getGeneration(), Calculator.processFindCommand(found), report.toString(), false);
+        }
+        long javaNanos = fastest(() -> PatternBenchmark.run(pattern, text));
+        report.append(String.format("java.util.regex:    %,d matches in %s%n", java.getMatchCount(), PatternBenchmark.duration(javaNanos)));
+        report.append(String.format("Linear engine:      %,d matches in %s%n", found.getMatchCount(), PatternBenchmark.duration(linearNanos)));
+        report.append(String.format("Ratio:              the linear engine takes %.2fx the time%n", (double) linearNanos / Math.max(1, javaNanos)));
+
+        List<ColorRange> list = new ArrayList<>();
+        List<String> differences = new ArrayList<>();
+        int count = compare(java, found, list, differences);
+        report.append(count == 0 ? "Differences:        none, the same matches and groups\n"
+                : String.format("Differences:        %,d matches differ%s%n", count,
+                count > differences.size() ? String.format(", the first %,d:", differences.size()) : ":"));
+        differences.forEach(difference -> report.append("  ").append(difference).append('\n'));
+        return new MatchResult(request.getGeneration(), list, report.toString(), false);
+    }
+
+    /**
+     * Walks the matches of both engines in the order they were found, which is by start, highlighting each, those
+     * that differ in the difference color, and listing the first that differ
+     * @return the number of matches that differ
+     */
+    private static int compare(MatchSnapshot java, MatchSnapshot linear, List<ColorRange> list, List<String> differences) {
+        LineIndex lineIndex = java.getLineIndex();
+        int count = 0;
+        int highlightedTo = 0;
+        int left = 0;
+        int right = 0;
+        while (left < java.getMatchCount() || right < linear.getMatchCount()) {
+            int javaStart = left < java.getMatchCount() ? java.start(left, 0) : Integer.MAX_VALUE;
+            int linearStart = right < linear.getMatchCount() ? linear.start(right, 0) : Integer.MAX_VALUE;
+            String javaMatch = javaStart <= linearStart ? describe(java, left) : null;
+            String linearMatch = linearStart <= javaStart ? describe(linear, right) : null;
+            int start = Math.min(javaStart, linearStart);
+            int end = Math.max(javaMatch == null ? 0 : java.end(left++, 0), linearMatch == null ? 0 : linear.end(right++, 0));
+            boolean same = javaMatch != null && javaMatch.equals(linearMatch);
+            if (!same) {
+                count++;
+                if (differences.size() < Constants.ENGINE_DIFFERENCES_LISTED) {
+                    differences.add(String.format("java.util.regex %s, linear engine %s", javaMatch == null ? "no match" : javaMatch,
+                            linearMatch == null ? "no match" : linearMatch));
+                }
+            }
+            // the highlighter needs ranges in document order that do not overlap
+            start = Math.max(start, highlightedTo);
+            if (start < end) {
+                Calculator.processCommand(start, end, same ? Constants.HIGHLIGHT_COLOR : Constants.ENGINE_DIFFERENCE_COLOR, list, lineIndex);
+                highlightedTo = end;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the offsets of the match and of its groups, as "start-end (1: start-end, ...)"
+     */
+    private static String describe(MatchSnapshot snapshot, int match) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(snapshot.start(match, 0)).append('-').append(snapshot.end(match, 0));
+        for (int group = 1; group <= snapshot.getGroupCount(); group++) {
+            builder.append(group == 1 ? " (" : ", ").append(group).append(": ");
+            builder.append(snapshot.start(match, group) < 0 ? "none" : snapshot.start(match, group) + "-" + snapshot.end(match, group));
+        }
+        return snapshot.getGroupCount() == 0 ? builder.toString() : builder.append(')').toString();
+    }
+
+    /**
+     * @return the time of the fastest of the runs, checking for cancellation between them
+     */
+    private static long fastest(Runnable run) {
+        long fastest = Long.MAX_VALUE;
+        for (int count = 0; count < Constants.ENGINE_COMPARISON_RUNS; count++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Engine comparison cancelled");
+            }
+            long start = System.nanoTime();
+            run.run();
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return fastest;
+    }
+
+    /**
+     * One run of the linear engine, a find loop to the end
+     * @return the number of matches, which also keeps the JIT from eliminating the run
+     */
+    private static int run(LinearPattern pattern, String text) {
+        LinearMatcher matcher = pattern.matcher(text);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+}
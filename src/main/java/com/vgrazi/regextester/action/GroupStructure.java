@@ -0,0 +1,244 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.ColorRange;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The groups of a regex, parsed in one pass: every pair of parentheses, what kind of group it opens, and for
+ * capturing groups the group number the Matcher reports it under. Escapes, \Q...\E quotes and character classes
+ * are skipped, so that their parentheses are not mistaken for groups. Also holds a table from each offset of the
+ * regex to the group whose parenthesis is there, so that finding the group at the caret takes constant time.
+ * Parse once per edit of the pattern, then look up as often as the caret moves
+ */
+public final class GroupStructure {
+    public enum Kind {
+        // (...)
+        CAPTURING,
+        // (?<name>...)
+        NAMED,
+        // (?:...) and (?flags:...)
+        NON_CAPTURING,
+        // (?=...), (?!...), (?<=...) and (?<!...)
+        LOOKAROUND,
+        // (?>...)
+        ATOMIC,
+        // (?flags), which only sets the flags for the rest of the enclosing group
+        FLAGS;
+
+        public boolean isCapturing() {
+            return this == CAPTURING || this == NAMED;
+        }
+    }
+
+    /**
+     * One pair of parentheses
+     * @param open   the offset of the (
+     * @param close  the offset of the matching )
+     * @param kind   what kind of group the pair delimits
+     * @param number the group number of a capturing group, starting at 1, otherwise 0
+     * @param name   the name of a named group, otherwise null
+     * @param parent the index in {@link #getGroups()} of the enclosing group, or -1 at the top level
+     */
+    public record Group(int open, int close, Kind kind, int number, String name, int parent) {
+    }
+
+    private final List<Group> groups;
+    private final List<Group> capturingGroups;
+    // for each offset of the regex, the index in groups of the pair with a parenthesis there, otherwise -1
+    private final int[] groupAt;
+    // whether there is a | outside of every group, so that the regex is a choice of alternatives at the top level
+    private final boolean topLevelAlternation;
+
+    private GroupStructure(List<Group> groups, int[] groupAt, boolean topLevelAlternation) {
+        this.groups = groups;
+        this.groupAt = groupAt;
+        this.topLevelAlternation = topLevelAlternation;
+        this.capturingGroups = groups.stream().filter(group -> group.kind().isCapturing()).toList();
+    }
+
+    /**
+     * @param regex the regex
+     * @param flags the Pattern flags it is compiled with. {@link Pattern#LITERAL} has no groups, and
+     *              {@link Pattern#COMMENTS} skips from # to the end of the line
+     * @throws UnmatchedLeftParenException at the first ) without a (, or else the first ( without a )
+     */
+    public static GroupStructure parse(String regex, int flags) throws UnmatchedLeftParenException {
+        int length = regex.length();
+        int[] groupAt = new int[length];
+        Arrays.fill(groupAt, -1);
+        if ((flags & Pattern.LITERAL) != 0) {
+            return new GroupStructure(List.of(), groupAt, false);
+        }
+        boolean comments = (flags & Pattern.COMMENTS) != 0;
+
+        // groups are listed by their (, and completed when their ) turns up
+        List<int[]> pending = new ArrayList<>();
+        List<Kind> kinds = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int[] open = new int[8];
+        int depth = 0;
+        int groupNumber = 0;
+        boolean topLevelAlternation = false;
+
+        for (int index = 0; index < length; index++) {
+            char ch = regex.charAt(index);
+            if (ch == '\\') {
+                if (index + 1 < length && regex.charAt(index + 1) == 'Q') {
+                    // quoted to the \E, or to the end
+                    int end = regex.indexOf("\\E", index + 2);
+                    index = end < 0 ? length : end + 1;
+                } else {
+                    index++;
+                }
+            } else if (ch == '[') {
+                index = skipCharacterClass(regex, index);
+            } else if (ch == '#' && comments) {
+                while (index + 1 < length && regex.charAt(index + 1) != '\n') {
+                    index++;
+                }
+            } else if (ch == '(') {
+                Kind kind = Kind.CAPTURING;
+                String name = null;
+                if (index + 1 < length && regex.charAt(index + 1) == '?') {
+                    char next = index + 2 < length ? regex.charAt(index + 2) : 0;
+                    char afterNext = index + 3 < length ? regex.charAt(index + 3) : 0;
+                    if (next == '<' && afterNext != '=' && afterNext != '!') {
+                        kind = Kind.NAMED;
+                        int end = regex.indexOf('>', index + 3);
+                        name = regex.substring(index + 3, end < 0 ? length : end);
+                    } else if (next == '=' || next == '!' || next == '<') {
+                        kind = Kind.LOOKAROUND;
+                    } else if (next == '>') {
+                        kind = Kind.ATOMIC;
+                    } else {
+                        kind = flagsKind(regex, index + 2);
+                    }
+                }
+                int number = kind.isCapturing() ? ++groupNumber : 0;
+                int parent = depth == 0 ? -1 : open[depth - 1];
+                if (depth == open.length) {
+                    open = Arrays.copyOf(open, depth * 2);
+                }
+                open[depth++] = pending.size();
+                groupAt[index] = pending.size();
+                pending.add(new int[]{index, -1, number, parent});
+                kinds.add(kind);
+                names.add(name);
+            } else if (ch == ')') {
+                if (depth == 0) {
+                    throw new UnmatchedLeftParenException(index);
+                }
+                int group = open[--depth];
+                pending.get(group)[1] = index;
+                groupAt[index] = group;
+            } else if (ch == '|' && depth == 0) {
+                topLevelAlternation = true;
+            }
+        }
+        if (depth > 0) {
+            throw new UnmatchedLeftParenException(pending.get(open[depth - 1])[0]);
+        }
+
+        List<Group> groups = new ArrayList<>(pending.size());
+        for (int group = 0; group < pending.size(); group++) {
+            int[] pair = pending.get(group);
+            groups.add(new Group(pair[0], pair[1], kinds.get(group), pair[2], names.get(group), pair[3]));
+        }
+        return new GroupStructure(groups, groupAt, topLevelAlternation);
+    }
+
+    /**
+     * @return the offset of the ] closing the character class opened at the supplied offset, allowing for escapes,
+     * nested classes such as [a-z&&[^aeiou]], and a ] straight after the [ or [^, which is a literal
+     */
+    static int skipCharacterClass(String regex, int start) {
+        int depth = 0;
+        for (int index = start; index < regex.length(); index++) {
+            char ch = regex.charAt(index);
+            if (ch == '\\') {
+                index++;
+            } else if (ch == '[') {
+                depth++;
+                if (index + 1 < regex.length() && regex.charAt(index + 1) == '^') {
+                    index++;
+                }
+                if (index + 1 < regex.length() && regex.charAt(index + 1) == ']') {
+                    index++;
+                }
+            } else if (ch == ']' && --depth == 0) {
+                return index;
+            }
+        }
+        // unclosed; the Pattern reports that
+        return regex.length();
+    }
+
+    /**
+     * @return whether the (? group whose flags start at the supplied offset is (?flags:...) or just (?flags)
+     */
+    private static Kind flagsKind(String regex, int start) {
+        for (int index = start; index < regex.length(); index++) {
+            char ch = regex.charAt(index);
+            if (ch == ')') {
+                return Kind.FLAGS;
+            }
+            if (ch == ':' || !(Character.isLetter(ch) || ch == '-')) {
+                return Kind.NON_CAPTURING;
+            }
+        }
+        return Kind.NON_CAPTURING;
+    }
+
+    /**
+     * @return every pair of parentheses, in the order of their (
+     */
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return the capturing and named groups, in the order of their group numbers
+     */
+    public List<Group> getCapturingGroups() {
+        return capturingGroups;
+    }
+
+    /**
+     * @return whether the regex has a | outside of every group, such as a|b, rather than only inside groups, as in (a|b)
+     */
+    public boolean hasTopLevelAlternation() {
+        return topLevelAlternation;
+    }
+
+    /**
+     * @return the group with its ( or ) at the supplied offset, or null if there is no parenthesis there
+     */
+    public Group groupAt(int offset) {
+        if (offset < 0 || offset >= groupAt.length || groupAt[offset] < 0) {
+            return null;
+        }
+        return groups.get(groupAt[offset]);
+    }
+
+    /**
+     * @return the capturing group with its ( or ) at the supplied offset, or null if there is none
+     */
+    public Group capturingGroupAt(int offset) {
+        Group group = groupAt(offset);
+        return group != null && group.kind().isCapturing() ? group : null;
+    }
+
+    /**
+     * @return a range coloring the parentheses of each capturing group, in the order of the group numbers
+     */
+    public ColorRange[] toColorRanges(Color color) {
+        return capturingGroups.stream()
+                .map(group -> new ColorRange(color, group.open(), group.close(), false))
+                .toArray(ColorRange[]::new);
+    }
+}
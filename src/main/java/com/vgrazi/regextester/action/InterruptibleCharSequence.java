@@ -0,0 +1,64 @@
+package com.vgrazi.regextester.action;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * java.util.regex never checks the interrupt flag, so a runaway match can't be cancelled by interrupting its thread.
+ * This wraps the target text and checks the flag on every character access, which the matcher performs constantly,
+ * and aborts the match with a CancellationException once the {@link MatchWorker} has cancelled the run.
+ * Given a {@link MatchBudget}, it also counts each access against it, so that a run that backtracks catastrophically
+ * gives up on its own, with a {@link MatchBudgetExceededException}
+ */
+public class InterruptibleCharSequence implements CharSequence {
+    private final CharSequence inner;
+    // the thread whose interruption cancels the match, or null for whichever thread is matching
+    private final Thread owner;
+    // the budget counting the accesses, or null for no limit
+    private final MatchBudget budget;
+
+    public InterruptibleCharSequence(CharSequence inner) {
+        this(inner, null, null);
+    }
+
+    public InterruptibleCharSequence(CharSequence inner, MatchBudget budget) {
+        this(inner, null, budget);
+    }
+
+    /**
+     * Checks the supplied thread instead of the current one, so that work handed to other threads,
+     * such as the {@link ParallelFind} chunks, stops when the thread waiting for it is cancelled
+     * @param owner  the thread whose interruption cancels the match, or null for whichever thread is matching
+     * @param budget the budget to count the accesses against, or null for no limit
+     */
+    public InterruptibleCharSequence(CharSequence inner, Thread owner, MatchBudget budget) {
+        this.inner = inner;
+        this.owner = owner;
+        this.budget = budget;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if ((owner == null ? Thread.currentThread() : owner).isInterrupted()) {
+            throw new CancellationException("Match cancelled at index " + index);
+        }
+        if (budget != null) {
+            budget.step(index);
+        }
+        return inner.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return inner.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new InterruptibleCharSequence(inner.subSequence(start, end), owner, budget);
+    }
+
+    @Override
+    public String toString() {
+        return inner.toString();
+    }
+}
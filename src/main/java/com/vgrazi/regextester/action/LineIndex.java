@@ -0,0 +1,51 @@
+package com.vgrazi.regextester.action;
+
+import java.util.Arrays;
+
+/**
+ * The offsets of every line feed in a text, built once per text version.
+ * Replaces counting the line feeds of text.substring(0, offset) for every match (see {@link Utils#countLines}),
+ * which copied and scanned the whole prefix twice per match: a lookup here is a binary search with no allocation.
+ * The index is built with String.indexOf, which the JIT compiles to a vectorized scan
+ */
+public final class LineIndex {
+    private final int[] lineFeeds;
+    private final int count;
+
+    private LineIndex(int[] lineFeeds, int count) {
+        this.lineFeeds = lineFeeds;
+        this.count = count;
+    }
+
+    /**
+     * Builds the index of all line feeds in the supplied text
+     */
+    public static LineIndex of(String text) {
+        int[] lineFeeds = new int[16];
+        int count = 0;
+        for (int index = text.indexOf('\n'); index >= 0; index = text.indexOf('\n', index + 1)) {
+            if (count == lineFeeds.length) {
+                lineFeeds = Arrays.copyOf(lineFeeds, count * 2);
+            }
+            lineFeeds[count++] = index;
+        }
+        return new LineIndex(lineFeeds, count);
+    }
+
+    /**
+     * @return the number of line feeds strictly before the supplied offset,
+     * the same as Utils.countLines(text.substring(0, offset))
+     */
+    public int countLinesBefore(int offset) {
+        int position = Arrays.binarySearch(lineFeeds, 0, count, offset);
+        // a line feed at the offset itself is not before it; otherwise the insertion point is the count
+        return position >= 0 ? position : -position - 1;
+    }
+
+    /**
+     * @return the total number of line feeds in the text
+     */
+    public int getLineCount() {
+        return count;
+    }
+}
@@ -0,0 +1,275 @@
+package com.vgrazi.regextester.action;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Matches a {@link LinearPattern} against a text, with the find(), lookingAt() and matches() of a Matcher over the
+ * whole text. All the threads of the pattern, the ways it could still match, step through the text together, one
+ * code point at a time, in the order java.util.regex would try them; a thread that reaches the end of the pattern
+ * is the match, and ends the threads after it. Each thread carries its own group offsets, copied only when it
+ * consumes a character. Checks for cancellation every 4096 characters, as the worker cancels by interrupting
+ */
+public final class LinearMatcher {
+    private final LinearPattern pattern;
+    private final String text;
+    private final int slotCount;
+    // the threads at the offset being stepped, and the next two, as one that consumes a surrogate pair skips one
+    private final ThreadList[] lists = new ThreadList[3];
+    // the group offsets being built while following the instructions that consume no character
+    private final int[] scratch;
+    // explicit stack for those instructions: pairs of a program counter to explore, or a slot to restore, and its value
+    private int[] stack = new int[64];
+    private final int[] groups;
+    private int first = -1;
+    private int last;
+    private boolean matched;
+
+    LinearMatcher(LinearPattern pattern, String text) {
+        this.pattern = pattern;
+        this.text = text;
+        this.slotCount = pattern.slotCount();
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new ThreadList(pattern.size(), slotCount);
+        }
+        scratch = new int[slotCount];
+        groups = new int[slotCount];
+    }
+
+    /**
+     * Like Matcher.find(): from the end of the last match, or one further past an empty one
+     */
+    public boolean find() {
+        int from = last;
+        if (from == first) {
+            from++;
+        }
+        if (from > text.length()) {
+            matched = false;
+            return false;
+        }
+        return search(from, false, false);
+    }
+
+    /**
+     * Like Matcher.find(int)
+     */
+    public boolean find(int from) {
+        if (from < 0 || from > text.length()) {
+            throw new IndexOutOfBoundsException("Illegal start index");
+        }
+        return search(from, false, false);
+    }
+
+    public boolean lookingAt() {
+        return search(0, true, false);
+    }
+
+    public boolean matches() {
+        return search(0, true, true);
+    }
+
+    public int groupCount() {
+        return pattern.groupCount();
+    }
+
+    public int start() {
+        return start(0);
+    }
+
+    public int end() {
+        return end(0);
+    }
+
+    /**
+     * @return the start of the group in the last match, or -1 if it did not take part
+     */
+    public int start(int group) {
+        checkMatch(group);
+        return groups[group * 2];
+    }
+
+    public int end(int group) {
+        checkMatch(group);
+        return groups[group * 2 + 1];
+    }
+
+    private void checkMatch(int group) {
+        if (!matched) {
+            throw new IllegalStateException("No match available");
+        }
+        if (group < 0 || group > pattern.groupCount()) {
+            throw new IndexOutOfBoundsException("No group " + group);
+        }
+    }
+
+    /**
+     * Steps the threads from the start offset until the highest priority thread matches, or none is left
+     * @param anchored   whether a match must start at the start offset, rather than at or after it
+     * @param requireEnd whether a match must end at the end of the text
+     */
+    private boolean search(int from, boolean anchored, boolean requireEnd) {
+        int length = text.length();
+        // like java.util.regex, starts between the chars of a surrogate pair too, unless the pattern has one
+        boolean withinPairs = pattern.startsWithinPairs();
+        matched = false;
+        for (ThreadList list : lists) {
+            list.clear();
+        }
+        int index = from;
+        int steps = 0;
+        while (true) {
+            if ((steps++ & 0xFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Linear match cancelled at index " + index);
+            }
+            ThreadList current = lists[index % 3];
+            // a match starting here has the lowest priority of all
+            if (!matched && (!anchored || index == from)) {
+                Arrays.fill(scratch, -1);
+                follow(current, 0, index);
+            }
+            if (current.size == 0 && lists[(index + 1) % 3].size == 0 && lists[(index + 2) % 3].size == 0) {
+                if (matched || anchored || index >= length) {
+                    break;
+                }
+                current.clear();
+                index += withinPairs ? 1 : Character.charCount(text.codePointAt(index));
+                continue;
+            }
+            int codePoint = index < length ? text.codePointAt(index) : -1;
+            int width = codePoint < 0 ? 0 : Character.charCount(codePoint);
+            for (int thread = 0; thread < current.size; thread++) {
+                int pc = current.pcs[thread];
+                int op = pattern.op(pc);
+                if (op == LinearPattern.MATCH) {
+                    if (requireEnd && index != length) {
+                        continue;
+                    }
+                    matched = true;
+                    System.arraycopy(current.slots, pc * slotCount, groups, 0, groups.length);
+                    // the threads after this one would only have been tried had it failed
+                    break;
+                }
+                if (op == LinearPattern.CHAR && codePoint >= 0 && pattern.matches(pc, codePoint)) {
+                    System.arraycopy(current.slots, pc * slotCount, scratch, 0, slotCount);
+                    follow(lists[(index + width) % 3], pc + 1, index + width);
+                }
+            }
+            current.clear();
+            if (index >= length) {
+                break;
+            }
+            index += withinPairs ? 1 : width;
+        }
+        if (matched) {
+            first = groups[0];
+            last = groups[1];
+        } else {
+            first = -1;
+        }
+        return matched;
+    }
+
+    /**
+     * Adds the thread at the program counter to the list, following the instructions that consume no character
+     * in the order they are tried, to the ones that consume a character or match, each of which is added once,
+     * by the first thread to reach it, with the group offsets in the scratch slots
+     */
+    private void follow(ThreadList list, int start, int index) {
+        int top = 0;
+        stack[top++] = start;
+        stack[top++] = Integer.MIN_VALUE;
+        while (top > 0) {
+            int value = stack[--top];
+            int entry = stack[--top];
+            if (value != Integer.MIN_VALUE) {
+                // undo a save on the way back to an earlier branch
+                scratch[entry] = value;
+                continue;
+            }
+            int pc = entry;
+            while (true) {
+                int op = pattern.op(pc);
+                if (op == LinearPattern.PROGRESS) {
+                    // not marked as reached, as where it leads depends on the thread's own progress slot: a thread
+                    // whose iteration matched nothing, and leaves the loop, must not stop a later one that goes round
+                    pc = index > scratch[pattern.arg(pc)] ? pc + 1 : pattern.target(pc);
+                    continue;
+                }
+                if (list.contains(pc)) {
+                    break;
+                }
+                list.add(pc);
+                if (op == LinearPattern.CHAR || op == LinearPattern.MATCH) {
+                    System.arraycopy(scratch, 0, list.slots, pc * slotCount, slotCount);
+                    list.pcs[list.size++] = pc;
+                    break;
+                }
+                if (op == LinearPattern.JMP) {
+                    pc = pattern.arg(pc);
+                } else if (op == LinearPattern.SPLIT) {
+                    top = push(top, pattern.target(pc), Integer.MIN_VALUE);
+                    pc = pattern.arg(pc);
+                } else if (op == LinearPattern.SAVE) {
+                    int slot = pattern.arg(pc);
+                    top = push(top, slot, scratch[slot]);
+                    scratch[slot] = index;
+                    pc++;
+                } else if (pattern.holds(pattern.arg(pc), text, index)) {
+                    pc++;
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    private int push(int top, int entry, int value) {
+        if (top + 2 > stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[top] = entry;
+        stack[top + 1] = value;
+        return top + 2;
+    }
+
+    /**
+     * The threads at one offset of the text: every program counter reached, in a sparse set so that clearing is
+     * free, and of those that consume a character or match, the order they were reached in, and their group offsets
+     */
+    private static final class ThreadList {
+        private final int[] dense;
+        private final int[] sparse;
+        private int members;
+        private final int[] pcs;
+        private int size;
+        private final int[] slots;
+
+        ThreadList(int programSize, int slotCount) {
+            dense = new int[programSize];
+            sparse = new int[programSize];
+            pcs = new int[programSize];
+            slots = new int[programSize * slotCount];
+        }
+
+        boolean contains(int pc) {
+            int at = sparse[pc];
+            return at < members && dense[at] == pc;
+        }
+
+        void add(int pc) {
+            sparse[pc] = members;
+            dense[members++] = pc;
+        }
+
+        void clear() {
+            members = 0;
+            size = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LinearMatcher: [%s] text length=%d", pattern.pattern(), text.length());
+    }
+}
@@ -0,0 +1,871 @@
+package com.vgrazi.regextester.action;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A regex compiled for the linear engine, which can't backtrack catastrophically: {@link LinearMatcher} runs all
+ * the ways the pattern could match side by side, as a Thompson NFA, so a find takes time in proportion to the
+ * length of the text times the size of the pattern, whatever the text. The ways are kept in the order
+ * java.util.regex would try them, so that the first to match is the match java.util.regex finds, groups and all.
+ * The regex is parsed as the Pattern parses it, inline flags and \Q...\E quotes included, and each character class,
+ * escape and literal is tested by a Pattern compiled from just that part of the regex, with the flags in force
+ * there, so that it matches exactly the characters it matches in java.util.regex.
+ * Backreferences, lookarounds, atomic groups, possessive quantifiers, \G, \R, \X, comments mode and canonical
+ * equivalence need backtracking or are not implemented, and throw {@link UnsupportedPatternException}
+ */
+public final class LinearPattern {
+    static final int CHAR = 0;
+    static final int SPLIT = 1;
+    static final int JMP = 2;
+    static final int SAVE = 3;
+    static final int ASSERT = 4;
+    // carries on if the text moved on since the slot was saved, and otherwise jumps, ending an empty loop iteration
+    static final int PROGRESS = 5;
+    static final int MATCH = 6;
+
+    static final int BEGIN = 0;
+    static final int END = 1;
+    static final int CARET = 2;
+    static final int UNIX_CARET = 3;
+    static final int DOLLAR = 4;
+    static final int MULTILINE_DOLLAR = 5;
+    static final int UNIX_DOLLAR = 6;
+    static final int MULTILINE_UNIX_DOLLAR = 7;
+    static final int WORD_BOUNDARY = 8;
+    static final int NOT_WORD_BOUNDARY = 9;
+    static final int UNICODE_WORD_BOUNDARY = 10;
+    static final int NOT_UNICODE_WORD_BOUNDARY = 11;
+
+    // the most instructions a pattern may compile to, as counted repetitions are written out in full
+    private static final int MAX_INSTRUCTIONS = 100_000;
+    // the most group and progress offsets a matcher holds per list of threads, one row of slots per instruction.
+    // Each nullable loop written out by a counted repetition adds a slot as well as instructions, so that these
+    // grow with the square of the repetition count, 16 MB a list at this limit
+    private static final long MAX_THREAD_SLOTS = 4_000_000;
+    // the flags that change which characters a class, escape or literal matches
+    private static final int CHARACTER_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL
+            | Pattern.UNIX_LINES | Pattern.UNICODE_CHARACTER_CLASS;
+
+    private static volatile LinearPattern latest;
+
+    private final String regex;
+    private final int flags;
+    private final int groupCount;
+    private final int slotCount;
+    private final int[] ops;
+    private final int[] args;
+    private final int[] targets;
+    private final CodePointClass[] classes;
+    private final CodePointClass unicodeWord;
+    private final boolean withinPairs;
+
+    private LinearPattern(String regex, int flags, int groupCount, int slotCount, int[] ops, int[] args, int[] targets,
+                          CodePointClass[] classes) {
+        this.regex = regex;
+        this.flags = flags;
+        this.groupCount = groupCount;
+        this.slotCount = slotCount;
+        this.ops = ops;
+        this.args = args;
+        this.targets = targets;
+        this.classes = classes;
+        this.unicodeWord = new CodePointClass(Pattern.compile("\\w", Pattern.UNICODE_CHARACTER_CLASS));
+        this.withinPairs = probeWithinPairs(regex, flags);
+    }
+
+    /**
+     * Compiles the regex, which must already compile as a Pattern, unless it is the most recently compiled one
+     * @throws UnsupportedPatternException if the regex uses a construct the engine can't run
+     */
+    public static LinearPattern compile(String regex, int flags) throws UnsupportedPatternException {
+        LinearPattern pattern = latest;
+        if (pattern != null && pattern.flags == flags && pattern.regex.equals(regex)) {
+            return pattern;
+        }
+        if ((flags & Pattern.COMMENTS) != 0) {
+            throw new UnsupportedPatternException("comments mode", -1);
+        }
+        if ((flags & Pattern.CANON_EQ) != 0) {
+            throw new UnsupportedPatternException("canonical equivalence", -1);
+        }
+        Compiler compiler = new Compiler();
+        Node root;
+        if ((flags & Pattern.LITERAL) != 0) {
+            List<Node> items = new ArrayList<>();
+            regex.codePoints().forEach(ch -> items.add(new CharNode(compiler.classOf(literal(ch), flags))));
+            root = new Sequence(items);
+        } else {
+            Parser parser = new Parser(regex, flags, compiler);
+            root = parser.parse();
+            compiler.groupCount = parser.groupCount;
+        }
+        compiler.slotCount = (compiler.groupCount + 1) * 2;
+        compiler.emit(SAVE, 0, 0);
+        compiler.compile(root);
+        compiler.emit(SAVE, 1, 0);
+        compiler.emit(MATCH, 0, 0);
+        if ((long) compiler.size * compiler.slotCount > MAX_THREAD_SLOTS) {
+            throw new UnsupportedPatternException(String.format("patterns of %,d instructions by %,d group and loop offsets, over %,d in all",
+                    compiler.size, compiler.slotCount, MAX_THREAD_SLOTS), -1);
+        }
+        pattern = new LinearPattern(regex, flags, compiler.groupCount, compiler.slotCount, compiler.ops(), compiler.args(),
+                compiler.targets(), compiler.classes.toArray(new CodePointClass[0]));
+        latest = pattern;
+        return pattern;
+    }
+
+    public LinearMatcher matcher(String text) {
+        return new LinearMatcher(this, text);
+    }
+
+    public String pattern() {
+        return regex;
+    }
+
+    public int flags() {
+        return flags;
+    }
+
+    public int groupCount() {
+        return groupCount;
+    }
+
+    /**
+     * @return the number of instructions the pattern compiled to, the factor the time of a find grows by
+     */
+    public int size() {
+        return ops.length;
+    }
+
+    int slotCount() {
+        return slotCount;
+    }
+
+    /**
+     * @return whether a find tries the offsets between the chars of a surrogate pair too, as the Pattern does
+     */
+    boolean startsWithinPairs() {
+        return withinPairs;
+    }
+
+    int op(int pc) {
+        return ops[pc];
+    }
+
+    int arg(int pc) {
+        return args[pc];
+    }
+
+    int target(int pc) {
+        return targets[pc];
+    }
+
+    boolean matches(int pc, int codePoint) {
+        return classes[args[pc]].test(codePoint);
+    }
+
+    /**
+     * @return whether the zero width assertion holds at the index of the text, as java.util.regex would test it in
+     * a matcher over the whole text
+     */
+    boolean holds(int assertion, String text, int index) {
+        int length = text.length();
+        switch (assertion) {
+            case BEGIN:
+                return index == 0;
+            case END:
+                return index == length;
+            case CARET:
+            case UNIX_CARET:
+                // not at the end of the text, even after a line terminator
+                if (index == length) {
+                    return false;
+                }
+                if (index > 0) {
+                    char ch = text.charAt(index - 1);
+                    if (assertion == UNIX_CARET) {
+                        return ch == '\n';
+                    }
+                    if (ch != '\n' && ch != '\r' && (ch | 1) != '\u2029' && ch != '\u0085') {
+                        return false;
+                    }
+                    // \r\n is one line terminator
+                    return ch != '\r' || text.charAt(index) != '\n';
+                }
+                return true;
+            case DOLLAR:
+            case MULTILINE_DOLLAR: {
+                boolean multiline = assertion == MULTILINE_DOLLAR;
+                if (!multiline) {
+                    if (index < length - 2) {
+                        return false;
+                    }
+                    if (index == length - 2 && (text.charAt(index) != '\r' || text.charAt(index + 1) != '\n')) {
+                        return false;
+                    }
+                }
+                if (index < length) {
+                    char ch = text.charAt(index);
+                    if (ch == '\n') {
+                        return index == 0 || text.charAt(index - 1) != '\r';
+                    }
+                    return ch == '\r' || ch == '\u0085' || (ch | 1) == '\u2029';
+                }
+                return true;
+            }
+            case UNIX_DOLLAR:
+            case MULTILINE_UNIX_DOLLAR:
+                if (index < length) {
+                    return text.charAt(index) == '\n' && (assertion == MULTILINE_UNIX_DOLLAR || index == length - 1);
+                }
+                return true;
+            default: {
+                boolean unicode = assertion == UNICODE_WORD_BOUNDARY || assertion == NOT_UNICODE_WORD_BOUNDARY;
+                boolean left = index > 0 && isWord(text, Character.codePointBefore(text, index), index - 1, unicode);
+                boolean right = index < length && isWord(text, Character.codePointAt(text, index), index, unicode);
+                boolean boundary = left != right;
+                return assertion == WORD_BOUNDARY || assertion == UNICODE_WORD_BOUNDARY ? boundary : !boundary;
+            }
+        }
+    }
+
+    /**
+     * @return whether the character counts as a word character for \b, which a non spacing mark does if it follows
+     * a letter or digit
+     */
+    private boolean isWord(String text, int ch, int index, boolean unicode) {
+        if (unicode ? unicodeWord.test(ch) : ch == '_' || ch < 128 && Character.isLetterOrDigit(ch)) {
+            return true;
+        }
+        if (Character.getType(ch) != Character.NON_SPACING_MARK) {
+            return false;
+        }
+        for (int at = index; at >= 0; at--) {
+            int base = Character.codePointAt(text, at);
+            if (Character.isLetterOrDigit(base)) {
+                return true;
+            }
+            if (Character.getType(base) != Character.NON_SPACING_MARK) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A Pattern tries the offsets between the chars of a surrogate pair unless, while parsing, it finds the regex
+     * could match a supplementary code point, which is simplest to tell by asking it: a non-word boundary holds
+     * between the chars of the pair in the probe text, and nowhere before, so that is where it first finds one if
+     * it tries there
+     */
+    private static boolean probeWithinPairs(String regex, int flags) {
+        boolean surrogates = regex.chars().anyMatch(ch -> Character.isSurrogate((char) ch));
+        if (surrogates || (flags & Pattern.LITERAL) != 0) {
+            return !surrogates;
+        }
+        try {
+            Matcher matcher = Pattern.compile("(?:" + regex + ")(?!)|\\B", flags).matcher("a\uD83D\uDE00");
+            return matcher.find() && matcher.start() == 2;
+        } catch (PatternSyntaxException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return the regex for just the code point, as an escape, so that it means the same whatever it is
+     */
+    private static String literal(int ch) {
+        return "\\x{" + Integer.toHexString(ch) + "}";
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LinearPattern: [%s] flags=%d, %d instructions", regex, flags, ops.length);
+    }
+
+    /**
+     * The code points a character class, escape, dot or literal matches, each tested once by a Pattern of just
+     * that part of the regex and remembered, in pages of 256 allocated as the text reaches them.
+     * Racing threads at worst test a code point twice
+     */
+    private static final class CodePointClass {
+        private static final byte UNKNOWN = 0;
+        private static final byte NO = 1;
+        private static final byte YES = 2;
+
+        private final Pattern pattern;
+        private final byte[][] pages = new byte[256][];
+
+        private CodePointClass(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        boolean test(int ch) {
+            if (ch > 0xFFFF) {
+                return pattern.matcher(Character.toString(ch)).matches();
+            }
+            byte[] page = pages[ch >> 8];
+            if (page == null) {
+                page = new byte[256];
+                pages[ch >> 8] = page;
+            }
+            byte known = page[ch & 0xFF];
+            if (known == UNKNOWN) {
+                known = pattern.matcher(String.valueOf((char) ch)).matches() ? YES : NO;
+                page[ch & 0xFF] = known;
+            }
+            return known == YES;
+        }
+    }
+
+    /**
+     * The parsed regex
+     */
+    private sealed interface Node permits CharNode, AssertNode, Sequence, Alternation, Group, Repeat {
+    }
+
+    private record CharNode(int cls) implements Node {
+    }
+
+    private record AssertNode(int assertion) implements Node {
+    }
+
+    private record Sequence(List<Node> items) implements Node {
+    }
+
+    private record Alternation(List<Node> alternatives) implements Node {
+    }
+
+    private record Group(int index, Node body) implements Node {
+    }
+
+    /**
+     * @param max the most repetitions, or -1 for no limit
+     */
+    private record Repeat(Node body, int min, int max, boolean greedy) implements Node {
+    }
+
+    /**
+     * Parses the regex as java.util.regex does, having removed the \Q...\E quotes as it does
+     */
+    private static final class Parser {
+        private final String regex;
+        // for each character of the regex without quotes, its index in the regex as written
+        private final int[] sourceIndex;
+        private final Compiler compiler;
+        private int index;
+        private int flags;
+        private int groupCount;
+
+        private Parser(String regex, int flags, Compiler compiler) {
+            StringBuilder unquoted = new StringBuilder();
+            List<Integer> sourceIndex = new ArrayList<>();
+            removeQuotes(regex, unquoted, sourceIndex);
+            this.regex = unquoted.toString();
+            this.sourceIndex = sourceIndex.stream().mapToInt(Integer::intValue).toArray();
+            this.flags = flags;
+            this.compiler = compiler;
+        }
+
+        /**
+         * Rewrites each \Q...\E quote as escaped characters, as Pattern.RemoveQEQuoting does
+         */
+        private static void removeQuotes(String regex, StringBuilder out, List<Integer> sourceIndex) {
+            boolean inQuote = false;
+            boolean beginQuote = false;
+            int index = 0;
+            while (index < regex.length()) {
+                int ch = regex.codePointAt(index);
+                int at = index;
+                index += Character.charCount(ch);
+                if (!inQuote) {
+                    if (ch == '\\' && index < regex.length()) {
+                        if (regex.charAt(index) == 'Q') {
+                            index++;
+                            inQuote = true;
+                            beginQuote = true;
+                            continue;
+                        }
+                        int escaped = regex.codePointAt(index);
+                        append(out, sourceIndex, at, ch);
+                        append(out, sourceIndex, index, escaped);
+                        index += Character.charCount(escaped);
+                    } else {
+                        append(out, sourceIndex, at, ch);
+                    }
+                    continue;
+                }
+                if (ch >= 128 || Character.isLetter(ch)) {
+                    append(out, sourceIndex, at, ch);
+                } else if (ch >= '0' && ch <= '9') {
+                    if (beginQuote) {
+                        // so that a digit is not read as part of an escape before the quote
+                        out.append("\\x3");
+                        sourceIndex.add(at);
+                        sourceIndex.add(at);
+                        sourceIndex.add(at);
+                    }
+                    append(out, sourceIndex, at, ch);
+                } else if (ch != '\\') {
+                    append(out, sourceIndex, at, '\\');
+                    append(out, sourceIndex, at, ch);
+                } else if (index < regex.length() && regex.charAt(index) == 'E') {
+                    index++;
+                    inQuote = false;
+                } else {
+                    append(out, sourceIndex, at, '\\');
+                    append(out, sourceIndex, at, '\\');
+                }
+                beginQuote = false;
+            }
+        }
+
+        private static void append(StringBuilder out, List<Integer> sourceIndex, int at, int ch) {
+            out.appendCodePoint(ch);
+            for (int count = Character.charCount(ch); count > 0; count--) {
+                sourceIndex.add(at);
+            }
+        }
+
+        Node parse() {
+            Node root = alternation();
+            if (index < regex.length()) {
+                // an unbalanced ), which the Pattern would have rejected
+                throw new UnsupportedPatternException("this regex", at(index));
+            }
+            return root;
+        }
+
+        private Node alternation() {
+            List<Node> alternatives = new ArrayList<>();
+            alternatives.add(sequence());
+            while (index < regex.length() && regex.charAt(index) == '|') {
+                index++;
+                alternatives.add(sequence());
+            }
+            return alternatives.size() == 1 ? alternatives.getFirst() : new Alternation(alternatives);
+        }
+
+        private Node sequence() {
+            List<Node> items = new ArrayList<>();
+            while (index < regex.length() && regex.charAt(index) != '|' && regex.charAt(index) != ')') {
+                Node atom = atom();
+                if (atom != null) {
+                    items.add(quantifier(atom));
+                }
+            }
+            return items.size() == 1 ? items.getFirst() : new Sequence(items);
+        }
+
+        /**
+         * @return the next atom, or null for a (?flags) group, which only changes the flags
+         */
+        private Node atom() {
+            int ch = regex.codePointAt(index);
+            switch (ch) {
+                case '(':
+                    return group();
+                case '[': {
+                    int end = GroupStructure.skipCharacterClass(regex, index);
+                    Node node = new CharNode(compiler.classOf(regex.substring(index, end + 1), flags));
+                    index = end + 1;
+                    return node;
+                }
+                case '\\':
+                    return escape();
+                case '^':
+                    index++;
+                    return new AssertNode(has(Pattern.MULTILINE) ? has(Pattern.UNIX_LINES) ? UNIX_CARET : CARET : BEGIN);
+                case '$':
+                    index++;
+                    return new AssertNode(has(Pattern.UNIX_LINES)
+                            ? has(Pattern.MULTILINE) ? MULTILINE_UNIX_DOLLAR : UNIX_DOLLAR
+                            : has(Pattern.MULTILINE) ? MULTILINE_DOLLAR : DOLLAR);
+                case '.':
+                    index++;
+                    return new CharNode(compiler.classOf(".", flags));
+                default:
+                    index += Character.charCount(ch);
+                    return new CharNode(compiler.classOf(literal(ch), flags));
+            }
+        }
+
+        private Node group() {
+            int open = index;
+            int saved = flags;
+            index++;
+            int capture = -1;
+            if (regex.startsWith("?", index)) {
+                index++;
+                char kind = index < regex.length() ? regex.charAt(index) : 0;
+                if (kind == '=' || kind == '!' || regex.startsWith("<=", index) || regex.startsWith("<!", index)) {
+                    throw new UnsupportedPatternException("lookarounds", at(open));
+                }
+                if (kind == '>') {
+                    throw new UnsupportedPatternException("atomic groups", at(open));
+                }
+                if (kind == ':') {
+                    index++;
+                } else if (kind == '<') {
+                    index = regex.indexOf('>', index) + 1;
+                    capture = ++groupCount;
+                } else {
+                    flags();
+                    if (regex.charAt(index++) == ')') {
+                        // the flags hold to the end of the enclosing group
+                        return null;
+                    }
+                }
+            } else {
+                capture = ++groupCount;
+            }
+            Node body = alternation();
+            index++;
+            flags = saved;
+            return capture < 0 ? body : new Group(capture, body);
+        }
+
+        /**
+         * Reads the flags of (?flags) or (?flags:, up to the ) or :
+         */
+        private void flags() {
+            boolean on = true;
+            for (; index < regex.length() && regex.charAt(index) != ')' && regex.charAt(index) != ':'; index++) {
+                char letter = regex.charAt(index);
+                int flag = switch (letter) {
+                    case 'i' -> Pattern.CASE_INSENSITIVE;
+                    case 'm' -> Pattern.MULTILINE;
+                    case 's' -> Pattern.DOTALL;
+                    case 'd' -> Pattern.UNIX_LINES;
+                    case 'u' -> Pattern.UNICODE_CASE;
+                    case 'c' -> Pattern.CANON_EQ;
+                    case 'x' -> Pattern.COMMENTS;
+                    case 'U' -> Pattern.UNICODE_CHARACTER_CLASS | Pattern.UNICODE_CASE;
+                    default -> 0;
+                };
+                if (letter == '-') {
+                    on = false;
+                } else if (on) {
+                    if (letter == 'x') {
+                        throw new UnsupportedPatternException("comments mode", at(index));
+                    }
+                    if (letter == 'c') {
+                        throw new UnsupportedPatternException("canonical equivalence", at(index));
+                    }
+                    flags |= flag;
+                } else {
+                    flags &= ~flag;
+                }
+            }
+        }
+
+        private Node escape() {
+            int start = index;
+            char ch = regex.charAt(index + 1);
+            index += 2;
+            switch (ch) {
+                case '1', '2', '3', '4', '5', '6', '7', '8', '9', 'k':
+                    throw new UnsupportedPatternException("backreferences", at(start));
+                case 'G':
+                    throw new UnsupportedPatternException("\\G", at(start));
+                case 'R':
+                    throw new UnsupportedPatternException("\\R", at(start));
+                case 'X':
+                    throw new UnsupportedPatternException("\\X", at(start));
+                case 'A':
+                    return new AssertNode(BEGIN);
+                case 'z':
+                    return new AssertNode(END);
+                case 'Z':
+                    return new AssertNode(has(Pattern.UNIX_LINES) ? UNIX_DOLLAR : DOLLAR);
+                case 'b':
+                    if (regex.startsWith("{", index)) {
+                        throw new UnsupportedPatternException("\\b{g}", at(start));
+                    }
+                    return new AssertNode(has(Pattern.UNICODE_CHARACTER_CLASS) ? UNICODE_WORD_BOUNDARY : WORD_BOUNDARY);
+                case 'B':
+                    return new AssertNode(has(Pattern.UNICODE_CHARACTER_CLASS) ? NOT_UNICODE_WORD_BOUNDARY : NOT_WORD_BOUNDARY);
+                case '0':
+                    // up to three octal digits, the first of three at most 3
+                    if (isOctal(index)) {
+                        boolean three = regex.charAt(index) <= '3';
+                        index++;
+                        if (isOctal(index)) {
+                            index++;
+                            if (three && isOctal(index)) {
+                                index++;
+                            }
+                        }
+                    }
+                    break;
+                case 'x':
+                    if (regex.startsWith("{", index)) {
+                        index = regex.indexOf('}', index) + 1;
+                    } else {
+                        index += 2;
+                    }
+                    break;
+                case 'u':
+                    index += 4;
+                    // a surrogate pair of escapes is one code point
+                    if (Character.isHighSurrogate((char) Integer.parseInt(regex.substring(index - 4, index), 16))
+                            && regex.startsWith("\\u", index) && index + 6 <= regex.length()) {
+                        String low = regex.substring(index + 2, index + 6);
+                        if (low.chars().allMatch(digit -> Character.digit(digit, 16) >= 0)
+                                && Character.isLowSurrogate((char) Integer.parseInt(low, 16))) {
+                            index += 6;
+                        }
+                    }
+                    break;
+                case 'c':
+                    index += Character.charCount(regex.codePointAt(index));
+                    break;
+                case 'N':
+                    index = regex.indexOf('}', index) + 1;
+                    break;
+                case 'p', 'P':
+                    index = regex.startsWith("{", index) ? regex.indexOf('}', index) + 1 : index + 1;
+                    break;
+                default:
+                    // a class such as \d, a control character such as \t, or an escaped character
+                    if (Character.isHighSurrogate(ch)) {
+                        index++;
+                    }
+                    break;
+            }
+            return new CharNode(compiler.classOf(regex.substring(start, index), flags));
+        }
+
+        private boolean isOctal(int at) {
+            return at < regex.length() && regex.charAt(at) >= '0' && regex.charAt(at) <= '7';
+        }
+
+        private Node quantifier(Node atom) {
+            if (index >= regex.length()) {
+                return atom;
+            }
+            int start = index;
+            int min;
+            int max;
+            switch (regex.charAt(index)) {
+                case '?' -> {
+                    min = 0;
+                    max = 1;
+                }
+                case '*' -> {
+                    min = 0;
+                    max = -1;
+                }
+                case '+' -> {
+                    min = 1;
+                    max = -1;
+                }
+                case '{' -> {
+                    int close = regex.indexOf('}', index);
+                    String bounds = regex.substring(index + 1, close);
+                    int comma = bounds.indexOf(',');
+                    try {
+                        min = Integer.parseInt(comma < 0 ? bounds : bounds.substring(0, comma));
+                        max = comma < 0 ? min : comma == bounds.length() - 1 ? -1 : Integer.parseInt(bounds.substring(comma + 1));
+                    } catch (NumberFormatException e) {
+                        throw new UnsupportedPatternException("this repetition", at(start));
+                    }
+                    index = close;
+                }
+                default -> {
+                    return atom;
+                }
+            }
+            index++;
+            boolean greedy = true;
+            if (index < regex.length() && regex.charAt(index) == '?') {
+                greedy = false;
+                index++;
+            } else if (index < regex.length() && regex.charAt(index) == '+') {
+                throw new UnsupportedPatternException("possessive quantifiers", at(start));
+            }
+            return new Repeat(atom, min, max, greedy);
+        }
+
+        private boolean has(int flag) {
+            return (flags & flag) != 0;
+        }
+
+        private int at(int unquoted) {
+            return unquoted < sourceIndex.length ? sourceIndex[unquoted] : -1;
+        }
+    }
+
+    /**
+     * Writes the program for the parsed regex
+     */
+    private static final class Compiler {
+        private final List<CodePointClass> classes = new ArrayList<>();
+        private final Map<String, Integer> classIndex = new HashMap<>();
+        private int[] ops = new int[64];
+        private int[] args = new int[64];
+        private int[] targets = new int[64];
+        private int size;
+        private int groupCount;
+        private int slotCount;
+
+        /**
+         * @return the index of the class for the part of the regex, compiled with the flags that change which
+         * characters it matches
+         */
+        int classOf(String part, int flags) {
+            int characterFlags = flags & CHARACTER_FLAGS;
+            return classIndex.computeIfAbsent(characterFlags + ":" + part, _ -> {
+                classes.add(new CodePointClass(Pattern.compile(part, characterFlags)));
+                return classes.size() - 1;
+            });
+        }
+
+        int emit(int op, int arg, int target) {
+            if (size == MAX_INSTRUCTIONS) {
+                throw new UnsupportedPatternException(String.format("patterns of over %,d instructions, as counted repetitions are written out", MAX_INSTRUCTIONS), -1);
+            }
+            if (size == ops.length) {
+                ops = Arrays.copyOf(ops, size * 2);
+                args = Arrays.copyOf(args, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+            }
+            ops[size] = op;
+            args[size] = arg;
+            targets[size] = target;
+            return size++;
+        }
+
+        void compile(Node node) {
+            switch (node) {
+                case CharNode charNode -> emit(CHAR, charNode.cls(), 0);
+                case AssertNode assertNode -> emit(ASSERT, assertNode.assertion(), 0);
+                case Sequence sequence -> sequence.items().forEach(this::compile);
+                case Group group -> {
+                    emit(SAVE, group.index() * 2, 0);
+                    compile(group.body());
+                    emit(SAVE, group.index() * 2 + 1, 0);
+                }
+                case Alternation alternation -> {
+                    // each alternative but the last is tried first, then the rest
+                    List<Integer> jumps = new ArrayList<>();
+                    List<Node> alternatives = alternation.alternatives();
+                    for (int alternative = 0; alternative < alternatives.size() - 1; alternative++) {
+                        int split = emit(SPLIT, size + 1, 0);
+                        compile(alternatives.get(alternative));
+                        jumps.add(emit(JMP, 0, 0));
+                        targets[split] = size;
+                    }
+                    compile(alternatives.getLast());
+                    jumps.forEach(jump -> args[jump] = size);
+                }
+                case Repeat repeat -> compileRepeat(repeat);
+            }
+        }
+
+        /**
+         * Writes out the required repetitions, then the optional ones, each of which is tried before going on if
+         * greedy, or after if not. As in java.util.regex, an iteration that matched nothing ends the loop, even
+         * short of the required repetitions, which is all that stops a loop such as (a*)* going round for ever.
+         * An unbounded loop of such a body is written out twice, so that an iteration that matches nothing where
+         * the one before ended does not go through the instructions that one just went through, which would end it
+         */
+        private void compileRepeat(Repeat repeat) {
+            if (repeat.body() instanceof Group group && zeroWidth(group.body())
+                    && (repeat.min() != 0 || repeat.max() != 1)) {
+                // java.util.regex repeats a group of fixed length without backtracking, and an optional iteration
+                // that matched nothing, as such a group always does, leaves the group as it was, if not those in it
+                for (int count = 0; count < repeat.min(); count++) {
+                    compile(group);
+                }
+                if (repeat.max() != repeat.min() && repeat.greedy()) {
+                    int split = emit(SPLIT, size + 1, 0);
+                    compile(group.body());
+                    targets[split] = size;
+                }
+                return;
+            }
+            boolean nullable = nullable(repeat.body());
+            int progressSlot = nullable ? slotCount++ : -1;
+            List<Integer> exits = new ArrayList<>();
+            for (int count = 0; count < repeat.min(); count++) {
+                iteration(repeat, progressSlot, exits);
+            }
+            List<Integer> splits = new ArrayList<>();
+            int loop = size;
+            int optional = repeat.max() < 0 ? nullable ? 2 : 1 : repeat.max() - repeat.min();
+            for (int count = 0; count < optional; count++) {
+                splits.add(emit(SPLIT, 0, 0));
+                iteration(repeat, progressSlot, exits);
+            }
+            if (repeat.max() < 0) {
+                emit(JMP, loop, 0);
+            }
+            for (int split : splits) {
+                branch(split, split + 1, repeat.greedy());
+            }
+            exits.forEach(exit -> targets[exit] = size);
+        }
+
+        private void iteration(Repeat repeat, int progressSlot, List<Integer> exits) {
+            if (progressSlot >= 0) {
+                emit(SAVE, progressSlot, 0);
+            }
+            compile(repeat.body());
+            if (progressSlot >= 0) {
+                exits.add(emit(PROGRESS, progressSlot, 0));
+            }
+        }
+
+        /**
+         * Points the split at the iteration and at the end of the repetition, in the order they are tried
+         */
+        private void branch(int split, int iteration, boolean greedy) {
+            args[split] = greedy ? iteration : size;
+            targets[split] = greedy ? size : iteration;
+        }
+
+        private static boolean nullable(Node node) {
+            return switch (node) {
+                case CharNode _ -> false;
+                case AssertNode _ -> true;
+                case Sequence sequence -> sequence.items().stream().allMatch(Compiler::nullable);
+                case Alternation alternation -> alternation.alternatives().stream().anyMatch(Compiler::nullable);
+                case Group group -> nullable(group.body());
+                case Repeat repeat -> repeat.min() == 0 || nullable(repeat.body());
+            };
+        }
+
+        /**
+         * @return whether the node matches nothing, always, by the one path java.util.regex would find fixed
+         */
+        private static boolean zeroWidth(Node node) {
+            return switch (node) {
+                case CharNode _, Alternation _ -> false;
+                case AssertNode _ -> true;
+                case Sequence sequence -> sequence.items().stream().allMatch(Compiler::zeroWidth);
+                case Group group -> zeroWidth(group.body());
+                case Repeat repeat -> repeat.min() == repeat.max() && zeroWidth(repeat.body());
+            };
+        }
+
+        int[] ops() {
+            return Arrays.copyOf(ops, size);
+        }
+
+        int[] args() {
+            return Arrays.copyOf(args, size);
+        }
+
+        int[] targets() {
+            return Arrays.copyOf(targets, size);
+        }
+    }
+}
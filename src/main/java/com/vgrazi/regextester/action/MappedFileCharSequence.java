@@ -0,0 +1,95 @@
+package com.vgrazi.regextester.action;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exposes a memory-mapped file to java.util.regex as a CharSequence, without ever reading the whole file onto the heap.
+ * Characters are decoded lazily on access, one byte per character (ISO-8859-1), which keeps charAt O(1).
+ * ASCII logs read exactly; other bytes show as their Latin-1 characters.
+ * The file is mapped in regions of 1 GB, because a single MappedByteBuffer is limited to 2 GB, and the file must
+ * not exceed Integer.MAX_VALUE bytes, the largest length a CharSequence can report
+ */
+public class MappedFileCharSequence implements CharSequence {
+    private static final int REGION_BITS = 30;
+    private static final int REGION_SIZE = 1 << REGION_BITS;
+    private static final int REGION_MASK = REGION_SIZE - 1;
+
+    private final Path path;
+    private final MappedByteBuffer[] regions;
+    private final int offset;
+    private final int length;
+
+    private MappedFileCharSequence(Path path, MappedByteBuffer[] regions, int offset, int length) {
+        this.path = path;
+        this.regions = regions;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Maps the supplied file read-only. The mapping stays valid after the channel is closed,
+     * and is released when this sequence is garbage collected
+     * @throws IOException if the file can't be read, or is too large to index
+     */
+    public static MappedFileCharSequence open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is " + size + " bytes, more than the " + Integer.MAX_VALUE + " a CharSequence can index");
+            }
+            MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((size + REGION_SIZE - 1) >>> REGION_BITS)];
+            for (int region = 0; region < regions.length; region++) {
+                long position = (long) region << REGION_BITS;
+                regions[region] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(REGION_SIZE, size - position));
+            }
+            return new MappedFileCharSequence(path, regions, 0, (int) size);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        int position = offset + index;
+        return (char) (regions[position >>> REGION_BITS].get(position & REGION_MASK) & 0xff);
+    }
+
+    /**
+     * @return a view of the supplied range. Nothing is copied
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        return new MappedFileCharSequence(path, regions, offset + start, end - start);
+    }
+
+    /**
+     * Decodes this sequence into a String. Only call this on bounded slices, such as a page or a match
+     */
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        for (int index = 0; index < length; index++) {
+            int position = offset + index;
+            bytes[index] = regions[position >>> REGION_BITS].get(position & REGION_MASK);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
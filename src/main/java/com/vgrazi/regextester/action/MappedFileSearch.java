@@ -0,0 +1,303 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.ColorRange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.vgrazi.regextester.component.Constants.HIGHLIGHT_COLOR;
+
+/**
+ * Runs the radio-button commands over a memory-mapped file that is shown one page at a time in the character pane.
+ * A full scan streams its results into the auxiliary pane through an {@link AuxiliaryStream}, and returns the
+ * highlights of the page being shown. It also records, for every page, the position from which the sequential
+ * find() scan reached that page, so that moving to another page only rescans that page.
+ * The file itself is never materialized as a String
+ */
+public class MappedFileSearch {
+    private final MappedFileCharSequence file;
+    private final int pageSize;
+    private volatile PageIndex pageIndex;
+
+    /**
+     * The position from which find() was searching when it found the first match ending inside each page,
+     * valid for one regex and set of flags
+     */
+    private record PageIndex(String regex, int flags, int[] resume) {
+    }
+
+    public MappedFileSearch(MappedFileCharSequence file, int pageSize) {
+        this.file = file;
+        this.pageSize = pageSize;
+    }
+
+    public MappedFileCharSequence getFile() {
+        return file;
+    }
+
+    public int getPageCount() {
+        return Math.max(1, (int) (((long) file.length() + pageSize - 1) / pageSize));
+    }
+
+    /**
+     * @return the text of the page. Only this page is ever decoded into a String
+     */
+    public String pageText(int page) {
+        return file.subSequence(pageStart(page), pageEnd(page)).toString();
+    }
+
+    private int pageStart(int page) {
+        return (int) Math.min((long) page * pageSize, file.length());
+    }
+
+    private int pageEnd(int page) {
+        return (int) Math.min((long) page * pageSize + pageSize, file.length());
+    }
+
+    /**
+     * @return true if the last full scan recorded the page positions for this regex and these flags,
+     * so that {@link #page} can highlight another page without scanning the whole file
+     */
+    public boolean hasPageIndex(String regex, int flags) {
+        PageIndex index = pageIndex;
+        return index != null && index.regex().equals(regex) && index.flags() == flags;
+    }
+
+    /**
+     * Runs the command over the whole file, streaming the auxiliary output, and returns the highlights of the page
+     * @return the page-relative highlights. The auxiliary text is null, as it has already been streamed
+     * @throws java.util.regex.PatternSyntaxException if the regex does not compile
+     * @throws java.util.concurrent.CancellationException if the worker cancelled the run
+     */
+    public MatchResult scan(long generation, String regex, int flags, String actionCommand, String replacement, int page, AuxiliaryStream auxiliary) {
+        long start = System.nanoTime();
+        MatchResult result = match(generation, regex, flags, actionCommand, replacement, page, auxiliary);
+        PipelineMetrics.shared().matched(actionCommand + " (file)", System.nanoTime() - start);
+        return result;
+    }
+
+    private MatchResult match(long generation, String regex, int flags, String actionCommand, String replacement, int page, AuxiliaryStream auxiliary) {
+        Pattern pattern = PatternCache.shared().compile(regex, flags);
+        Matcher matcher = PatternCache.shared().matcher(pattern, new InterruptibleCharSequence(file));
+        List<ColorRange> list = new ArrayList<>();
+        ReplacementSyntaxException replacementError = null;
+        if (regex.trim().isEmpty()) {
+            auxiliary.close();
+            return new MatchResult(generation, list, null, false);
+        }
+        switch (actionCommand) {
+            case "matches" -> {
+                if (matcher.matches()) {
+                    addPageRange(list, page, matcher.start(), matcher.end());
+                }
+            }
+            case "looking-at" -> {
+                if (matcher.lookingAt()) {
+                    addPageRange(list, page, matcher.start(), matcher.end());
+                }
+            }
+            default -> {
+                ReplacementTemplate template = null;
+                if (actionCommand.startsWith("replace")) {
+                    auxiliary.setContinuationPrefix(">");
+                    // validated before the scan, so that an invalid replacement still highlights the matches
+                    try {
+                        template = ReplacementTemplate.compile(replacement, pattern);
+                    } catch (ReplacementSyntaxException e) {
+                        replacementError = e;
+                    }
+                }
+                scanMatches(regex, flags, actionCommand, replacement, template, page, matcher, list, auxiliary);
+            }
+        }
+        auxiliary.close();
+        MatchResult result = new MatchResult(generation, list, null, false);
+        return replacementError == null ? result : result.withReplacementError(replacementError);
+    }
+
+    /**
+     * The find loop shared by the find, split and replace commands: highlights every match on the page,
+     * records the page index, and streams the command's output
+     * @param template the replacement of the replace commands, or null if the command does not replace, or the
+     *                 replacement is invalid, in which case no replace output is streamed
+     */
+    private void scanMatches(String regex, int flags, String actionCommand, String replacement, ReplacementTemplate template,
+                             int page, Matcher matcher, List<ColorRange> list, AuxiliaryStream auxiliary) {
+        int pageCount = getPageCount();
+        int[] resume = new int[pageCount];
+        int nextPage = 1;
+        // where the next find() starts searching: the end of the last match, plus one if that match was empty
+        int from = 0;
+        int groupCount = matcher.groupCount();
+        // as in the in-memory commands, only split with a limit lists the single empty piece of an empty input
+        boolean splitting = actionCommand.startsWith("split") && (file.length() > 0 || actionCommand.equals("split-with-limit"));
+        SplitEmitter split = splitting
+                ? new SplitEmitter(auxiliary, parseLimit(actionCommand, replacement), actionCommand.equals("split-with-delimiters"))
+                : null;
+        boolean replacing = template != null;
+        StringBuilder expanded = new StringBuilder();
+        int copiedTo = 0;
+        int matchCount = 0;
+        while (matcher.find()) {
+            int start = matcher.start();
+            int end = matcher.end();
+            while (nextPage < pageCount && (long) nextPage * pageSize < end) {
+                resume[nextPage++] = from;
+            }
+            addPageRange(list, page, start, end);
+            if (actionCommand.equals("find")) {
+                for (int i = 0; i <= groupCount && !auxiliary.isFull(); i++) {
+                    if (matcher.start(i) != -1) {
+                        auxiliary.append(i).append(". ").append(file, matcher.start(i), matcher.end(i)).append('\n');
+                        if (i == groupCount) {
+                            auxiliary.append('\n');
+                        }
+                    }
+                }
+            } else if (split != null) {
+                split.match(start, end);
+            } else if (replacing && (actionCommand.equals("replace-all") || matchCount == 0)) {
+                if (!auxiliary.isFull()) {
+                    auxiliary.append(file, copiedTo, start);
+                    expanded.setLength(0);
+                    template.appendTo(expanded, matcher, file);
+                    auxiliary.append(expanded);
+                    copiedTo = end;
+                }
+            }
+            matchCount++;
+            from = end == start ? end + 1 : end;
+        }
+        while (nextPage < pageCount) {
+            resume[nextPage++] = from;
+        }
+        if (split != null) {
+            split.finish();
+        } else if (replacing) {
+            auxiliary.append(file, copiedTo, file.length());
+        }
+        pageIndex = new PageIndex(regex, flags, resume);
+    }
+
+    /**
+     * Highlights the find() matches on one page, resuming the scan from the position recorded by the last full scan.
+     * Only valid if {@link #hasPageIndex} is true for the regex and flags
+     * @return the page-relative highlights, with a null auxiliary text, as the auxiliary pane is left as it is
+     */
+    public MatchResult page(long generation, String regex, int flags, int page) {
+        PageIndex index = pageIndex;
+        if (index == null || !index.regex().equals(regex) || index.flags() != flags) {
+            throw new IllegalStateException("No page index for " + regex);
+        }
+        Pattern pattern = PatternCache.shared().compile(regex, flags);
+        Matcher matcher = PatternCache.shared().matcher(pattern, new InterruptibleCharSequence(file));
+        List<ColorRange> list = new ArrayList<>();
+        int pageEnd = pageEnd(page);
+        int from = Math.min(index.resume()[page], file.length());
+        if (matcher.find(from)) {
+            do {
+                if (matcher.start() >= pageEnd) {
+                    break;
+                }
+                addPageRange(list, page, matcher.start(), matcher.end());
+            } while (matcher.find());
+        }
+        return new MatchResult(generation, list, null, false);
+    }
+
+    /**
+     * Adds the part of the match [start, end) that falls on the page, relative to the start of the page
+     */
+    private void addPageRange(List<ColorRange> list, int page, int start, int end) {
+        int pageStart = pageStart(page);
+        int pageEnd = pageEnd(page);
+        if (end <= pageStart || start >= pageEnd) {
+            return;
+        }
+        list.add(new ColorRange(HIGHLIGHT_COLOR, Math.max(start, pageStart) - pageStart, Math.min(end, pageEnd) - pageStart - 1, true));
+    }
+
+    private static int parseLimit(String actionCommand, String limitText) {
+        if (actionCommand.equals("split") || limitText.trim().isEmpty()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(limitText.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Streams the same pieces as Pattern.split and Pattern.splitWithDelimiters, numbered as in the in-memory split
+     * commands. Empty pieces are held back until a non-empty one follows, because with a limit of 0
+     * trailing empty pieces are dropped
+     */
+    private class SplitEmitter {
+        private final AuxiliaryStream auxiliary;
+        private final int limit;
+        private final boolean withDelimiters;
+        private int index;
+        private int count;
+        private int piece;
+        private int pendingEmpty;
+
+        SplitEmitter(AuxiliaryStream auxiliary, int limit, boolean withDelimiters) {
+            this.auxiliary = auxiliary;
+            this.limit = limit;
+            this.withDelimiters = withDelimiters;
+        }
+
+        void match(int start, int end) {
+            if (limit <= 0 || count < limit - 1) {
+                if (index == 0 && start == 0 && start == end) {
+                    // no empty leading piece for a zero-width match at the beginning of the input
+                    return;
+                }
+                emit(index, start);
+                index = end;
+                if (withDelimiters) {
+                    emit(start, end);
+                }
+                count++;
+            } else if (count == limit - 1) {
+                emit(index, file.length());
+                index = end;
+                count++;
+            }
+        }
+
+        void finish() {
+            if (index == 0) {
+                // nothing was split off, the whole input is the only piece, even if it is empty
+                if (piece == 0) {
+                    auxiliary.append(piece++).append(": ").append(file, 0, file.length()).append('\n');
+                }
+                return;
+            }
+            if (limit <= 0 || count < limit) {
+                emit(index, file.length());
+            }
+            if (limit != 0) {
+                flushEmpty();
+            }
+        }
+
+        private void emit(int start, int end) {
+            if (start == end) {
+                pendingEmpty++;
+                return;
+            }
+            flushEmpty();
+            auxiliary.append(piece++).append(": ").append(file, start, end).append('\n');
+        }
+
+        private void flushEmpty() {
+            for (; pendingEmpty > 0 && !auxiliary.isFull(); pendingEmpty--) {
+                auxiliary.append(piece++).append(": ").append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.Constants;
+
+import java.util.regex.Pattern;
+
+/**
+ * How much work a single match run may do before it is taken for catastrophic backtracking and abandoned:
+ * at most a number of steps, that is character reads through an {@link InterruptibleCharSequence}, and at most
+ * an elapsed time. The limits default to {@link Constants#MATCH_STEP_BUDGET} and
+ * {@link Constants#MATCH_TIME_BUDGET_MILLIS}, and may be set with the system properties
+ * regextester.match.steps and regextester.match.millis.
+ * The step count is not thread safe; a run that matches on several threads gives each one its own {@link #fork()}
+ */
+public final class MatchBudget {
+    // the clock is read once every this many steps plus one, as reading it on every step would cost more than the step
+    private static final long CLOCK_MASK = 0xFFF;
+
+    private final String regex;
+    private final long maxSteps;
+    private long startTime;
+    private long deadline;
+    private long steps;
+
+    private MatchBudget(String regex, long maxSteps, long startTime, long deadline) {
+        this.regex = regex;
+        this.maxSteps = maxSteps;
+        this.startTime = startTime;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Starts the clock on the configured budget for a run of the pattern
+     */
+    public static MatchBudget start(Pattern pattern) {
+        long maxSteps = Long.getLong("regextester.match.steps", Constants.MATCH_STEP_BUDGET);
+        long maxMillis = Long.getLong("regextester.match.millis", Constants.MATCH_TIME_BUDGET_MILLIS);
+        long now = System.nanoTime();
+        return new MatchBudget(pattern.pattern(), maxSteps, now, now + maxMillis * 1_000_000);
+    }
+
+    /**
+     * @return a budget with the same deadline, and a step count of its own, for another thread of the same run
+     */
+    public MatchBudget fork() {
+        return new MatchBudget(regex, maxSteps, startTime, deadline);
+    }
+
+    /**
+     * Starts the budget over, for the next find of a run that gives each find a budget of its own, as the writing
+     * of the whole replace output of a large file may well take longer than a single budget in all
+     */
+    void restart() {
+        long maxMillis = (deadline - startTime) / 1_000_000;
+        startTime = System.nanoTime();
+        deadline = startTime + maxMillis * 1_000_000;
+        steps = 0;
+    }
+
+    /**
+     * Counts one character read
+     * @param index the offset being read
+     * @throws MatchBudgetExceededException if the run has used up its steps or its time
+     */
+    void step(int index) {
+        if (++steps > maxSteps || (steps & CLOCK_MASK) == 0 && System.nanoTime() - deadline > 0) {
+            throw new MatchBudgetExceededException(regex, index, steps, (System.nanoTime() - startTime) / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.vgrazi.regextester.action;
+
+/**
+ * Thrown when a match run uses up its {@link MatchBudget}, which nearly always means that the pattern backtracks
+ * catastrophically over the text, as (a+)+$ does over a long run of a's with no match at the end
+ */
+public class MatchBudgetExceededException extends RuntimeException {
+    private final String regex;
+    private final int offset;
+    private final long steps;
+    private final long elapsedMillis;
+    private int[] partialOffsets;
+
+    public MatchBudgetExceededException(String regex, int offset, long steps, long elapsedMillis) {
+        super(String.format("%s gave up after %,d steps in %,d ms, stuck at offset %d of the text."
+                + " The pattern is probably backtracking catastrophically", regex, steps, elapsedMillis, offset));
+        this.regex = regex;
+        this.offset = offset;
+        this.steps = steps;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getRegex() {
+        return regex;
+    }
+
+    /**
+     * @return the offset in the text being read when the budget ran out
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the packed offsets of the matches found before the budget ran out, as {@link ParallelFind} packs them,
+     * or null if they were not recorded
+     */
+    public int[] getPartialOffsets() {
+        return partialOffsets;
+    }
+
+    /**
+     * Records the matches found before the budget ran out
+     * @return this exception, to rethrow
+     */
+    public MatchBudgetExceededException withPartialOffsets(int[] partialOffsets) {
+        this.partialOffsets = partialOffsets;
+        return this;
+    }
+}
@@ -0,0 +1,140 @@
+package com.vgrazi.regextester.action;
+
+/**
+ * Immutable snapshot of everything the match stage needs: the regex, the compilation flags, the selected
+ * action command, the target text and the replacement (or limit) text. It is taken on the event dispatch thread
+ * and handed to the {@link MatchWorker}, so that the worker never touches a Swing component.
+ * Parallel asks for a large text to be searched in chunks on all cores, see {@link MatchSnapshot#scanParallel}.
+ * The edit, if known, is what turned the text of the previous request into this one, so that only the matches
+ * around it need to be found again, see {@link MatchSnapshot#rescan}.
+ * Linear asks for the matches to be found by the {@link LinearPattern} engine rather than java.util.regex.
+ * Benchmark asks the benchmark command to time the pattern, rather than only highlight its matches.
+ * The generation identifies the edit that produced the snapshot, so that stale results can be discarded
+ */
+public final class MatchRequest {
+    private final long generation;
+    private final String regex;
+    private final int flags;
+    private final String actionCommand;
+    private final String text;
+    private final String replacement;
+    private final boolean parallel;
+    private final String previousText;
+    private final TextEdit edit;
+    private final boolean linear;
+    private final boolean benchmark;
+
+    /**
+     * A request with no replacement, matched by java.util.regex over the whole text on one thread; see the with
+     * methods for the rest
+     */
+    public MatchRequest(long generation, String regex, int flags, String actionCommand, String text) {
+        this(generation, regex, flags, actionCommand, text, "", false, null, null, false, false);
+    }
+
+    private MatchRequest(long generation, String regex, int flags, String actionCommand, String text, String replacement, boolean parallel,
+                         String previousText, TextEdit edit, boolean linear, boolean benchmark) {
+        this.generation = generation;
+        this.regex = regex;
+        this.flags = flags;
+        this.actionCommand = actionCommand;
+        this.text = text;
+        this.replacement = replacement;
+        this.parallel = parallel;
+        this.previousText = previousText;
+        this.edit = edit;
+        this.linear = linear;
+        this.benchmark = benchmark;
+    }
+
+    /**
+     * @param replacement the replacement pane text, which holds the limit for the split-with-limit radios
+     */
+    public MatchRequest withReplacement(String replacement) {
+        return new MatchRequest(generation, regex, flags, actionCommand, text, replacement, parallel, previousText, edit, linear, benchmark);
+    }
+
+    /**
+     * @param parallel whether to search a large text in chunks on all cores
+     */
+    public MatchRequest withParallel(boolean parallel) {
+        return new MatchRequest(generation, regex, flags, actionCommand, text, replacement, parallel, previousText, edit, linear, benchmark);
+    }
+
+    /**
+     * @param previousText the text of the previous request
+     * @param edit         the edit that turned the previous text into this one, or null to match the whole text
+     */
+    public MatchRequest withEdit(String previousText, TextEdit edit) {
+        return new MatchRequest(generation, regex, flags, actionCommand, text, replacement, parallel, previousText, edit, linear, benchmark);
+    }
+
+    /**
+     * @param linear whether to find the matches with the linear engine, if it supports the regex
+     */
+    public MatchRequest withLinear(boolean linear) {
+        return new MatchRequest(generation, regex, flags, actionCommand, text, replacement, parallel, previousText, edit, linear, benchmark);
+    }
+
+    /**
+     * @param benchmark whether the benchmark command times the pattern, which it is only asked to once edits settle
+     */
+    public MatchRequest withBenchmark(boolean benchmark) {
+        return new MatchRequest(generation, regex, flags, actionCommand, text, replacement, parallel, previousText, edit, linear, benchmark);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public String getRegex() {
+        return regex;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public String getActionCommand() {
+        return actionCommand;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return the replacement pane text. For the split-with-limit radios this holds the limit
+     */
+    public String getReplacement() {
+        return replacement;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public String getPreviousText() {
+        return previousText;
+    }
+
+    /**
+     * @return the edit from the previous text, or null if unknown
+     */
+    public TextEdit getEdit() {
+        return edit;
+    }
+
+    public boolean isLinear() {
+        return linear;
+    }
+
+    public boolean isBenchmark() {
+        return benchmark;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MatchRequest: #%d [%s] flags=%d command=%s text length=%d", generation, regex, flags, actionCommand, text.length());
+    }
+}
@@ -0,0 +1,118 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.ColorRange;
+
+import java.util.List;
+
+/**
+ * The output of the match stage for a single {@link MatchRequest}: the highlight ranges for the character pane,
+ * the text, or the listing, for the auxiliary pane, whether the replacement text was invalid, and where, and whether the run gave up
+ * on catastrophic backtracking, in which case the ranges are those of the matches found before it did, and a note
+ * about how the matches were found, for the Results label.
+ * Produced on the {@link MatchWorker} thread and applied to the panes on the event dispatch thread by the {@link Renderer}
+ */
+public final class MatchResult {
+    private final long generation;
+    private final List<ColorRange> ranges;
+    private final String auxiliaryText;
+    private final ResultRows auxiliaryRows;
+    private final boolean replacementError;
+    private final ReplacementSyntaxException replacementSyntaxError;
+    private final MatchBudgetExceededException budgetExceeded;
+    private final String note;
+
+    public MatchResult(long generation, List<ColorRange> ranges, String auxiliaryText, boolean replacementError) {
+        this(generation, ranges, auxiliaryText, replacementError, null);
+    }
+
+    public MatchResult(long generation, List<ColorRange> ranges, String auxiliaryText, boolean replacementError,
+                       MatchBudgetExceededException budgetExceeded) {
+        this(generation, ranges, auxiliaryText, null, replacementError, budgetExceeded);
+    }
+
+    /**
+     * A result listing groups or split pieces in the auxiliary pane, rather than showing text there
+     */
+    public MatchResult(long generation, List<ColorRange> ranges, ResultRows auxiliaryRows) {
+        this(generation, ranges, null, auxiliaryRows, false, null, null, null);
+    }
+
+    private MatchResult(long generation, List<ColorRange> ranges, String auxiliaryText, ResultRows auxiliaryRows,
+                        boolean replacementError, MatchBudgetExceededException budgetExceeded) {
+        this(generation, ranges, auxiliaryText, auxiliaryRows, replacementError, null, budgetExceeded, null);
+    }
+
+    private MatchResult(long generation, List<ColorRange> ranges, String auxiliaryText, ResultRows auxiliaryRows, boolean replacementError,
+                        ReplacementSyntaxException replacementSyntaxError, MatchBudgetExceededException budgetExceeded, String note) {
+        this.generation = generation;
+        this.ranges = List.copyOf(ranges);
+        this.auxiliaryText = auxiliaryText;
+        this.auxiliaryRows = auxiliaryRows;
+        this.replacementError = replacementError;
+        this.replacementSyntaxError = replacementSyntaxError;
+        this.budgetExceeded = budgetExceeded;
+        this.note = note;
+    }
+
+    /**
+     * @return this result with the supplied note
+     */
+    public MatchResult withNote(String note) {
+        return new MatchResult(generation, ranges, auxiliaryText, auxiliaryRows, replacementError, replacementSyntaxError, budgetExceeded, note);
+    }
+
+    /**
+     * @return this result, with the replacement invalid for the supplied reason
+     */
+    public MatchResult withReplacementError(ReplacementSyntaxException replacementSyntaxError) {
+        return new MatchResult(generation, ranges, auxiliaryText, auxiliaryRows, true, replacementSyntaxError, budgetExceeded, note);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public List<ColorRange> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * @return the text for the auxiliary pane, or null if the results were streamed into it, and it must be left
+     * as it is, or if they are listed as rows instead
+     */
+    public String getAuxiliaryText() {
+        return auxiliaryText;
+    }
+
+    /**
+     * @return the listing for the auxiliary pane, or null if it shows text
+     */
+    public ResultRows getAuxiliaryRows() {
+        return auxiliaryRows;
+    }
+
+    public boolean isReplacementError() {
+        return replacementError;
+    }
+
+    /**
+     * @return why the replacement is invalid, with where in it, or null if it is valid or the reason is not known
+     */
+    public ReplacementSyntaxException getReplacementSyntaxError() {
+        return replacementSyntaxError;
+    }
+
+    /**
+     * @return the reason the run gave up, or null if it ran to completion
+     */
+    public MatchBudgetExceededException getBudgetExceeded() {
+        return budgetExceeded;
+    }
+
+    /**
+     * @return a note about how the matches were found, or null if there is none
+     */
+    public String getNote() {
+        return note;
+    }
+}
@@ -0,0 +1,425 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.Constants;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The outcome of a single find() scan of a pattern over a text: the start and end offsets of every group
+ * (group 0 being the whole match) of every match, packed into one int array.
+ * Highlighting, the group listing, split results and the caret-driven group highlights are all derived from it,
+ * so the regex runs once per edit instead of once per consumer.
+ * The most recent snapshot is remembered, so that a caret move over the same pattern and text does not rescan.
+ * A scan that runs out of its {@link MatchBudget} gives a snapshot of the matches found until then, and is
+ * remembered too, so that a caret move does not burn the budget again.
+ * A scan also records which part of the text each find() read, so that after an edit, {@link #rescan} can keep
+ * the matches that did not read the edited characters, and only rematch around the edit
+ */
+public final class MatchSnapshot {
+    private static volatile MatchSnapshot latest;
+
+    private final Pattern pattern;
+    private final String text;
+    private final int groupCount;
+    private final int matchCount;
+    // for match m and group g, start is at offsets[(m * (groupCount + 1) + g) * 2] and end at the following index
+    private final int[] offsets;
+    // for find f, the last being the one that found nothing more, the lowest offset it read is at reads[f * 2] and
+    // the highest at the following index, or the text length if it hit the end. Null if not recorded
+    private final int[] reads;
+    // why the scan stopped short of the end of the text, or null if it did not
+    private final MatchBudgetExceededException budgetExceeded;
+    // the literal the scan searched for before running the matcher, or null, and the start positions it searched,
+    // and ran the matcher at, see PrefilteredFinder
+    private final RequiredLiteral requiredLiteral;
+    private final long searchedStarts;
+    private final long triedStarts;
+    // built on first use; LineIndex is immutable, so a racy double build is harmless
+    private LineIndex lineIndex;
+
+    private MatchSnapshot(Pattern pattern, String text, int groupCount, int[] offsets, int[] reads, MatchBudgetExceededException budgetExceeded) {
+        this(pattern, text, groupCount, offsets, reads, budgetExceeded, null, 0, 0);
+    }
+
+    private MatchSnapshot(Pattern pattern, String text, int groupCount, int[] offsets, int[] reads, MatchBudgetExceededException budgetExceeded,
+                          RequiredLiteral requiredLiteral, long searchedStarts, long triedStarts) {
+        this.pattern = pattern;
+        this.text = text;
+        this.groupCount = groupCount;
+        this.matchCount = offsets.length / ((groupCount + 1) * 2);
+        this.offsets = offsets;
+        this.reads = reads;
+        this.budgetExceeded = budgetExceeded;
+        this.requiredLiteral = requiredLiteral;
+        this.searchedStarts = searchedStarts;
+        this.triedStarts = triedStarts;
+    }
+
+    /**
+     * Returns the snapshot of all matches of the pattern in the text, scanning only if the most recent snapshot
+     * was taken for a different pattern or text
+     * @throws java.util.concurrent.CancellationException if the worker cancelled the scan
+     */
+    public static MatchSnapshot scan(Pattern pattern, String text) {
+        MatchSnapshot snapshot = latest;
+        if (snapshot != null && snapshot.pattern == pattern && snapshot.text.equals(text)) {
+            return snapshot;
+        }
+        snapshot = find(pattern, text, null, 0, 0, 0, 0);
+        latest = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Like {@link #scan(Pattern, String)}, for a text that the supplied edit made from the previous text. If the most
+     * recent snapshot is of the previous text, its matches up to the edit are kept, as long as the finds that found
+     * them read nothing from the edit on. Matching restarts where the last of them ended, and stops as soon as a
+     * match lines up with one of the previous matches after the edit, from where on the previous finds read nothing
+     * before the end of the edit; those matches are kept too, shifted by the length the edit added.
+     * Otherwise, the whole text is scanned
+     * @param previousText the text of the previous request, compared by identity with the most recent snapshot's
+     * @param edit         the edit from the previous text to this one, or null if unknown
+     * @throws java.util.concurrent.CancellationException if the worker cancelled the scan
+     */
+    public static MatchSnapshot rescan(Pattern pattern, String text, String previousText, TextEdit edit) {
+        MatchSnapshot previous = latest;
+        // \G matches where the previous match ended, which a matcher restarted mid-text does not know
+        if (edit == null || previous == null || previous.pattern != pattern || previous.text != previousText
+                || previous.reads == null || pattern.pattern().contains("\\G") || !edit.appliesTo(previousText, text)) {
+            return scan(pattern, text);
+        }
+        int start = edit.getStart();
+        int kept = 0;
+        while (kept < previous.matchCount && previous.reads[kept * 2 + 1] < start && previous.end(kept, 0) <= start) {
+            kept++;
+        }
+        // the earliest find from which on none read anything before the end of the edit
+        int clean = previous.matchCount + 1;
+        while (clean > kept && previous.reads[(clean - 1) * 2] >= edit.getOldEnd()) {
+            clean--;
+        }
+        int restart = 0;
+        if (kept > 0) {
+            // where find() would carry on from; past an empty match, one further
+            restart = previous.end(kept - 1, 0);
+            if (restart == previous.start(kept - 1, 0)) {
+                restart++;
+            }
+        }
+        MatchSnapshot snapshot = find(pattern, text, previous, kept, restart, Math.max(0, clean - 1), edit.getNewEnd() - edit.getOldEnd());
+        latest = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Finds the matches from the restart offset on, recording the offsets each find() read, after the kept
+     * matches of the previous snapshot. Once a match lines up with a previous match from the resync one on,
+     * the previous matches after it are appended, shifted by delta, instead of being found again.
+     * If the pattern has a {@link RequiredLiteral}, the matcher only runs where the literal could be part of a match.
+     * A find then also depends on the text it searched for the literal, from where it started, which it counts as read
+     */
+    private static MatchSnapshot find(Pattern pattern, String text, MatchSnapshot previous, int kept, int restart, int resync, int delta) {
+        ReadRangeCharSequence input = new ReadRangeCharSequence(text, MatchBudget.start(pattern));
+        Matcher matcher = PatternCache.shared().matcher(pattern, input);
+        PrefilteredFinder finder = new PrefilteredFinder(matcher, text, RequiredLiteral.of(pattern));
+        int groupCount = matcher.groupCount();
+        int stride = (groupCount + 1) * 2;
+        int[] offsets = new int[stride * (kept + 16)];
+        int[] reads = new int[2 * (kept + 16)];
+        if (kept > 0) {
+            System.arraycopy(previous.offsets, 0, offsets, 0, kept * stride);
+            System.arraycopy(previous.reads, 0, reads, 0, kept * 2);
+        }
+        int matchCount = kept;
+        MatchBudgetExceededException budgetExceeded = null;
+        try {
+            boolean found = restart <= text.length() && finder.find(restart);
+            while (true) {
+                if (matchCount * 2 + 2 > reads.length) {
+                    reads = Arrays.copyOf(reads, reads.length * 2);
+                }
+                reads[matchCount * 2] = Math.min(input.getLowestRead(), finder.getSearchedFrom());
+                // a match also depends on its end not being the end of the text, as for ^ in multiline mode, even
+                // if nothing there was read
+                reads[matchCount * 2 + 1] = found && !finder.hitEnd()
+                        ? Math.max(Math.max(input.getHighestRead(), finder.getScannedTo()), matcher.end()) : text.length();
+                if (!found) {
+                    break;
+                }
+                int base = matchCount * stride;
+                if (base + stride > offsets.length) {
+                    offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, base + stride));
+                }
+                for (int group = 0; group <= groupCount; group++) {
+                    offsets[base + group * 2] = matcher.start(group);
+                    offsets[base + group * 2 + 1] = matcher.end(group);
+                }
+                matchCount++;
+                if (previous != null) {
+                    while (resync < previous.matchCount && previous.start(resync, 0) + delta < matcher.start()) {
+                        resync++;
+                    }
+                    if (resync < previous.matchCount && previous.start(resync, 0) + delta == matcher.start()
+                            && previous.end(resync, 0) + delta == matcher.end()) {
+                        // from the same place on, the previous finds would read the same text as before, shifted
+                        int rest = previous.matchCount - resync - 1;
+                        offsets = Arrays.copyOf(offsets, (matchCount + rest) * stride);
+                        shift(previous.offsets, (resync + 1) * stride, offsets, matchCount * stride, rest * stride, delta);
+                        reads = Arrays.copyOf(reads, (matchCount + rest + 1) * 2);
+                        shift(previous.reads, (resync + 1) * 2, reads, matchCount * 2, (rest + 1) * 2, delta);
+                        matchCount += rest;
+                        break;
+                    }
+                }
+                input.resetReads();
+                found = finder.findNext();
+            }
+        } catch (MatchBudgetExceededException e) {
+            budgetExceeded = e;
+            reads = null;
+        }
+        return new MatchSnapshot(pattern, text, groupCount, trim(offsets, matchCount * stride),
+                reads == null ? null : trim(reads, matchCount * 2 + 2), budgetExceeded,
+                finder.getLiteral(), finder.getSearched(), finder.getTried());
+    }
+
+    /**
+     * Copies the offsets, adding delta to all but those of groups that did not participate and of finds that read nothing
+     */
+    private static void shift(int[] source, int from, int[] target, int to, int length, int delta) {
+        for (int index = 0; index < length; index++) {
+            int offset = source[from + index];
+            target[to + index] = offset < 0 || offset == Integer.MAX_VALUE ? offset : offset + delta;
+        }
+    }
+
+    private static int[] trim(int[] array, int length) {
+        return array.length == length ? array : Arrays.copyOf(array, length);
+    }
+
+    /**
+     * Like {@link #scan(Pattern, String)}, except that a text of at least {@link Constants#PARALLEL_FIND_THRESHOLD}
+     * characters is searched in chunks on the common ForkJoinPool, with the same results
+     * @throws java.util.concurrent.CancellationException if the worker cancelled the scan
+     */
+    public static MatchSnapshot scanParallel(Pattern pattern, String text) {
+        if (text.length() < Constants.PARALLEL_FIND_THRESHOLD) {
+            return scan(pattern, text);
+        }
+        MatchSnapshot snapshot = latest;
+        if (snapshot != null && snapshot.pattern == pattern && snapshot.text.equals(text)) {
+            return snapshot;
+        }
+        int groupCount = pattern.matcher("").groupCount();
+        try {
+            snapshot = new MatchSnapshot(pattern, text, groupCount, ParallelFind.find(pattern, text, ForkJoinPool.commonPool(),
+                    MatchBudget.start(pattern)), null, null);
+        } catch (MatchBudgetExceededException e) {
+            snapshot = new MatchSnapshot(pattern, text, groupCount, e.getPartialOffsets(), null, e);
+        }
+        latest = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Like {@link #scan(Pattern, String)}, with the matches found by the linear engine, which finds the same ones
+     * and can't backtrack catastrophically, so runs without a budget. It does not record what each find read, so
+     * the rescan after the next edit scans the whole text
+     * @param linear the pattern compiled for the linear engine, from the same regex and flags as the pattern
+     * @throws java.util.concurrent.CancellationException if the worker cancelled the scan
+     */
+    public static MatchSnapshot scanLinear(LinearPattern linear, Pattern pattern, String text) {
+        MatchSnapshot snapshot = findLinear(linear, pattern, text);
+        latest = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Like {@link #scanLinear}, without remembering the snapshot
+     */
+    static MatchSnapshot findLinear(LinearPattern linear, Pattern pattern, String text) {
+        LinearMatcher matcher = linear.matcher(text);
+        int groupCount = matcher.groupCount();
+        int stride = (groupCount + 1) * 2;
+        int[] offsets = new int[stride * 16];
+        int matchCount = 0;
+        while (matcher.find()) {
+            int base = matchCount * stride;
+            if (base + stride > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            for (int group = 0; group <= groupCount; group++) {
+                offsets[base + group * 2] = matcher.start(group);
+                offsets[base + group * 2 + 1] = matcher.end(group);
+            }
+            matchCount++;
+        }
+        return new MatchSnapshot(pattern, text, groupCount, trim(offsets, matchCount * stride), null, null);
+    }
+
+    /**
+     * @return the literal the scan searched for before running the matcher, or null if it ran the matcher everywhere
+     */
+    public RequiredLiteral getRequiredLiteral() {
+        return requiredLiteral;
+    }
+
+    /**
+     * @return the start positions a scan with a required literal searched, from where each find started to where
+     * it matched; a rescan counts only those it searched again
+     */
+    public long getSearchedStarts() {
+        return searchedStarts;
+    }
+
+    /**
+     * @return of the start positions searched, those the matcher was run at
+     */
+    public long getTriedStarts() {
+        return triedStarts;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return the line feed offsets of the text, built on first use
+     */
+    public LineIndex getLineIndex() {
+        LineIndex index = lineIndex;
+        if (index == null) {
+            index = LineIndex.of(text);
+            lineIndex = index;
+        }
+        return index;
+    }
+
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    /**
+     * @return the reason the scan gave up before the end of the text, in which case only the matches found until
+     * then are recorded, or null if the scan was complete
+     */
+    public MatchBudgetExceededException getBudgetExceeded() {
+        return budgetExceeded;
+    }
+
+    /**
+     * @return the start offset of the group in the match, or -1 if the group did not participate
+     */
+    public int start(int match, int group) {
+        return offsets[index(match, group)];
+    }
+
+    /**
+     * @return the end offset (exclusive) of the group in the match, or -1 if the group did not participate
+     */
+    public int end(int match, int group) {
+        return offsets[index(match, group) + 1];
+    }
+
+    private int index(int match, int group) {
+        if (group < 0 || group > groupCount) {
+            // same failure as Matcher.start(int) for a group the pattern does not have
+            throw new IndexOutOfBoundsException("No group " + group);
+        }
+        return (match * (groupCount + 1) + group) * 2;
+    }
+
+    /**
+     * @return the text captured by the group in the match, or null if the group did not participate
+     */
+    public String group(int match, int group) {
+        int start = start(match, group);
+        return start == -1 ? null : text.substring(start, end(match, group));
+    }
+
+    /**
+     * Same result as {@link Pattern#split(CharSequence, int)}, derived from the recorded matches
+     */
+    public String[] split(int limit) {
+        return split(limit, false);
+    }
+
+    /**
+     * Same result as {@link Pattern#splitWithDelimiters(CharSequence, int)}, derived from the recorded matches
+     */
+    public String[] splitWithDelimiters(int limit) {
+        return split(limit, true);
+    }
+
+    private String[] split(int limit, boolean withDelimiters) {
+        int[] bounds = splitBounds(limit, withDelimiters);
+        String[] pieces = new String[bounds.length / 2];
+        for (int piece = 0; piece < pieces.length; piece++) {
+            pieces[piece] = text.substring(bounds[piece * 2], bounds[piece * 2 + 1]);
+        }
+        return pieces;
+    }
+
+    /**
+     * The pieces {@link #split(int)} or {@link #splitWithDelimiters(int)} would return, as offsets into the text,
+     * so that they can be listed without building every String
+     * @return the start and end offset of each piece, in pairs
+     */
+    public int[] splitBounds(int limit, boolean withDelimiters) {
+        int count = 0;
+        int index = 0;
+        boolean matchLimited = limit > 0;
+        int[] bounds = new int[16];
+        int size = 0;
+        for (int match = 0; match < matchCount; match++) {
+            int start = start(match, 0);
+            int end = end(match, 0);
+            if (size + 4 > bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            if (!matchLimited || count < limit - 1) {
+                if (index == 0 && start == 0 && start == end) {
+                    // no empty leading substring for a zero-width match at the beginning of the input
+                    continue;
+                }
+                bounds[size++] = index;
+                bounds[size++] = start;
+                index = end;
+                if (withDelimiters) {
+                    bounds[size++] = start;
+                    bounds[size++] = end;
+                }
+                count++;
+            } else if (count == limit - 1) {
+                bounds[size++] = index;
+                bounds[size++] = text.length();
+                index = end;
+                count++;
+            }
+        }
+        // if no match was found, the result is the whole input
+        if (index == 0) {
+            return new int[]{0, text.length()};
+        }
+        if (!matchLimited || count < limit) {
+            if (size + 2 > bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length + 2);
+            }
+            bounds[size++] = index;
+            bounds[size++] = text.length();
+        }
+        if (limit == 0) {
+            while (size > 0 && bounds[size - 2] == bounds[size - 1]) {
+                size -= 2;
+            }
+        }
+        return Arrays.copyOf(bounds, size);
+    }
+}
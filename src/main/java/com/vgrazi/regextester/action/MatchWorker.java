@@ -0,0 +1,94 @@
+package com.vgrazi.regextester.action;
+
+import javax.swing.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs the match stage off the event dispatch thread. Every edit takes a new generation number; submitting a task
+ * cancels the one still running for an older generation, and results of stale generations are dropped,
+ * so that only the outcome of the latest edit ever reaches the panes.
+ * Call {@link #nextGeneration()} and {@link #submit} from the event dispatch thread. The callbacks are invoked on it too
+ */
+public class MatchWorker {
+    private final ExecutorService executor;
+    private final AtomicLong generation = new AtomicLong();
+    private Future<?> pending;
+
+    public MatchWorker(String name) {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a new generation, invalidating any work submitted for older ones
+     * @return the new generation number, to be stamped on the snapshot of the next task
+     */
+    public long nextGeneration() {
+        return generation.incrementAndGet();
+    }
+
+    /**
+     * @return true if no newer generation has been started since the supplied one
+     */
+    public boolean isCurrent(long generation) {
+        return this.generation.get() == generation;
+    }
+
+    /**
+     * Cancels the pending task, if any, and schedules the supplied one
+     * @param generation the generation the task was created for
+     * @param task       the match work. Must only touch immutable snapshots, never Swing components
+     * @param onResult   receives the result on the event dispatch thread, if the generation is still current
+     * @param onError    receives any failure other than cancellation on the event dispatch thread, if the generation is still current
+     */
+    public <T> void submit(long generation, Callable<T> task, Consumer<T> onResult, Consumer<Exception> onError) {
+        if (pending != null && pending.cancel(true)) {
+            PipelineMetrics.shared().superseded();
+        }
+        pending = executor.submit(() -> {
+            if (!isCurrent(generation)) {
+                return;
+            }
+            try {
+                T result = task.call();
+                SwingUtilities.invokeLater(() -> {
+                    if (isCurrent(generation)) {
+                        onResult.accept(result);
+                    } else {
+                        PipelineMetrics.shared().superseded();
+                    }
+                });
+            } catch (CancellationException e) {
+                // superseded by a newer edit, nothing to report
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (isCurrent(generation)) {
+                        onError.accept(e);
+                    }
+                });
+            } finally {
+                // clear the interrupt, so that it does not leak into the next task
+                Thread.interrupted();
+            }
+        });
+    }
+
+    /**
+     * Cancels the pending task, if any, and drops the results of every generation so far
+     */
+    public void cancel() {
+        nextGeneration();
+        if (pending != null) {
+            pending.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.vgrazi.regextester.action;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Finds every match of a pattern in a text on a ForkJoinPool, with the same results, in the same order,
+ * as a sequential find() loop. The text is cut into chunks, and each chunk lists the matches that start in it.
+ * <ul>
+ * <li>If no part of the pattern can match a line feed, chunks are cut just after line feeds, so that no match can
+ * span two chunks, and each chunk is searched on its own.</li>
+ * <li>Otherwise each chunk is searched in a window that overlaps the next chunk, and a match that reaches the end of
+ * its window is searched again in a wider one. A match that starts in one chunk and ends in the next moves the
+ * sequential search position past the start of the next chunk; the merge then rescans from there until it lines up
+ * with that chunk's matches again. The results are exact for matches up to the overlap in length</li>
+ * </ul>
+ * Patterns using \G, whose meaning depends on the end of the previous match, are always searched sequentially.
+ * Given a {@link MatchBudget}, each chunk counts its steps against a fork of it. When a chunk runs out, the other
+ * chunks still finish or run out in turn, and the matches before the first chunk to run out are kept in the exception
+ */
+public class ParallelFind {
+    // the smallest chunk worth a task of its own
+    public static final int MIN_CHUNK_SIZE = 64 * 1024;
+    // how far each chunk's window reaches into the next chunk
+    public static final int OVERLAP = 64 * 1024;
+    private static final Pattern INLINE_DOTALL = Pattern.compile("\\(\\?[a-zA-Z-]*s");
+    // escapes outside a character class that may match a line feed: \n \s \R \v \X \W \D \H, properties,
+    // and characters given by code
+    private static final String NEWLINE_ESCAPES = "nsRvXWDHpPxu0cN";
+    // the flags that change which characters a character class matches
+    private static final int CLASS_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.COMMENTS
+            | Pattern.UNICODE_CHARACTER_CLASS;
+
+    private ParallelFind() {
+    }
+
+    /**
+     * Finds all matches on the pool, in about four chunks per thread
+     * @return the packed offsets of all matches, as MatchSnapshot stores them: for match m and group g, start
+     * at [(m * (groupCount + 1) + g) * 2] and end at the following index
+     * @param budget the budget of the run, or null for no limit
+     * @throws CancellationException if the calling thread is interrupted
+     * @throws MatchBudgetExceededException if a chunk runs out of budget, with the matches found before it
+     */
+    public static int[] find(Pattern pattern, String text, ForkJoinPool pool, MatchBudget budget) {
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, text.length() / (pool.getParallelism() * 4));
+        return find(pattern, text, pool, chunkSize, OVERLAP, budget);
+    }
+
+    /**
+     * The sequential find() loop, with its results packed as {@link #find(Pattern, String, ForkJoinPool, MatchBudget)} packs them
+     * @param budget the budget of the run, or null for no limit
+     * @throws MatchBudgetExceededException if the budget runs out, with the matches found before it
+     */
+    public static int[] findSequential(Pattern pattern, String text, MatchBudget budget) {
+        return find(pattern, new InterruptibleCharSequence(text, budget), 0, true, 0, text.length());
+    }
+
+    static int[] find(Pattern pattern, String text, ForkJoinPool pool, int chunkSize, int overlap, MatchBudget budget) {
+        String regex = pattern.pattern();
+        boolean lineBounded = isLineBounded(regex, pattern.flags());
+        int[] starts = lineBounded ? lineChunks(text, chunkSize) : fixedChunks(text.length(), chunkSize);
+        if (starts.length <= 2 || usesPreviousMatchEnd(regex)) {
+            return findSequential(pattern, text, budget);
+        }
+        int[][] chunks = new int[starts.length - 1][];
+        MatchBudgetExceededException[] exceeded = new MatchBudgetExceededException[chunks.length];
+        // the pool threads stop when the thread waiting for them is interrupted
+        ForkJoinTask<Void> task = pool.submit(new ChunkTask(pattern, text, Thread.currentThread(), budget, starts, chunks,
+                exceeded, lineBounded, overlap, 0, chunks.length));
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.cancel(true);
+            throw new CancellationException("Parallel find cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            if (exceeded[chunk] != null) {
+                throw exceeded[chunk].withPartialOffsets(partial(pattern, text, starts, chunks, chunk));
+            }
+        }
+        return merge(pattern, new InterruptibleCharSequence(text), starts, chunks);
+    }
+
+    /**
+     * The matches found before the chunk that ran out of budget: those of the chunks before it, which are complete,
+     * followed by its own, which are complete up to where it gave up, unless a match of the chunks before it runs
+     * into it. The merge would then have to rescan it, with nothing to stop it backtracking as the chunk did
+     */
+    private static int[] partial(Pattern pattern, String text, int[] starts, int[][] chunks, int exceeded) {
+        int[] before = merge(pattern, new InterruptibleCharSequence(text), starts, Arrays.copyOf(chunks, exceeded));
+        int stride = (pattern.matcher("").groupCount() + 1) * 2;
+        int from = before.length == 0 ? 0 : nextSearchStart(before[before.length - stride], before[before.length - stride + 1]);
+        if (from > starts[exceeded]) {
+            return before;
+        }
+        int[] partial = Arrays.copyOf(before, before.length + chunks[exceeded].length);
+        System.arraycopy(chunks[exceeded], 0, partial, before.length, chunks[exceeded].length);
+        return partial;
+    }
+
+    /**
+     * Times the sequential find, and the parallel find on pools of 1, 2, 4... threads up to the number of cores,
+     * and checks every parallel result against the sequential one
+     * @param out receives the report
+     * @return true if every parallel result was identical to the sequential one
+     */
+    public static boolean scalingReport(Pattern pattern, String text, Appendable out) throws IOException {
+        int[] expected = findSequential(pattern, text, null);
+        int stride = (pattern.matcher("").groupCount() + 1) * 2;
+        String chunking = usesPreviousMatchEnd(pattern.pattern()) ? "no chunks, as it uses \\G"
+                : isLineBounded(pattern.pattern(), pattern.flags()) ? "chunks cut at line feeds" : "overlapping chunks";
+        out.append(String.format("Parallel find of %s over %,d characters, %s: %,d matches%n",
+                pattern.pattern(), text.length(), chunking, expected.length / stride));
+        out.append(String.format("%10s %10s %8s  %s%n", "threads", "ms", "speedup", "result"));
+        long sequential = bestTime(() -> findSequential(pattern, text, null));
+        out.append(String.format("%10s %10.1f %8.2f%n", "sequential", sequential / 1e6, 1.0));
+        List<Integer> threadCounts = new ArrayList<>();
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(cores);
+        boolean identical = true;
+        for (int threads : threadCounts) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                int[][] result = new int[1][];
+                long time = bestTime(() -> result[0] = find(pattern, text, pool, null));
+                boolean same = Arrays.equals(expected, result[0]);
+                identical &= same;
+                out.append(String.format("%10d %10.1f %8.2f  %s%n", threads, time / 1e6, (double) sequential / time,
+                        same ? "identical" : "DIFFERENT from sequential"));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return identical;
+    }
+
+    /**
+     * @return the fastest of three timed runs, in nanoseconds, after one warm-up run
+     */
+    private static long bestTime(Runnable run) {
+        run.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Math.max(best, 1);
+    }
+
+    /**
+     * Lists the matches that start in the chunk [start, end), searching from start
+     * @param lineBounded true if no match can span a line feed, so that the chunk can be searched on its own
+     * @throws MatchBudgetExceededException if the input's budget runs out, with the matches found before it
+     */
+    private static int[] find(Pattern pattern, CharSequence input, int overlap, boolean lineBounded, int start, int end) {
+        Matcher matcher = pattern.matcher(input).useTransparentBounds(true).useAnchoringBounds(false);
+        int stride = (matcher.groupCount() + 1) * 2;
+        int[] offsets = new int[stride * 16];
+        int count = 0;
+        int length = input.length();
+        int windowEnd = lineBounded ? end : (int) Math.min(length, (long) end + overlap);
+        int from = start;
+        while (from <= windowEnd) {
+            matcher.region(from, windowEnd);
+            try {
+                if (!matcher.find()) {
+                    break;
+                }
+            } catch (MatchBudgetExceededException e) {
+                throw e.withPartialOffsets(Arrays.copyOf(offsets, count * stride));
+            }
+            if (!lineBounded && matcher.hitEnd() && windowEnd < length) {
+                // the match, or an attempt before it, ran into the end of the window: widen it and search again
+                windowEnd = (int) Math.min(length, windowEnd + Math.max(Math.max(overlap, windowEnd - from), 1L));
+                continue;
+            }
+            if (matcher.start() >= end && end < length) {
+                // the next chunk lists it
+                break;
+            }
+            if (count * stride + stride > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            pack(matcher, offsets, count * stride);
+            count++;
+            from = nextSearchStart(matcher.start(), matcher.end());
+        }
+        return Arrays.copyOf(offsets, count * stride);
+    }
+
+    /**
+     * Joins the chunks' matches. A chunk's list is the sequential result from the point where the sequential search
+     * position lines up with the chunk's own search position; until then, the merge searches sequentially
+     */
+    private static int[] merge(Pattern pattern, CharSequence input, int[] starts, int[][] chunks) {
+        Matcher matcher = pattern.matcher(input).useTransparentBounds(true).useAnchoringBounds(false);
+        int stride = (matcher.groupCount() + 1) * 2;
+        int total = 0;
+        for (int[] chunk : chunks) {
+            total += chunk.length;
+        }
+        int[] offsets = new int[total];
+        int count = 0;
+        // the sequential search position: the end of the last match, plus one if that match was empty
+        int from = 0;
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            int[] list = chunks[chunk];
+            int matches = list.length / stride;
+            int start = starts[chunk];
+            int end = starts[chunk + 1];
+            int first = 0;
+            while (from > start) {
+                // a match of an earlier chunk ran into this one; skip this chunk's matches that start before it
+                while (first < matches && list[first * stride] < from) {
+                    first++;
+                }
+                int chunkFrom = first == 0 ? start : nextSearchStart(list[(first - 1) * stride], list[(first - 1) * stride + 1]);
+                if (first < matches && chunkFrom <= from) {
+                    // the chunk searched from no later than here and found this match first, so the sequential search does too
+                    break;
+                }
+                if (from > input.length()) {
+                    first = matches;
+                    break;
+                }
+                matcher.region(from, input.length());
+                if (!matcher.find() || matcher.start() >= end && end < input.length()) {
+                    first = matches;
+                    break;
+                }
+                if (count * stride + stride > offsets.length) {
+                    offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, count * stride + stride));
+                }
+                pack(matcher, offsets, count * stride);
+                count++;
+                from = nextSearchStart(matcher.start(), matcher.end());
+            }
+            if (first < matches) {
+                int copy = (matches - first) * stride;
+                if (count * stride + copy > offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * stride + copy);
+                }
+                System.arraycopy(list, first * stride, offsets, count * stride, copy);
+                count += matches - first;
+                from = nextSearchStart(list[(matches - 1) * stride], list[(matches - 1) * stride + 1]);
+            }
+        }
+        return Arrays.copyOf(offsets, count * stride);
+    }
+
+    /**
+     * Where find() resumes after a match: at its end, or one further on if it was empty
+     */
+    private static int nextSearchStart(int start, int end) {
+        return end == start ? end + 1 : end;
+    }
+
+    private static void pack(Matcher matcher, int[] offsets, int base) {
+        for (int group = 0; group <= matcher.groupCount(); group++) {
+            offsets[base + group * 2] = matcher.start(group);
+            offsets[base + group * 2 + 1] = matcher.end(group);
+        }
+    }
+
+    /**
+     * @return chunk boundaries, each just after a line feed, roughly chunkSize apart, starting with 0 and ending with the length
+     */
+    private static int[] lineChunks(String text, int chunkSize) {
+        int[] starts = new int[text.length() / chunkSize + 2];
+        int count = 1;
+        int position = chunkSize;
+        while (position < text.length()) {
+            int lineFeed = text.indexOf('\n', position - 1);
+            if (lineFeed == -1 || lineFeed + 1 >= text.length()) {
+                break;
+            }
+            starts[count++] = lineFeed + 1;
+            position = lineFeed + 1 + chunkSize;
+        }
+        starts[count++] = text.length();
+        return Arrays.copyOf(starts, count);
+    }
+
+    private static int[] fixedChunks(int length, int chunkSize) {
+        int count = (length + chunkSize - 1) / chunkSize;
+        int[] starts = new int[Math.max(count, 1) + 1];
+        for (int chunk = 1; chunk < starts.length; chunk++) {
+            starts[chunk] = (int) Math.min(length, (long) chunk * chunkSize);
+        }
+        return starts;
+    }
+
+    /**
+     * Decides, conservatively, whether no match of the regex can contain a line feed. Any construct that might match
+     * one, such as \s, . in DOTALL mode, or a character class that does, such as [^a] or [\t-\r], makes it false.
+     * Each character class is compiled on its own to ask it, rather than reading its escapes and ranges
+     */
+    static boolean isLineBounded(String regex, int flags) {
+        if (regex.indexOf('\n') != -1) {
+            return false;
+        }
+        if ((flags & Pattern.LITERAL) != 0) {
+            return true;
+        }
+        boolean dotAll = (flags & Pattern.DOTALL) != 0 || INLINE_DOTALL.matcher(regex).find();
+        for (int i = 0; i < regex.length(); i++) {
+            char ch = regex.charAt(i);
+            if (ch == '\\') {
+                if (++i == regex.length()) {
+                    return false;
+                }
+                char escaped = regex.charAt(i);
+                if (escaped == 'Q') {
+                    // quoted literal text, which holds no line feed
+                    int quoteEnd = regex.indexOf("\\E", i);
+                    if (quoteEnd == -1) {
+                        return true;
+                    }
+                    i = quoteEnd + 1;
+                } else if (NEWLINE_ESCAPES.indexOf(escaped) != -1) {
+                    return false;
+                }
+            } else if (ch == '[') {
+                int end = GroupStructure.skipCharacterClass(regex, i);
+                if (end == regex.length() || classMatchesLineFeed(regex.substring(i, end + 1), flags)) {
+                    return false;
+                }
+                i = end;
+            } else if (ch == '.' && dotAll) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the character class matches a line feed, or can't be compiled on its own
+     */
+    private static boolean classMatchesLineFeed(String characterClass, int flags) {
+        try {
+            return Pattern.compile(characterClass, flags & CLASS_FLAGS).matcher("\n").matches();
+        } catch (PatternSyntaxException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return true if the regex uses \G, which matches at the end of the previous match, so that chunks can't be
+     * searched independently
+     */
+    static boolean usesPreviousMatchEnd(String regex) {
+        for (int i = 0; i < regex.length() - 1; i++) {
+            if (regex.charAt(i) == '\\') {
+                if (regex.charAt(i + 1) == 'G') {
+                    return true;
+                }
+                i++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Searches a range of chunks, splitting it in half until a single chunk remains
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private final Pattern pattern;
+        private final String text;
+        private final Thread owner;
+        private final MatchBudget budget;
+        private final int[] starts;
+        private final int[][] chunks;
+        private final MatchBudgetExceededException[] exceeded;
+        private final boolean lineBounded;
+        private final int overlap;
+        private final int from;
+        private final int to;
+
+        ChunkTask(Pattern pattern, String text, Thread owner, MatchBudget budget, int[] starts, int[][] chunks,
+                  MatchBudgetExceededException[] exceeded, boolean lineBounded, int overlap, int from, int to) {
+            this.pattern = pattern;
+            this.text = text;
+            this.owner = owner;
+            this.budget = budget;
+            this.starts = starts;
+            this.chunks = chunks;
+            this.exceeded = exceeded;
+            this.lineBounded = lineBounded;
+            this.overlap = overlap;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                CharSequence input = new InterruptibleCharSequence(text, owner, budget == null ? null : budget.fork());
+                try {
+                    chunks[from] = find(pattern, input, overlap, lineBounded, starts[from], starts[from + 1]);
+                } catch (MatchBudgetExceededException e) {
+                    chunks[from] = e.getPartialOffsets();
+                    exceeded[from] = e;
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChunkTask(pattern, text, owner, budget, starts, chunks, exceeded, lineBounded, overlap, from, middle),
+                    new ChunkTask(pattern, text, owner, budget, starts, chunks, exceeded, lineBounded, overlap, middle, to));
+        }
+    }
+}
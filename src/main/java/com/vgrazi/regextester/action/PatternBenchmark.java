@@ -0,0 +1,143 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.Constants;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures how fast the pattern finds all of its matches in the text, for the Benchmark radio: a warm-up loop,
+ * so that the JIT has compiled the matcher, then a measured loop, timing every run. A run is what production code
+ * would do, a new Matcher over the String and a find() loop to the end, without the
+ * {@link InterruptibleCharSequence} the other commands match through, whose checks would be measured too.
+ * Instead, the first run is the budgeted scan that highlights the matches, so a pattern that backtracks
+ * catastrophically gives up there, and the loops check for cancellation between runs.
+ * A render only highlights the matches; the pattern is timed by a request the window makes once edits settle
+ */
+public final class PatternBenchmark {
+    // the latencies of this many runs are held at first, doubling as more runs finish
+    private static final int INITIAL_RUNS = 1_024;
+
+    private PatternBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark on the {@link MatchWorker} thread
+     * @return the highlights of the matches, and the report for the auxiliary pane
+     * @throws CancellationException if the worker cancelled the run
+     */
+    static MatchResult run(MatchRequest request, Pattern pattern) {
+        String text = request.getText();
+        MatchSnapshot snapshot = MatchSnapshot.scan(pattern, text);
+        if (snapshot.getBudgetExceeded() != null || request.getRegex().trim().isEmpty()) {
+            return new MatchResult(request.getGeneration(), Calculator.processFindCommand(snapshot), "", false, snapshot.getBudgetExceeded());
+        }
+        if (!request.isBenchmark()) {
+            return new MatchResult(request.getGeneration(), Calculator.processFindCommand(snapshot), String.format(
+                    "Timing the pattern once the pattern and text are left unchanged for %,d ms%n", Constants.BENCHMARK_SETTLE_MILLIS), false);
+        }
+        int matchCount = snapshot.getMatchCount();
+
+        long warmUpStart = System.nanoTime();
+        long warmUpRuns = 0;
+        while (System.nanoTime() - warmUpStart < Constants.BENCHMARK_WARMUP_MILLIS * 1_000_000) {
+            check(run(pattern, text), matchCount);
+            warmUpRuns++;
+        }
+        long warmUpTime = System.nanoTime() - warmUpStart;
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocation = threads instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled() ? bean : null;
+        long[] latencies = new long[INITIAL_RUNS];
+        int runs = 0;
+        long elapsed = 0;
+        // the growth of the latencies, which is not the pattern's allocation
+        long grown = 0;
+        long allocatedBefore = allocated(allocation);
+        while (runs < Constants.BENCHMARK_MAX_RUNS && elapsed < Constants.BENCHMARK_MEASUREMENT_MILLIS * 1_000_000) {
+            if (runs == latencies.length) {
+                long growStart = allocated(allocation);
+                latencies = Arrays.copyOf(latencies, Math.min(runs * 2, Constants.BENCHMARK_MAX_RUNS));
+                grown += allocated(allocation) - growStart;
+            }
+            long runStart = System.nanoTime();
+            int count = run(pattern, text);
+            long runEnd = System.nanoTime();
+            check(count, matchCount);
+            latencies[runs++] = runEnd - runStart;
+            elapsed += runEnd - runStart;
+        }
+        long allocated = allocation == null ? -1 : allocated(allocation) - allocatedBefore - grown;
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%s over %,d characters, %,d matches per run%n", pattern.pattern(), text.length(), matchCount));
+        report.append(String.format("Warm-up:            %,d runs in %s%n", warmUpRuns, duration(warmUpTime)));
+        report.append(String.format("Measured:           %,d runs in %s%n", runs, duration(elapsed)));
+        report.append(String.format("Runs per second:    %,.1f%n", runs * 1e9 / elapsed));
+        report.append(String.format("Per character:      %.2f ns%n", (double) elapsed / runs / Math.max(1, text.length())));
+        report.append(matchCount == 0 ? "Per match:          no matches\n"
+                : String.format("Per match:          %s%n", duration(elapsed / runs / matchCount)));
+        report.append(allocated < 0 ? "Allocated per run:  not measured on this JVM\n"
+                : String.format("Allocated per run:  %,d bytes%n", allocated / runs));
+        Arrays.sort(latencies, 0, runs);
+        report.append(String.format("Latency p50:        %s%n", duration(percentile(latencies, runs, 50))));
+        report.append(String.format("Latency p99:        %s%n", duration(percentile(latencies, runs, 99))));
+        report.append(String.format("Latency max:        %s%n", duration(latencies[runs - 1])));
+        // the highlighting scan's prefilter, which the measured runs, like production code, go without
+        String prefilter = Calculator.prefilterNote(snapshot);
+        report.append(String.format("Prefilter:          %s%n", prefilter == null ? "no required literal" : prefilter));
+        return new MatchResult(request.getGeneration(), Calculator.processFindCommand(snapshot), report.toString(), false);
+    }
+
+    /**
+     * One run, as production code would run the pattern
+     * @return the number of matches, which also keeps the JIT from eliminating the run
+     */
+    static int run(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the bytes the current thread has allocated, or 0 if the JVM does not measure them
+     */
+    private static long allocated(com.sun.management.ThreadMXBean allocation) {
+        return allocation == null ? 0 : allocation.getCurrentThreadAllocatedBytes();
+    }
+
+    private static void check(int count, int matchCount) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Benchmark cancelled");
+        }
+        if (count != matchCount) {
+            throw new IllegalStateException("A run found " + count + " matches, rather than " + matchCount);
+        }
+    }
+
+    /**
+     * @return the latency that the percentage of the sorted runs took no longer than
+     */
+    private static long percentile(long[] sorted, int runs, int percentage) {
+        int rank = (int) Math.ceil(runs * percentage / 100.0);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    static String duration(long nanos) {
+        if (nanos < 10_000) {
+            return String.format("%,d ns", nanos);
+        }
+        if (nanos < 10_000_000) {
+            return String.format("%,.1f µs", nanos / 1e3);
+        }
+        return String.format("%,.1f ms", nanos / 1e6);
+    }
+}
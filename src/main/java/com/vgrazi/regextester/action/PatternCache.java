@@ -0,0 +1,115 @@
+package com.vgrazi.regextester.action;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Bounded, least-recently-used cache of compiled Patterns keyed by (regex, flags), shared by every call site
+ * that compiles the user's pattern, so that a single edit compiles it once rather than once per listener.
+ * Safe to use from the event dispatch thread and the match workers concurrently.
+ * Patterns that fail to compile are not cached; the PatternSyntaxException is thrown on every call
+ */
+public class PatternCache {
+    public static final int DEFAULT_CAPACITY = 64;
+    private static final PatternCache SHARED = new PatternCache(DEFAULT_CAPACITY);
+
+    private final Map<Key, Pattern> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // the last Matcher handed out on each thread, recycled through reset() when the same Pattern is requested again
+    private final ThreadLocal<Matcher> lastMatcher = new ThreadLocal<>();
+
+    private record Key(String regex, int flags) {
+    }
+
+    public PatternCache(int capacity) {
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Pattern> eldest) {
+                if (size() > capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the cache shared by the whole application
+     */
+    public static PatternCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the compiled pattern for the supplied regex and flags, compiling it only on a cache miss
+     * @throws PatternSyntaxException if the regex does not compile
+     */
+    public Pattern compile(String regex, int flags) throws PatternSyntaxException {
+        Key key = new Key(regex, flags);
+        synchronized (cache) {
+            Pattern pattern = cache.get(key);
+            if (pattern != null) {
+                if (PipelineMetrics.isRecording()) {
+                    hits.incrementAndGet();
+                }
+                return pattern;
+            }
+        }
+        if (PipelineMetrics.isRecording()) {
+            misses.incrementAndGet();
+        }
+        // compile outside the lock, so that a slow compile does not block lookups of other patterns
+        long start = System.nanoTime();
+        Pattern pattern = Pattern.compile(regex, flags);
+        PipelineMetrics.shared().compiled(System.nanoTime() - start);
+        synchronized (cache) {
+            cache.put(key, pattern);
+        }
+        return pattern;
+    }
+
+    /**
+     * Returns a Matcher for the supplied pattern and input. If the previous Matcher handed out on the calling thread
+     * belongs to the same pattern it is reset to the new input and reused, rather than allocating a new one.
+     * The returned Matcher is only valid until the next call on the same thread
+     */
+    public Matcher matcher(Pattern pattern, CharSequence input) {
+        Matcher matcher = lastMatcher.get();
+        if (matcher != null && matcher.pattern() == pattern) {
+            return matcher.reset(input);
+        }
+        matcher = pattern.matcher(input);
+        lastMatcher.set(matcher);
+        return matcher;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PatternCache: size=%d hits=%d misses=%d evictions=%d", size(), getHits(), getMisses(), getEvictions());
+    }
+}
@@ -0,0 +1,266 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.Constants;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A set of patterns, one per line of the pattern pane, run together over a text for the Pattern set radio, as
+ * production code runs a set of rules over each log line. Each rule that must start with a literal, such as
+ * ERROR (\w+), is only tried where its literal is in the text: one pass over the text looks up the rules whose
+ * literal starts with each character, and tries just those there. The other rules each run their own find() loop.
+ * Either way a rule finds exactly the matches its own find() loop would, and the time spent in each is measured,
+ * to show which rule dominates the cost of the set.
+ * The patterns are compiled here rather than through the {@link PatternCache}, so that a set of hundreds does not
+ * evict the user's other patterns; the most recent set is remembered instead, as the pattern pane and the match
+ * worker both compile it for each edit
+ */
+public final class PatternSet {
+    private static volatile PatternSet latest;
+
+    /**
+     * One pattern of the set
+     * @param line   the line of the set it is on, starting at 1
+     * @param offset the offset of the line in the set
+     * @param prefix the literal every match starts with, or null if there is none, in which case the rule is tried
+     *               at every position
+     */
+    public record Rule(int line, int offset, Pattern pattern, String prefix) {
+        public String regex() {
+            return pattern.pattern();
+        }
+    }
+
+    /**
+     * The outcome of one rule of a {@link #scan}
+     * @param offsets        the start and end offset of each match
+     * @param nanos          the time spent matching the rule
+     * @param attempts       the positions the rule was tried at, or -1 if it ran its own find() loop
+     * @param budgetExceeded why the rule stopped short of the end of the text, or null if it did not
+     */
+    public record RuleScan(Rule rule, int[] offsets, long nanos, long attempts, MatchBudgetExceededException budgetExceeded) {
+        public int matchCount() {
+            return offsets.length / 2;
+        }
+    }
+
+    /**
+     * @param rules the outcome of each rule, in the order of the set
+     * @param nanos the time the whole scan took, including the pass looking up the rules to try
+     */
+    public record Scan(List<RuleScan> rules, long nanos) {
+    }
+
+    private final String source;
+    private final int flags;
+    private final List<Rule> rules;
+    private final boolean ignoreCase;
+    // the rules without a prefix
+    private final int[] unfiltered;
+    // the rules whose prefix starts with each ASCII character, case folded if ignoring case, or null if none do
+    private final int[][] asciiCandidates = new int[128][];
+    private final Map<Character, int[]> otherCandidates = new HashMap<>();
+
+    private PatternSet(String source, int flags, List<Rule> rules) {
+        this.source = source;
+        this.flags = flags;
+        this.rules = rules;
+        this.ignoreCase = (flags & Pattern.CASE_INSENSITIVE) != 0;
+        Map<Character, List<Integer>> byFirstChar = new HashMap<>();
+        List<Integer> unfiltered = new ArrayList<>();
+        for (int rule = 0; rule < rules.size(); rule++) {
+            String prefix = rules.get(rule).prefix();
+            if (prefix == null) {
+                unfiltered.add(rule);
+            } else {
+                byFirstChar.computeIfAbsent(fold(prefix.charAt(0)), _ -> new ArrayList<>()).add(rule);
+            }
+        }
+        this.unfiltered = unfiltered.stream().mapToInt(Integer::intValue).toArray();
+        byFirstChar.forEach((ch, list) -> {
+            int[] candidates = list.stream().mapToInt(Integer::intValue).toArray();
+            if (ch < asciiCandidates.length) {
+                asciiCandidates[ch] = candidates;
+            } else {
+                otherCandidates.put(ch, candidates);
+            }
+        });
+    }
+
+    /**
+     * Compiles each line of the set that is not blank, unless it is the most recently compiled set
+     * @param source the patterns, one per line
+     * @param flags  the flags every pattern is compiled with
+     * @throws PatternSyntaxException for the first line that does not compile, its description saying which line
+     */
+    public static PatternSet compile(String source, int flags) throws PatternSyntaxException {
+        PatternSet patternSet = latest;
+        if (patternSet != null && patternSet.flags == flags && patternSet.source.equals(source)) {
+            return patternSet;
+        }
+        List<Rule> rules = new ArrayList<>();
+        int line = 1;
+        for (int offset = 0; offset <= source.length(); line++) {
+            int end = source.indexOf('\n', offset);
+            if (end < 0) {
+                end = source.length();
+            }
+            String regex = source.substring(offset, end);
+            if (!regex.isBlank()) {
+                Pattern pattern;
+                try {
+                    pattern = Pattern.compile(regex, flags);
+                } catch (PatternSyntaxException e) {
+                    throw new PatternSyntaxException("Line " + line + ": " + e.getDescription(), regex, e.getIndex());
+                }
+                rules.add(new Rule(line, offset, pattern, literalPrefix(regex, flags)));
+            }
+            offset = end + 1;
+        }
+        patternSet = new PatternSet(source, flags, List.copyOf(rules));
+        latest = patternSet;
+        return patternSet;
+    }
+
+    /**
+     * @return the literal that every match of the regex starts with, as {@link RequiredLiteral} finds it, or null if
+     * there is none, or it may match in either case when the other rules do not ignore case
+     */
+    static String literalPrefix(String regex, int flags) {
+        RequiredLiteral prefix = RequiredLiteral.prefixOf(regex, flags);
+        // the rules are looked up by the first character in the case the set's flags fold it to, which an inline (?i)
+        // does not change
+        return prefix == null || prefix.isIgnoreCase() != ((flags & Pattern.CASE_INSENSITIVE) != 0) ? null : prefix.getLiteral();
+    }
+
+    /**
+     * @return the rules, in the order of their lines
+     */
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return the color the matches of the rule are highlighted in, and its line in the pattern pane
+     */
+    public static Color colorOf(int rule) {
+        return Constants.PATTERN_SET_COLORS[rule % Constants.PATTERN_SET_COLORS.length];
+    }
+
+    /**
+     * Finds the matches of every rule in the text, timing each rule. A rule that runs out of its
+     * {@link MatchBudget} gives up alone, keeping the matches it found, while the others go on.
+     * Each rule has its own step budget, and they share the time budget of the scan
+     * @throws CancellationException if the worker cancelled the scan
+     */
+    public Scan scan(String text) {
+        long scanStart = System.nanoTime();
+        int length = text.length();
+        int[][] offsets = new int[rules.size()][];
+        int[] counts = new int[rules.size()];
+        long[] nanos = new long[rules.size()];
+        long[] attempts = new long[rules.size()];
+        MatchBudgetExceededException[] budgetExceeded = new MatchBudgetExceededException[rules.size()];
+        Matcher[] matchers = new Matcher[rules.size()];
+        for (int rule = 0; rule < rules.size(); rule++) {
+            Pattern pattern = rules.get(rule).pattern();
+            offsets[rule] = new int[16];
+            matchers[rule] = pattern.matcher(new InterruptibleCharSequence(text, MatchBudget.start(pattern)))
+                    .useTransparentBounds(true).useAnchoringBounds(false);
+        }
+
+        for (int rule : unfiltered) {
+            Matcher matcher = matchers[rule];
+            attempts[rule] = -1;
+            long start = System.nanoTime();
+            try {
+                while (matcher.find()) {
+                    offsets[rule] = add(offsets[rule], counts[rule]++, matcher);
+                }
+            } catch (MatchBudgetExceededException e) {
+                budgetExceeded[rule] = e;
+            }
+            nanos[rule] = System.nanoTime() - start;
+        }
+
+        // where each rule may next match, after the end of its last match, as its own find() loop would go on from
+        int[] next = new int[rules.size()];
+        for (int index = 0; index < length; index++) {
+            if ((index & 0xFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Pattern set scan cancelled at index " + index);
+            }
+            int[] candidates = candidates(text.charAt(index));
+            if (candidates == null) {
+                continue;
+            }
+            for (int rule : candidates) {
+                String prefix = rules.get(rule).prefix();
+                if (index < next[rule] || budgetExceeded[rule] != null
+                        || !text.regionMatches(ignoreCase, index, prefix, 0, prefix.length())) {
+                    continue;
+                }
+                Matcher matcher = matchers[rule];
+                attempts[rule]++;
+                long start = System.nanoTime();
+                try {
+                    // with transparent, unanchored bounds, as a find() loop would try this position
+                    if (matcher.region(index, length).lookingAt()) {
+                        offsets[rule] = add(offsets[rule], counts[rule]++, matcher);
+                        next[rule] = matcher.end() > matcher.start() ? matcher.end() : matcher.end() + 1;
+                    }
+                } catch (MatchBudgetExceededException e) {
+                    budgetExceeded[rule] = e;
+                }
+                nanos[rule] += System.nanoTime() - start;
+            }
+        }
+
+        List<RuleScan> scans = new ArrayList<>(rules.size());
+        for (int rule = 0; rule < rules.size(); rule++) {
+            scans.add(new RuleScan(rules.get(rule), Arrays.copyOf(offsets[rule], counts[rule] * 2), nanos[rule],
+                    attempts[rule], budgetExceeded[rule]));
+        }
+        return new Scan(List.copyOf(scans), System.nanoTime() - scanStart);
+    }
+
+    /**
+     * @return the rules whose prefix may start with the character, or null if none may
+     */
+    private int[] candidates(char ch) {
+        ch = fold(ch);
+        return ch < asciiCandidates.length ? asciiCandidates[ch] : otherCandidates.get(ch);
+    }
+
+    /**
+     * @return the character that every case of the character folds to, if ignoring case
+     */
+    private char fold(char ch) {
+        return ignoreCase ? Character.toLowerCase(Character.toUpperCase(ch)) : ch;
+    }
+
+    /**
+     * Records the match as the match'th of the offsets, growing them if they are full
+     */
+    private static int[] add(int[] offsets, int match, Matcher matcher) {
+        if (match * 2 + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[match * 2] = matcher.start();
+        offsets[match * 2 + 1] = matcher.end();
+        return offsets;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PatternSet: %d rules, %d by literal prefix, flags=%d", rules.size(), rules.size() - unfiltered.length, flags);
+    }
+}
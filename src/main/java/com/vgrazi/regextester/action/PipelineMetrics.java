@@ -0,0 +1,300 @@
+package com.vgrazi.regextester.action;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times the stages of the render and match pipeline, to be read over JMX while the app runs, see
+ * {@link PipelineMetricsMXBean}. Recording is an uncontended add to a {@link LongAdder} and a read of the clock,
+ * once per stage run rather than per character or range, so it costs next to nothing whether or not anyone reads
+ * it; the numbers are only summed up when JMX asks for them. Safe to record from any thread. A thread doing work
+ * of its own rather than the user's, such as the {@link Prewarm}, excludes itself, so that the numbers describe the
+ * user's session
+ */
+public final class PipelineMetrics implements PipelineMetricsMXBean {
+    private static final PipelineMetrics SHARED = new PipelineMetrics();
+    private static final ThreadLocal<Boolean> EXCLUDED = ThreadLocal.withInitial(() -> false);
+
+    private final Timer compile = new Timer();
+    private final Map<String, Timer> match = new ConcurrentHashMap<>();
+    private final LongAdder superseded = new LongAdder();
+    private final Timer colorize = new Timer();
+    private final LongAdder ranges = new LongAdder();
+    private final Timer auxiliary = new Timer();
+    private final LongAdder rendersRequested = new LongAdder();
+    private final LongAdder rendersExecuted = new LongAdder();
+    private final Map<RenderScheduler.Stage, LongAdder> stageRenders = new EnumMap<>(RenderScheduler.Stage.class);
+    // startup, as JVM uptimes in milliseconds, and the nano time the first match render was asked for; -1 until known
+    private volatile long firstFrame = -1;
+    private volatile long firstHighlight = -1;
+    private volatile long firstHighlightLatency = -1;
+    private volatile long firstRenderRequested = -1;
+
+    /**
+     * The count, total and longest of a timed stage
+     */
+    private static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long elapsed) {
+            count.increment();
+            nanos.add(elapsed);
+            max.accumulate(elapsed);
+        }
+
+        Timing timing() {
+            long count = this.count.sum();
+            double total = nanos.sum() / 1e6;
+            return new Timing(count, total, count == 0 ? 0 : total / count, max.get() / 1e6);
+        }
+
+        void reset() {
+            count.reset();
+            nanos.reset();
+            max.reset();
+        }
+    }
+
+    private PipelineMetrics() {
+        for (RenderScheduler.Stage stage : RenderScheduler.Stage.values()) {
+            stageRenders.put(stage, new LongAdder());
+        }
+    }
+
+    /**
+     * @return the metrics shared by the whole application
+     */
+    public static PipelineMetrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * Publishes the shared metrics on the platform MBean server, for JConsole or VisualVM to attach to
+     */
+    public static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(SHARED, new ObjectName("com.vgrazi.regextester:type=PipelineMetrics"));
+        } catch (JMException e) {
+            // the app runs the same without them
+            System.out.println("PipelineMetrics.register " + e);
+        }
+    }
+
+    /**
+     * Leaves out everything the current thread records from now on
+     */
+    static void excludeCurrentThread() {
+        EXCLUDED.set(true);
+    }
+
+    /**
+     * @return false if the current thread is left out
+     */
+    static boolean isRecording() {
+        return !EXCLUDED.get();
+    }
+
+    void compiled(long nanos) {
+        if (isRecording()) {
+            compile.record(nanos);
+        }
+    }
+
+    /**
+     * @param mode the radio-button command run
+     */
+    void matched(String mode, long nanos) {
+        if (isRecording()) {
+            match.computeIfAbsent(mode, _ -> new Timer()).record(nanos);
+        }
+    }
+
+    void superseded() {
+        superseded.increment();
+    }
+
+    void colorized(int rangeCount, long nanos) {
+        if (isRecording()) {
+            colorize.record(nanos);
+            ranges.add(rangeCount);
+        }
+    }
+
+    /**
+     * Records an update of the auxiliary pane, or of the listing in its place
+     */
+    public void auxiliaryUpdated(long nanos) {
+        auxiliary.record(nanos);
+    }
+
+    /**
+     * Records the window first showing. Call on the event dispatch thread, as for the following
+     */
+    public void firstFrame() {
+        if (firstFrame < 0) {
+            firstFrame = uptime();
+            report();
+        }
+    }
+
+    /**
+     * Records a match render being asked for, the first of which is timed to its highlights
+     */
+    public void matchRenderRequested() {
+        if (firstRenderRequested < 0) {
+            firstRenderRequested = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records a match result being highlighted
+     */
+    public void highlighted() {
+        if (firstHighlight < 0 && firstRenderRequested >= 0) {
+            firstHighlightLatency = (System.nanoTime() - firstRenderRequested) / 1_000_000;
+            firstHighlight = uptime();
+            report();
+        }
+    }
+
+    private static long uptime() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    /**
+     * Prints the startup times as they become known, so that a launch can be timed without attaching to it
+     */
+    private void report() {
+        System.out.printf("Startup: first frame %s, first highlight %s%n", firstFrame < 0 ? "not yet" : firstFrame + " ms after the JVM started",
+                firstHighlight < 0 ? "not yet" : String.format("%d ms after the JVM started, %d ms after its render was asked for",
+                        firstHighlight, firstHighlightLatency));
+    }
+
+    void renderRequested() {
+        rendersRequested.increment();
+    }
+
+    void renderExecuted() {
+        rendersExecuted.increment();
+    }
+
+    void stageRendered(RenderScheduler.Stage stage) {
+        stageRenders.get(stage).increment();
+    }
+
+    @Override
+    public Timing getPatternCompile() {
+        return compile.timing();
+    }
+
+    @Override
+    public long getPatternCacheHits() {
+        return PatternCache.shared().getHits();
+    }
+
+    @Override
+    public long getPatternCacheMisses() {
+        return PatternCache.shared().getMisses();
+    }
+
+    @Override
+    public double getPatternCacheHitRate() {
+        long hits = getPatternCacheHits();
+        long total = hits + getPatternCacheMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public Map<String, Timing> getMatchByMode() {
+        Map<String, Timing> timings = new TreeMap<>();
+        match.forEach((mode, timer) -> timings.put(mode, timer.timing()));
+        return timings;
+    }
+
+    @Override
+    public long getMatchesSuperseded() {
+        return superseded.sum();
+    }
+
+    @Override
+    public Timing getColorize() {
+        return colorize.timing();
+    }
+
+    @Override
+    public long getRangesApplied() {
+        return ranges.sum();
+    }
+
+    @Override
+    public Timing getAuxiliaryUpdate() {
+        return auxiliary.timing();
+    }
+
+    @Override
+    public long getRendersRequested() {
+        return rendersRequested.sum();
+    }
+
+    @Override
+    public long getRendersExecuted() {
+        return rendersExecuted.sum();
+    }
+
+    @Override
+    public long getRendersCoalesced() {
+        return Math.max(0, getRendersRequested() - getRendersExecuted());
+    }
+
+    @Override
+    public Map<String, Long> getRendersByStage() {
+        Map<String, Long> renders = new LinkedHashMap<>();
+        stageRenders.forEach((stage, count) -> renders.put(stage.name().toLowerCase(), count.sum()));
+        return renders;
+    }
+
+    @Override
+    public long getFirstFrameMillis() {
+        return firstFrame;
+    }
+
+    @Override
+    public long getFirstHighlightMillis() {
+        return firstHighlight;
+    }
+
+    @Override
+    public long getFirstHighlightLatencyMillis() {
+        return firstHighlightLatency;
+    }
+
+    @Override
+    public void reset() {
+        compile.reset();
+        match.values().forEach(Timer::reset);
+        superseded.reset();
+        colorize.reset();
+        ranges.reset();
+        auxiliary.reset();
+        rendersRequested.reset();
+        rendersExecuted.reset();
+        stageRenders.values().forEach(LongAdder::reset);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PipelineMetrics: compile %s, match %s, %,d superseded, colorize %s, %,d ranges, auxiliary %s, %,d renders requested, %,d executed",
+                getPatternCompile(), getMatchByMode(), getMatchesSuperseded(), getColorize(), getRangesApplied(), getAuxiliaryUpdate(),
+                getRendersRequested(), getRendersExecuted());
+    }
+}
@@ -0,0 +1,98 @@
+package com.vgrazi.regextester.action;
+
+import java.util.Map;
+
+/**
+ * What {@link PipelineMetrics} shows in JConsole or VisualVM, under com.vgrazi.regextester:type=PipelineMetrics.
+ * Times are in milliseconds, and everything counts from launch or from the last {@link #reset()}
+ */
+public interface PipelineMetricsMXBean {
+    /**
+     * @param count       the number of times timed
+     * @param totalMillis the time of all of them
+     * @param meanMillis  the time of one, on average
+     * @param maxMillis   the time of the slowest
+     */
+    record Timing(long count, double totalMillis, double meanMillis, double maxMillis) {
+    }
+
+    /**
+     * @return the compiles of patterns the {@link PatternCache} did not hold
+     */
+    Timing getPatternCompile();
+
+    long getPatternCacheHits();
+
+    long getPatternCacheMisses();
+
+    /**
+     * @return the share of compiles the {@link PatternCache} answered, from 0 to 1
+     */
+    double getPatternCacheHitRate();
+
+    /**
+     * @return the match runs that completed, keyed by radio-button command, with " (file)" for the runs over an open file
+     */
+    Map<String, Timing> getMatchByMode();
+
+    /**
+     * @return the match runs cancelled by a newer edit, or whose results were dropped as out of date
+     */
+    long getMatchesSuperseded();
+
+    /**
+     * @return the calls of {@link Renderer#colorize}
+     */
+    Timing getColorize();
+
+    /**
+     * @return the color ranges {@link Renderer#colorize} applied
+     */
+    long getRangesApplied();
+
+    /**
+     * @return the updates of the auxiliary pane: its text, each streamed chunk, and each listing
+     */
+    Timing getAuxiliaryUpdate();
+
+    /**
+     * @return the render requests made to the {@link RenderScheduler}
+     */
+    long getRendersRequested();
+
+    /**
+     * @return the frames the {@link RenderScheduler} rendered
+     */
+    long getRendersExecuted();
+
+    /**
+     * @return the render requests merged into a frame rendered for another request
+     */
+    long getRendersCoalesced();
+
+    /**
+     * @return the frames each stage of the {@link RenderScheduler} was rendered in, keyed by stage
+     */
+    Map<String, Long> getRendersByStage();
+
+    /**
+     * @return how long after the JVM started the window first showed, or -1 if it has not yet
+     */
+    long getFirstFrameMillis();
+
+    /**
+     * @return how long after the JVM started the first match result was highlighted, or -1 if none has been yet
+     */
+    long getFirstHighlightMillis();
+
+    /**
+     * @return how long the first match result took to highlight, from the render that asked for it, which pays
+     * for loading and compiling the match and styling code that later renders find ready; or -1
+     */
+    long getFirstHighlightLatencyMillis();
+
+    /**
+     * Starts every count and time from zero, other than those of the {@link PatternCache} and of startup
+     */
+    void reset();
+}
@@ -0,0 +1,142 @@
+package com.vgrazi.regextester.action;
+
+import java.util.regex.Matcher;
+
+/**
+ * Finds the matches of a pattern with a {@link RequiredLiteral} exactly as the matcher's own find() would, but
+ * runs the matcher only where a match could be. The literal is found with String.indexOf, which the JIT compiles
+ * to a vectorized search. If the literal's offset in a match is bounded, only the start positions within that
+ * offset before an occurrence are tried, each with lookingAt() on a region with transparent, unanchored bounds,
+ * as find() would try them. Otherwise find() runs as usual, but not past the literal's last occurrence.
+ * Also counts the start positions searched, and those the matcher was run at. Without a literal, this is the plain
+ * find() loop
+ */
+final class PrefilteredFinder {
+    private final Matcher matcher;
+    private final String text;
+    private final RequiredLiteral literal;
+    // where the last find started searching, and the last offset it searched for the literal up to
+    private int searchedFrom = Integer.MAX_VALUE;
+    private int scannedTo = -1;
+    private boolean hitEnd;
+    // the last occurrence of an unbounded literal, found on first use
+    private int lastOccurrence = -2;
+    private long searched;
+    private long tried;
+
+    PrefilteredFinder(Matcher matcher, String text, RequiredLiteral literal) {
+        this.matcher = literal == null ? matcher : matcher.useTransparentBounds(true).useAnchoringBounds(false);
+        this.text = text;
+        this.literal = literal;
+    }
+
+    /**
+     * Like matcher.find(from)
+     */
+    boolean find(int from) {
+        if (literal == null) {
+            return matcher.find(from);
+        }
+        searchedFrom = from;
+        scannedTo = -1;
+        hitEnd = false;
+        boolean found = literal.getMaxOffset() < 0 ? findUnbounded(from) : findBounded(from);
+        searched += (found ? matcher.start() : text.length()) - from + 1;
+        return found;
+    }
+
+    /**
+     * Like matcher.find(), after a match
+     */
+    boolean findNext() {
+        if (literal == null) {
+            return matcher.find();
+        }
+        // past an empty match, one further, as find() goes on
+        int next = matcher.end() == matcher.start() ? matcher.end() + 1 : matcher.end();
+        if (next > text.length()) {
+            return false;
+        }
+        return find(next);
+    }
+
+    private boolean findBounded(int from) {
+        int length = text.length();
+        int min = literal.getMinOffset();
+        int max = literal.getMaxOffset();
+        // the next start position not yet tried or ruled out
+        int start = from;
+        int occurrence = literal.indexIn(text, from + min);
+        while (occurrence >= 0) {
+            scannedTo = Math.max(scannedTo, occurrence + literal.getLiteral().length() - 1);
+            // a match starting before this, and at or after start, would need an occurrence the search did not find
+            for (int position = Math.max(start, occurrence - max); position <= occurrence - min; position++) {
+                tried++;
+                boolean found = matcher.region(position, length).lookingAt();
+                hitEnd |= matcher.hitEnd();
+                if (found) {
+                    return true;
+                }
+            }
+            start = Math.max(start, occurrence - min + 1);
+            occurrence = literal.indexIn(text, occurrence + 1);
+        }
+        scannedTo = length;
+        return false;
+    }
+
+    private boolean findUnbounded(int from) {
+        if (lastOccurrence == -2) {
+            lastOccurrence = literal.lastIndexIn(text);
+        }
+        if (lastOccurrence < from + literal.getMinOffset()) {
+            scannedTo = text.length();
+            return false;
+        }
+        // a match contains the literal, so what find() read is all it depends on
+        boolean found = matcher.find(from);
+        hitEnd = matcher.hitEnd();
+        tried += (found ? matcher.start() : text.length()) - from + 1;
+        return found;
+    }
+
+    /**
+     * @return whether the last find hit the end of the text in any of its tries, so that more text could change it
+     */
+    boolean hitEnd() {
+        return literal == null ? matcher.hitEnd() : hitEnd;
+    }
+
+    /**
+     * @return where the last find started searching, or Integer.MAX_VALUE without a literal, when only the
+     * matcher's own reads count
+     */
+    int getSearchedFrom() {
+        return searchedFrom;
+    }
+
+    /**
+     * @return the last offset the last find searched for the literal up to, or -1 without a literal
+     */
+    int getScannedTo() {
+        return scannedTo;
+    }
+
+    RequiredLiteral getLiteral() {
+        return literal;
+    }
+
+    /**
+     * @return the start positions the finds searched, from where each started to where it matched
+     */
+    long getSearched() {
+        return searched;
+    }
+
+    /**
+     * @return the start positions the matcher was run at, or for a find() of an unbounded literal, could have been
+     */
+    long getTried() {
+        return tried;
+    }
+}
@@ -0,0 +1,70 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.ColorRange;
+import com.vgrazi.regextester.component.Constants;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the code of the first keystroke over a sample, on a background thread while the window comes up, so that
+ * the user's first edit finds java.util.regex, the {@link Calculator} commands and the styling of a
+ * {@link DefaultStyledDocument} loaded and compiled, rather than paying for that itself. The sample document is
+ * never shown, so styling it off the event dispatch thread is safe. The runs are left out of the
+ * {@link PipelineMetrics} and of the {@link PatternCache} counts, which describe the user's session
+ */
+public final class Prewarm {
+    // each with two groups at least, for the replacement and the group lookup
+    private static final String[] REGEXES = {"(?<user>[\\w.]+)@(\\w+)\\.com", "(\\d{4})-(\\d\\d)-(\\d\\d)", "\\b(ERROR|WARN)\\b\\s+(.*)$",
+            "([aeiou])([aeiou]+)", "(?i)(q)(?!u)(\\w)", "(\\w+)(\\s+)\\1"};
+    private static final String[] COMMANDS = {"find", "matches", "looking-at", "split", "split-with-delimiters", "replace-all",
+            "replace-first"};
+    private static final String SAMPLE = """
+            2024-01-02 ERROR jane.doe@example.com could not reach the the server
+            2024-01-02 WARN  queue depth 42 for user john@example.com
+            2024-01-03 INFO  aqueous aeon, beautiful queue, Qatar, the end
+            """.repeat(4);
+
+    private static Thread thread;
+
+    private Prewarm() {
+    }
+
+    /**
+     * Starts the runs on a low priority daemon thread, once per JVM
+     * @return the thread doing them, to wait for
+     */
+    public static synchronized Thread start() {
+        if (thread == null) {
+            thread = new Thread(Prewarm::run, "regex-prewarm");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+        return thread;
+    }
+
+    private static void run() {
+        PipelineMetrics.excludeCurrentThread();
+        try {
+            DefaultStyledDocument document = new DefaultStyledDocument();
+            document.insertString(0, SAMPLE, null);
+            for (int run = 0; run < Constants.PREWARM_RUNS; run++) {
+                String regex = REGEXES[run % REGEXES.length];
+                // compiled afresh each time, as a typed pattern is, rather than found in the cache
+                Pattern.compile(regex, Pattern.MULTILINE);
+                GroupStructure.parse(regex, Pattern.MULTILINE);
+                for (String command : COMMANDS) {
+                    MatchRequest request = new MatchRequest(0, regex, Pattern.MULTILINE, command, SAMPLE).withReplacement("$2");
+                    Renderer.colorize(document, true, Calculator.calculate(request).getRanges().toArray(new ColorRange[0]));
+                }
+                Renderer.colorize(document, false, Calculator.calculateMatchingGroups(SAMPLE, 1, regex, Pattern.MULTILINE)
+                        .toArray(new ColorRange[0]));
+            }
+        } catch (BadLocationException | RuntimeException e) {
+            // the app only starts slower without it
+            System.out.println("Prewarm.run " + e);
+        }
+    }
+}
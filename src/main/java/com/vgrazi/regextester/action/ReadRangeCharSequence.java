@@ -0,0 +1,45 @@
+package com.vgrazi.regextester.action;
+
+/**
+ * An {@link InterruptibleCharSequence} that also records the lowest and the highest offset the matcher has read since
+ * the last {@link #resetReads()}. Reset before each find(), these say which part of the text a match depended on,
+ * so that after an edit elsewhere the match is known to still stand, see {@link MatchSnapshot#rescan}
+ */
+public class ReadRangeCharSequence extends InterruptibleCharSequence {
+    private int lowestRead = Integer.MAX_VALUE;
+    private int highestRead = -1;
+
+    public ReadRangeCharSequence(CharSequence inner, MatchBudget budget) {
+        super(inner, budget);
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < lowestRead) {
+            lowestRead = index;
+        }
+        if (index > highestRead) {
+            highestRead = index;
+        }
+        return super.charAt(index);
+    }
+
+    public void resetReads() {
+        lowestRead = Integer.MAX_VALUE;
+        highestRead = -1;
+    }
+
+    /**
+     * @return the lowest offset read since the reset, or Integer.MAX_VALUE if none was
+     */
+    public int getLowestRead() {
+        return lowestRead;
+    }
+
+    /**
+     * @return the highest offset read since the reset, or -1 if none was
+     */
+    public int getHighestRead() {
+        return highestRead;
+    }
+}
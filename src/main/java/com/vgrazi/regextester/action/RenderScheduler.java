@@ -0,0 +1,117 @@
+package com.vgrazi.regextester.action;
+
+import javax.swing.Timer;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The one place that renders the panes. Listeners only mark the stages their event made dirty; the first request
+ * starts a frame timer, further requests within the frame are merged into it, and when it fires each dirty stage
+ * is rendered once, from whatever the panes hold by then, so the latest edit wins. A keystroke that fires key,
+ * document and caret events therefore renders once, rather than once per listener.
+ * Call everything on the event dispatch thread, where the timer fires too
+ */
+public class RenderScheduler {
+    /**
+     * The parts of the display that can go out of date, in the order they are rendered
+     */
+    public enum Stage {
+        // the group and error coloring of the pattern pane, and the group highlights it drives
+        PATTERN,
+        // the match highlights in the character pane
+        MATCHES,
+        // the groups, splits or replacements in the auxiliary pane
+        AUXILIARY,
+        // the height of the pattern pane
+        LAYOUT
+    }
+
+    private final Timer timer;
+    private final Map<Stage, Runnable> renderers = new EnumMap<>(Stage.class);
+    private final Set<Stage> dirty = EnumSet.noneOf(Stage.class);
+    private final long[] stageRenders = new long[Stage.values().length];
+    private long requested;
+    private long executed;
+
+    /**
+     * @param frameMillis how long requests are merged for, before rendering
+     */
+    public RenderScheduler(int frameMillis) {
+        timer = new Timer(frameMillis, _ -> render());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Sets what renders the stage. Stages sharing one renderer instance are rendered by a single call of it
+     */
+    public void setRenderer(Stage stage, Runnable renderer) {
+        renderers.put(stage, renderer);
+    }
+
+    /**
+     * Marks the stages dirty, to be rendered at the end of the current frame
+     */
+    public void request(Stage... stages) {
+        requested++;
+        PipelineMetrics.shared().renderRequested();
+        Collections.addAll(dirty, stages);
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    private void render() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        executed++;
+        PipelineMetrics.shared().renderExecuted();
+        // a renderer may request again, which then starts the next frame
+        Set<Runnable> toRun = new LinkedHashSet<>();
+        for (Stage stage : EnumSet.copyOf(dirty)) {
+            stageRenders[stage.ordinal()]++;
+            PipelineMetrics.shared().stageRendered(stage);
+            Runnable renderer = renderers.get(stage);
+            if (renderer != null) {
+                toRun.add(renderer);
+            }
+        }
+        dirty.clear();
+        toRun.forEach(Runnable::run);
+    }
+
+    /**
+     * @return the number of render requests, of any stages, since launch. These counts are also published over JMX,
+     * see {@link PipelineMetricsMXBean}
+     */
+    public long getRequestedCount() {
+        return requested;
+    }
+
+    /**
+     * @return the number of frames actually rendered since launch
+     */
+    public long getExecutedCount() {
+        return executed;
+    }
+
+    /**
+     * @return the number of frames in which the stage was rendered
+     */
+    public long getRenderCount(Stage stage) {
+        return stageRenders[stage.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format("%,d renders requested, %,d executed", requested, executed));
+        for (Stage stage : Stage.values()) {
+            builder.append(String.format(", %s %,d", stage.name().toLowerCase(), getRenderCount(stage)));
+        }
+        return builder.toString();
+    }
+}
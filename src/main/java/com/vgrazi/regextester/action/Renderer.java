@@ -3,23 +3,23 @@ package com.vgrazi.regextester.action;
 import com.vgrazi.regextester.component.ColorRange;
 import com.vgrazi.regextester.component.Constants;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.swing.*;
-import javax.swing.text.Style;
+import java.awt.*;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
 
 import static com.vgrazi.regextester.component.Constants.BACKGROUND_COLOR;
-import static com.vgrazi.regextester.component.PatternPane.extractNamedGroups;
 
 /**
  * Given a set of ColorRange instances, applies the supplied color to those ranges
  */
 public class Renderer {
+    // set on the replacement pane while part of it is highlighted as invalid
+    private static final String REPLACEMENT_ERROR_SHOWN = "regextester.replacementErrorShown";
 
     /**
      * Styles the docs by coloring all of the color ranges. If resetColor is true, first sets the default color
@@ -28,14 +28,13 @@ public class Renderer {
      * @param colorRanges the color ranges to apply
      */
     public static void colorize(StyledDocument doc, boolean resetColor, ColorRange... colorRanges) {
-        Style font = doc.getStyle("highlights");
+        long start = System.nanoTime();
         if (resetColor) {
-            StyleConstants.setBackground(font, BACKGROUND_COLOR);
-            doc.setCharacterAttributes(0, doc.getLength(), font, true);
+            doc.setCharacterAttributes(0, doc.getLength(), background(BACKGROUND_COLOR), true);
         }
         Arrays.stream(colorRanges).forEach(colorRange ->
         {
-            StyleConstants.setBackground(font, colorRange.getColor());
+            AttributeSet font = background(colorRange.getColor());
             if(colorRange.isInclusive()) {
                 doc.setCharacterAttributes(colorRange.getStart(), colorRange.getSize(), font, true);
             }
@@ -44,92 +43,113 @@ public class Renderer {
                 doc.setCharacterAttributes(colorRange.getEnd(), 1, font, true);
             }
         });
+        PipelineMetrics.shared().colorized(colorRanges.length, System.nanoTime() - start);
+    }
+    /**
+     * Returns attributes painting the supplied background color. These are fresh attributes rather than the
+     * document's "highlights" Style, because every change to a Style makes the document restyle and lay out
+     * all of its text again, which dominated the cost of highlighting a large document
+     * @param color the background color
+     * @return the attributes to apply
+     */
+    static AttributeSet background(Color color) {
+        SimpleAttributeSet attributes = new SimpleAttributeSet();
+        StyleConstants.setBackground(attributes, color);
+        return attributes;
     }
-    private static String previousCommand;
 
     /**
      * When the caret has highlighted a group, we want to select the matching groups in the character pane
      * @param characterPane the JPanel containing the target text
-     * @param groupIndex    the index of the group
-     * @param regex         the regex pattern
-     * @param flags         the selected flags
+     * @param list          the group ranges, as calculated by {@link Calculator#calculateMatchingGroups}
      */
-    public static void renderMatchingGroupsHighlightsInCharacterPane(JTextPane characterPane, int groupIndex, String regex, int flags) {
-        List<ColorRange> list = Calculator.calculateMatchingGroups(characterPane, groupIndex, regex, flags);
-        ColorRange[] ranges = new ColorRange[list.size()];
-        colorize(characterPane.getStyledDocument(), false, list.toArray(ranges));
+    public static void renderMatchingGroupsHighlightsInCharacterPane(JTextPane characterPane, List<ColorRange> list) {
+        ViewportHighlighter highlighter = ViewportHighlighter.of(characterPane);
+        if (highlighter != null) {
+            highlighter.setOverlay(list);
+        } else {
+            ColorRange[] ranges = new ColorRange[list.size()];
+            colorize(characterPane.getStyledDocument(), false, list.toArray(ranges));
+        }
     }
 
     /**
-     * Renders the character pane, according to the selected radio button
+     * Applies the outcome of the match stage to the panes. Must be called on the event dispatch thread
      *
      * @param characterPane   the JPanel containing the target text
-     * @param auxiliaryPane   the pane where we render splits
-     * @param pattern         the compiled Pattern instance
-     * @param replacementPane the JPanel where we render placements
-     * @param regex           the pattern regex
-     * @param actionCommand   the action command representing the clicked button
+     * @param auxiliaryPane   the pane where we render groups, splits and replacements
+     * @param replacementPane the JPanel containing the replacement text
+     * @param result          the result calculated by {@link Calculator#calculate}
      */
-    public static void renderCharacterPane(JTextPane characterPane, final JTextPane auxiliaryPane, Pattern pattern, JTextPane replacementPane, String regex, String actionCommand) {
-        replacementPane.setBorder(Constants.WHITE_BORDER);
-        List<ColorRange> list = new ArrayList<>();
-        String text = characterPane.getText();
-        if(text.indexOf("\r\n") > 0) {
-            text = text.replaceAll("\r\n", "\r");
-            characterPane.setText(text);
+    public static void renderMatchResult(JTextPane characterPane, JTextPane auxiliaryPane, JTextPane replacementPane, MatchResult result) {
+        replacementPane.setBorder(result.isReplacementError() ? Constants.RED_BORDER : Constants.WHITE_BORDER);
+        highlightReplacementError(replacementPane, result.getReplacementSyntaxError());
+        highlight(characterPane, result.getRanges());
+        if (result.getAuxiliaryText() != null) {
+            long start = System.nanoTime();
+            auxiliaryPane.setText(result.getAuxiliaryText());
+            PipelineMetrics.shared().auxiliaryUpdated(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Highlights the part of the replacement at fault, and says what is wrong in its tooltip, or clears both
+     * @param error why the replacement is invalid, or null if it is valid
+     */
+    private static void highlightReplacementError(JTextPane replacementPane, ReplacementSyntaxException error) {
+        if (error == null && replacementPane.getClientProperty(REPLACEMENT_ERROR_SHOWN) == null) {
+            return;
         }
-        Matcher matcher = pattern.matcher(text);
-        if(!actionCommand.equals(previousCommand)) {
-            auxiliaryPane.setText("");
-            previousCommand = actionCommand;
+        // cleared even when an error replaces another, as typed characters take on the highlight next to them
+        StyledDocument doc = replacementPane.getStyledDocument();
+        doc.setCharacterAttributes(0, doc.getLength(), background(BACKGROUND_COLOR), true);
+        replacementPane.putClientProperty(REPLACEMENT_ERROR_SHOWN, null);
+        replacementPane.setToolTipText(null);
+        if (error != null) {
+            // the replacement may have been edited since it was checked
+            int start = Math.min(error.getIndex(), doc.getLength());
+            int end = Math.min(Math.max(error.getEnd(), error.getIndex() + 1), doc.getLength());
+            doc.setCharacterAttributes(start, end - start, background(Constants.REPLACEMENT_ERROR_COLOR), true);
+            replacementPane.putClientProperty(REPLACEMENT_ERROR_SHOWN, Boolean.TRUE);
+            replacementPane.setToolTipText(error.getMessage());
         }
-        switch(actionCommand) {
-            case "find":
-//                extractNamedGroups(regex);
-//                list = Calculator.processReplaceAllCommand(matcher, text, auxiliaryPane, replacementPane);
-//                list = Calculator.processFindCommand(matcher, text);
-                list = Calculator.processFindCommand(matcher, text, auxiliaryPane);
-                break;
-            case "looking-at":
-//                extractNamedGroups(regex);
-                list = Calculator.processLookingAtCommand(matcher, text);
-                break;
-            case "matches":
-                extractNamedGroups(regex);
-                list = Calculator.processMatchesCommand(matcher, text);
-                break;
-            case "split":
-//                auxiliaryPane.removeAll();
-//                auxiliaryPane.doLayout();
-                list = Calculator.processSplitCommand(matcher, text, auxiliaryPane, pattern);
-                break;
-            case "split-with-limit":
-//                auxiliaryPane.removeAll();
-//                auxiliaryPane.doLayout();
-                list = Calculator.processSplitWithLimitCommand(matcher, text, auxiliaryPane, pattern, replacementPane);
-                break;
-            case "split-with-delimiters":
-//                auxiliaryPane.removeAll();
-//                auxiliaryPane.doLayout();
-                list = Calculator.processSplitWithDelimitersCommand(matcher, text, auxiliaryPane, pattern, replacementPane);
-                break;
-            case "replace-all":
-//                auxiliaryPane.removeAll();
-//                auxiliaryPane.doLayout();
-                list = Calculator.processReplaceAllCommand(matcher, text, auxiliaryPane, replacementPane);
-                break;
-            case "replace-first":
-//                auxiliaryPane.removeAll();
-//                auxiliaryPane.doLayout();
-                list = Calculator.processReplaceFirstCommand(matcher, text, auxiliaryPane, replacementPane);
-                break;
+    }
+
+    /**
+     * Removes all highlights from the character pane
+     * @param characterPane the JPanel containing the target text
+     */
+    public static void clearHighlights(JTextPane characterPane) {
+        highlight(characterPane, List.of());
+    }
+
+    /**
+     * Replaces the highlights of the character pane. If a {@link ViewportHighlighter} is installed on the pane,
+     * it decides how much of the document to style, otherwise the whole document is restyled
+     */
+    private static void highlight(JTextPane characterPane, List<ColorRange> list) {
+        ViewportHighlighter highlighter = ViewportHighlighter.of(characterPane);
+        if (highlighter != null) {
+            highlighter.setRanges(list);
+        } else {
+            ColorRange[] ranges = new ColorRange[list.size()];
+            colorize(characterPane.getStyledDocument(), true, list.toArray(ranges));
         }
+    }
 
-        ColorRange[] ranges = new ColorRange[list.size()];
-        colorize(characterPane.getStyledDocument(), true, list.toArray(ranges));
-        if (pattern.pattern().trim().isEmpty()) {
-            auxiliaryPane.setText("");
+    /**
+     * Returns the character pane text, first collapsing any \r\n line endings in the pane to \r
+     * so that the match offsets line up with the document offsets. Must be called on the event dispatch thread
+     * @param characterPane the JPanel containing the target text
+     * @return the normalized text
+     */
+    public static String normalizedText(JTextPane characterPane) {
+        String text = characterPane.getText();
+        if(text.indexOf("\r\n") > 0) {
+            text = text.replaceAll("\r\n", "\r");
+            characterPane.setText(text);
         }
+        return text;
     }
 
     /**
@@ -143,10 +163,14 @@ public class Renderer {
      */
     public static void renderNamedGroupInCharacterPane(int flags, String groupName, JTextPane patternPane, JTextPane characterPane, JTextPane auxiliaryPane) {
         String regex = patternPane.getText();
-        List<ColorRange> list = Calculator.calculateMatchingGroup(characterPane, groupName, regex, flags);
+        String text = characterPane.getText();
+        // the finds and the groups are each in document order, which the viewport highlighter relies on, but not
+        // together, so the groups are overlaid on the finds as the numbered groups are
+        List<ColorRange> finds = Calculator.calculateFinds(text, regex, flags);
+        List<ColorRange> groups = Calculator.calculateMatchingGroup(text, groupName, regex, flags);
         auxiliaryPane.setText("");
-        ColorRange[] ranges = new ColorRange[list.size()];
-        colorize(characterPane.getStyledDocument(), true, list.toArray(ranges));
+        highlight(characterPane, finds);
+        renderMatchingGroupsHighlightsInCharacterPane(characterPane, groups);
     }
 
     /**
@@ -0,0 +1,35 @@
+package com.vgrazi.regextester.action;
+
+/**
+ * Thrown when a replacement string is not valid for the pattern, such as one referring to a group the pattern does
+ * not have, with the span of the replacement at fault, for the replacement pane to highlight
+ */
+public class ReplacementSyntaxException extends IllegalArgumentException {
+    private final String description;
+    private final int index;
+    private final int end;
+
+    /**
+     * @param description what is wrong, as Matcher would say it
+     * @param index       the offset in the replacement where the fault begins
+     * @param end         the offset just past the fault, at least one past the index, unless the replacement ends there
+     */
+    public ReplacementSyntaxException(String description, int index, int end) {
+        super(description + " near index " + index);
+        this.description = description;
+        this.index = index;
+        this.end = end;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,212 @@
+package com.vgrazi.regextester.action;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A replacement string such as "$1-${name}\$", parsed once against a pattern into literal segments and group references,
+ * following the same rules as {@link java.util.regex.Matcher#appendReplacement}. Expanding it for a match appends
+ * only the replacement itself, never the text between matches, which lets the replacement be streamed
+ */
+public final class ReplacementTemplate {
+    private static final int SLICE_SIZE = 64 * 1024;
+
+    // the template last parsed, reused while neither the replacement nor the pattern changes; invalid ones are not kept
+    private static volatile ReplacementTemplate latest;
+
+    private final String replacement;
+    private final Pattern pattern;
+    // for each segment, either a literal (group == -1) or a group reference
+    private final String[] literals;
+    private final int[] groups;
+
+    private ReplacementTemplate(String replacement, Pattern pattern, String[] literals, int[] groups) {
+        this.replacement = replacement;
+        this.pattern = pattern;
+        this.literals = literals;
+        this.groups = groups;
+    }
+
+    /**
+     * Parses the replacement for the supplied pattern, or returns the template last parsed for the same replacement
+     * and pattern, so that it is parsed once per edit of either rather than once per render
+     * @throws ReplacementSyntaxException if the replacement has an illegal or unknown group reference, or a dangling \ or $,
+     *                                    with the same message Matcher would give, and where in the replacement it is
+     */
+    public static ReplacementTemplate compile(String replacement, Pattern pattern) {
+        ReplacementTemplate latest = ReplacementTemplate.latest;
+        if (latest != null && latest.pattern == pattern && latest.replacement.equals(replacement)) {
+            return latest;
+        }
+        latest = parse(replacement, pattern);
+        ReplacementTemplate.latest = latest;
+        return latest;
+    }
+
+    private static ReplacementTemplate parse(String replacement, Pattern pattern) {
+        int groupCount = pattern.matcher("").groupCount();
+        Map<String, Integer> namedGroups = pattern.namedGroups();
+        List<String> literals = new ArrayList<>();
+        List<Integer> groups = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int length = replacement.length();
+        int cursor = 0;
+        while (cursor < length) {
+            char nextChar = replacement.charAt(cursor);
+            if (nextChar == '\\') {
+                cursor++;
+                if (cursor == length) {
+                    throw new ReplacementSyntaxException("character to be escaped is missing", cursor - 1, length);
+                }
+                literal.append(replacement.charAt(cursor++));
+            } else if (nextChar == '$') {
+                int dollar = cursor;
+                cursor++;
+                if (cursor == length) {
+                    throw new ReplacementSyntaxException("Illegal group reference: group index is missing", dollar, length);
+                }
+                nextChar = replacement.charAt(cursor);
+                int refNum;
+                if (nextChar == '{') {
+                    cursor++;
+                    int nameStart = cursor;
+                    while (cursor < length && isAsciiLetterOrDigit(replacement.charAt(cursor))) {
+                        cursor++;
+                    }
+                    String name = replacement.substring(nameStart, cursor);
+                    if (name.isEmpty()) {
+                        throw new ReplacementSyntaxException("named capturing group has 0 length name", dollar, Math.min(cursor + 1, length));
+                    }
+                    if (cursor == length || replacement.charAt(cursor) != '}') {
+                        throw new ReplacementSyntaxException("named capturing group is missing trailing '}'", dollar, cursor);
+                    }
+                    if (Character.isDigit(name.charAt(0))) {
+                        throw new ReplacementSyntaxException("capturing group name {" + name + "} starts with digit character", dollar, cursor + 1);
+                    }
+                    if (!namedGroups.containsKey(name)) {
+                        throw new ReplacementSyntaxException("No group with name {" + name + "}", dollar, cursor + 1);
+                    }
+                    refNum = namedGroups.get(name);
+                    cursor++;
+                } else {
+                    // the first digit is always part of the group number
+                    refNum = nextChar - '0';
+                    if (refNum < 0 || refNum > 9) {
+                        throw new ReplacementSyntaxException("Illegal group reference", dollar, cursor + 1);
+                    }
+                    cursor++;
+                    // take further digits for as long as the number is still a legal group
+                    while (cursor < length) {
+                        int nextDigit = replacement.charAt(cursor) - '0';
+                        if (nextDigit < 0 || nextDigit > 9 || refNum * 10 + nextDigit > groupCount) {
+                            break;
+                        }
+                        refNum = refNum * 10 + nextDigit;
+                        cursor++;
+                    }
+                    if (refNum > groupCount) {
+                        throw new ReplacementSyntaxException("No group " + refNum, dollar, cursor);
+                    }
+                }
+                if (!literal.isEmpty()) {
+                    literals.add(literal.toString());
+                    groups.add(-1);
+                    literal.setLength(0);
+                }
+                literals.add(null);
+                groups.add(refNum);
+            } else {
+                literal.append(nextChar);
+                cursor++;
+            }
+        }
+        if (!literal.isEmpty()) {
+            literals.add(literal.toString());
+            groups.add(-1);
+        }
+        return new ReplacementTemplate(replacement, pattern, literals.toArray(new String[0]), groups.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static boolean isAsciiLetterOrDigit(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9');
+    }
+
+    /**
+     * Appends the replacement for the supplied match. Groups that did not participate append nothing
+     * @param out   receives the replacement
+     * @param match the current match
+     * @param input the text the match was found in
+     */
+    public void appendTo(StringBuilder out, MatchResult match, CharSequence input) {
+        for (int segment = 0; segment < groups.length; segment++) {
+            int group = groups[segment];
+            if (group == -1) {
+                out.append(literals[segment]);
+            } else if (match.start(group) != -1) {
+                out.append(input, match.start(group), match.end(group));
+            }
+        }
+    }
+
+    /**
+     * Appends the replacement for the match of the snapshot, as {@link #appendTo(StringBuilder, MatchResult, CharSequence)}
+     */
+    public void appendTo(StringBuilder out, MatchSnapshot snapshot, int match) {
+        for (int segment = 0; segment < groups.length; segment++) {
+            int group = groups[segment];
+            if (group == -1) {
+                out.append(literals[segment]);
+            } else if (snapshot.start(match, group) != -1) {
+                out.append(snapshot.getText(), snapshot.start(match, group), snapshot.end(match, group));
+            }
+        }
+    }
+
+    /**
+     * Writes the replaced input, as Matcher.replaceAll or replaceFirst would return it, without ever holding
+     * more of it than one replacement
+     * @param matcher a matcher over the input
+     * @param all     true to replace every match, false only the first
+     * @param budget  the budget the matcher's input counts against, started over for each find, or null for none
+     * @return the number of replacements
+     * @throws MatchBudgetExceededException if a find runs out of budget
+     */
+    public long replace(Matcher matcher, CharSequence input, boolean all, Appendable out, MatchBudget budget) throws IOException {
+        StringBuilder expanded = new StringBuilder();
+        int copiedTo = 0;
+        long count = 0;
+        matcher.reset();
+        while ((all || count == 0) && find(matcher, budget)) {
+            append(out, input, copiedTo, matcher.start());
+            expanded.setLength(0);
+            appendTo(expanded, matcher, input);
+            out.append(expanded);
+            copiedTo = matcher.end();
+            count++;
+        }
+        append(out, input, copiedTo, input.length());
+        return count;
+    }
+
+    private static boolean find(Matcher matcher, MatchBudget budget) {
+        if (budget != null) {
+            budget.restart();
+        }
+        return matcher.find();
+    }
+
+    /**
+     * Appends the range in slices, as Appendable takes a subSequence of the range, which would decode the whole
+     * stretch between two matches of a mapped file into one String
+     */
+    private static void append(Appendable out, CharSequence input, int start, int end) throws IOException {
+        for (int slice = start; slice < end; slice += SLICE_SIZE) {
+            out.append(input, slice, Math.min(end, slice + SLICE_SIZE));
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package com.vgrazi.regextester.action;
+
+import java.util.regex.Pattern;
+
+/**
+ * A literal that every match of a pattern contains, such as ERROR in \d{4}-\d\d-\d\d ERROR (\w+), found from the
+ * structure of the regex as {@link GroupStructure} parses it, and how far from the start of a match it can be.
+ * Only literals in the top level sequence of the regex qualify, so that nothing before them is optional but what
+ * their offset allows for; a regex with a top level | has none. If in doubt about any part of the regex, such as
+ * comments mode, there is no required literal, and the pattern is matched as it always was. See
+ * {@link PrefilteredFinder} for how it is used, and {@link PatternSet} for the literal a match starts with.
+ * Setting the system property regextester.prefilter to false turns the prefilter off, for comparison
+ */
+public final class RequiredLiteral {
+    // the most start positions tried for each occurrence of the literal; a wider span is left to find()
+    private static final int MAX_WINDOW = 256;
+    private static final int UNBOUNDED = Integer.MAX_VALUE;
+    private static final Width ZERO = new Width(0, 0);
+
+    private record Analysis(Pattern pattern, RequiredLiteral literal) {
+    }
+
+    private static volatile Analysis latest;
+
+    private final String literal;
+    private final int minOffset;
+    private final int maxOffset;
+    private final boolean ignoreCase;
+
+    private RequiredLiteral(String literal, int minOffset, int maxOffset, boolean ignoreCase) {
+        this.literal = literal;
+        this.minOffset = minOffset;
+        this.maxOffset = maxOffset;
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * @return the required literal of the pattern, or null if it has none. The most recent pattern's is remembered
+     */
+    public static RequiredLiteral of(Pattern pattern) {
+        if (!Boolean.parseBoolean(System.getProperty("regextester.prefilter", "true"))) {
+            return null;
+        }
+        Analysis analysis = latest;
+        if (analysis == null || analysis.pattern() != pattern) {
+            analysis = new Analysis(pattern, analyze(pattern.pattern(), pattern.flags()));
+            latest = analysis;
+        }
+        return analysis.literal();
+    }
+
+    /**
+     * @return the longest literal of the regex whose offset in a match varies by at most {@link #MAX_WINDOW}, or else
+     * the longest literal, or null if the regex has none, or can't be analyzed
+     */
+    static RequiredLiteral analyze(String regex, int flags) {
+        if ((flags & Pattern.LITERAL) != 0) {
+            return regex.isEmpty() ? null : new RequiredLiteral(regex, 0, 0, (flags & Pattern.CASE_INSENSITIVE) != 0);
+        }
+        Walk walk = walk(regex, flags);
+        return walk == null ? null : walk.best;
+    }
+
+    /**
+     * @return the literal that every match of the regex starts with, or null if there is none, or the regex can't be
+     * analyzed
+     */
+    static RequiredLiteral prefixOf(String regex, int flags) {
+        if ((flags & Pattern.LITERAL) != 0) {
+            return analyze(regex, flags);
+        }
+        Walk walk = walk(regex, flags);
+        return walk == null ? null : walk.prefix;
+    }
+
+    /**
+     * @return the walk of the regex's top level sequence, or null if it can't be analyzed
+     */
+    private static Walk walk(String regex, int flags) {
+        boolean ignoreCase = (flags & Pattern.CASE_INSENSITIVE) != 0;
+        // \G matches where the previous match ended, which a match tried at a position of its own does not know
+        if ((flags & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0 || regex.contains("\\G")) {
+            return null;
+        }
+        try {
+            GroupStructure structure = GroupStructure.parse(regex, flags);
+            if (structure.hasTopLevelAlternation()) {
+                return null;
+            }
+            for (GroupStructure.Group group : structure.getGroups()) {
+                if (group.kind() == GroupStructure.Kind.FLAGS || group.kind() == GroupStructure.Kind.NON_CAPTURING) {
+                    String set = flagsOf(regex, group);
+                    if (set.indexOf('x') >= 0 && set.indexOf('x') < (set.indexOf('-') < 0 ? set.length() : set.indexOf('-'))) {
+                        // comments mode changes what the rest of the regex means
+                        return null;
+                    }
+                    // Pattern.flags() has the flags as a top level (?i) or (?-i) left them, not as they were compiled
+                    // with, so a literal is searched for ignoring case if the case might be ignored anywhere
+                    ignoreCase |= set.indexOf('i') >= 0;
+                }
+            }
+            return new Walk(regex, structure, ignoreCase);
+        } catch (UnmatchedLeftParenException | UnsupportedSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the index of the first occurrence of the literal in the text at or after from, or -1 if there is none.
+     * Ignoring case, it may also find text that the pattern would not take for the literal, never the other way round
+     */
+    public int indexIn(String text, int from) {
+        if (!ignoreCase) {
+            return text.indexOf(literal, from);
+        }
+        char first = fold(literal.charAt(0));
+        for (int index = Math.max(0, from); index <= text.length() - literal.length(); index++) {
+            if (fold(text.charAt(index)) == first && text.regionMatches(true, index, literal, 0, literal.length())) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the last occurrence of the literal in the text, or -1 if there is none, found as
+     * {@link #indexIn} would find it
+     */
+    public int lastIndexIn(String text) {
+        if (!ignoreCase) {
+            return text.lastIndexOf(literal);
+        }
+        char first = fold(literal.charAt(0));
+        for (int index = text.length() - literal.length(); index >= 0; index--) {
+            if (fold(text.charAt(index)) == first && text.regionMatches(true, index, literal, 0, literal.length())) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static char fold(char ch) {
+        return Character.toLowerCase(Character.toUpperCase(ch));
+    }
+
+    public String getLiteral() {
+        return literal;
+    }
+
+    /**
+     * @return the fewest characters of a match before the literal
+     */
+    public int getMinOffset() {
+        return minOffset;
+    }
+
+    /**
+     * @return the most characters of a match before the literal, or -1 if there is no useful bound
+     */
+    public int getMaxOffset() {
+        return maxOffset;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RequiredLiteral: \"%s\" at %d..%s%s", literal, minOffset, maxOffset < 0 ? "" : String.valueOf(maxOffset),
+                ignoreCase ? ", ignoring case" : "");
+    }
+
+    /**
+     * @return the flag letters of a (?flags) or (?flags:...) group, with any - and the letters turned off
+     */
+    private static String flagsOf(String regex, GroupStructure.Group group) {
+        int end = group.open() + 2;
+        while (end < group.close() && regex.charAt(end) != ':' && regex.charAt(end) != ')') {
+            end++;
+        }
+        return regex.substring(group.open() + 2, end);
+    }
+
+    /**
+     * The number of characters a part of the regex matches: at least min, and at most max, or {@link #UNBOUNDED}
+     */
+    private record Width(int min, int max) {
+        Width plus(Width other) {
+            return new Width(add(min, other.min), add(max, other.max));
+        }
+
+        Width times(int low, int high) {
+            return new Width(multiply(min, low), multiply(max, high));
+        }
+
+        Width or(Width other) {
+            return other == null ? this : new Width(Math.min(min, other.min), Math.max(max, other.max));
+        }
+
+        private static int add(int a, int b) {
+            return (int) Math.min(UNBOUNDED, (long) a + b);
+        }
+
+        private static int multiply(int a, int b) {
+            return a == 0 || b == 0 ? 0 : (int) Math.min(UNBOUNDED, (long) a * b);
+        }
+    }
+
+    /**
+     * One atom of the regex, without its quantifier, ending at end. The quantifier repeats only the repeated part,
+     * which for a \Q...\E quote is its last character. Literal is the code point of a literal character, otherwise -1
+     */
+    private record Atom(int end, Width fixed, Width repeated, int literal) {
+        Atom(int end, Width width) {
+            this(end, ZERO, width, -1);
+        }
+    }
+
+    /**
+     * A quantifier, or the lack of one, ending at end
+     */
+    private record Quantifier(int end, int min, int max) {
+        boolean isOnce() {
+            return min == 1 && max == 1;
+        }
+    }
+
+    /**
+     * Thrown for a part of a regex that the analysis does not cover, so that the regex gets no required literal
+     */
+    private static final class UnsupportedSyntaxException extends Exception {
+        UnsupportedSyntaxException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * Walks the top level sequence of the regex, collecting runs of literal characters each repeated exactly once,
+     * with the width of the regex before each, and keeps the best, and the one at the start of a match if there is one
+     */
+    private static final class Walk {
+        private final String regex;
+        private final GroupStructure structure;
+        private final boolean ignoreCase;
+        private RequiredLiteral best;
+        private RequiredLiteral prefix;
+
+        private Walk(String regex, GroupStructure structure, boolean ignoreCase) throws UnsupportedSyntaxException {
+            this.regex = regex;
+            this.structure = structure;
+            this.ignoreCase = ignoreCase;
+            Width before = ZERO;
+            StringBuilder run = new StringBuilder();
+            Width runOffset = ZERO;
+            int index = 0;
+            while (index < regex.length()) {
+                Atom atom = atom(index);
+                Quantifier quantifier = quantifier(atom.end());
+                if (atom.literal() >= 0 && quantifier.min() >= 1) {
+                    if (run.isEmpty()) {
+                        runOffset = before;
+                    }
+                    run.appendCodePoint(atom.literal());
+                    if (!quantifier.isOnce()) {
+                        // the literal is there at least once, but what follows is at an unknown offset
+                        offer(run, runOffset);
+                    }
+                } else {
+                    offer(run, runOffset);
+                }
+                before = before.plus(atom.fixed()).plus(atom.repeated().times(quantifier.min(), quantifier.max()));
+                index = quantifier.end();
+            }
+            offer(run, runOffset);
+        }
+
+        /**
+         * Keeps the run if it is better than the best so far, and empties it
+         */
+        private void offer(StringBuilder run, Width offset) {
+            if (run.isEmpty()) {
+                return;
+            }
+            boolean bounded = offset.max() != UNBOUNDED && offset.max() - offset.min() <= MAX_WINDOW;
+            RequiredLiteral candidate = new RequiredLiteral(run.toString(), offset.min(), bounded ? offset.max() : -1, ignoreCase);
+            run.setLength(0);
+            if (offset.max() == 0) {
+                // nothing before it takes up a character, so that no earlier run was offered
+                prefix = candidate;
+            }
+            if (best == null) {
+                best = candidate;
+                return;
+            }
+            boolean bestBounded = best.maxOffset >= 0;
+            if (bounded != bestBounded ? bounded : candidate.literal.length() > best.literal.length()) {
+                best = candidate;
+            }
+        }
+
+        /**
+         * @return the width of the alternatives of a sequence, from and to being offsets within one group
+         */
+        private Width sequence(int from, int to) throws UnsupportedSyntaxException {
+            Width alternatives = null;
+            Width current = ZERO;
+            int index = from;
+            while (index < to) {
+                if (regex.charAt(index) == '|') {
+                    alternatives = current.or(alternatives);
+                    current = ZERO;
+                    index++;
+                    continue;
+                }
+                Atom atom = atom(index);
+                Quantifier quantifier = quantifier(atom.end());
+                current = current.plus(atom.fixed()).plus(atom.repeated().times(quantifier.min(), quantifier.max()));
+                index = quantifier.end();
+            }
+            return current.or(alternatives);
+        }
+
+        private Atom atom(int index) throws UnsupportedSyntaxException {
+            char ch = regex.charAt(index);
+            switch (ch) {
+                case '\\':
+                    return escape(index);
+                case '[':
+                    // a supplementary character is two chars
+                    return new Atom(GroupStructure.skipCharacterClass(regex, index) + 1, new Width(1, 2));
+                case '.':
+                    return new Atom(index + 1, new Width(1, 2));
+                case '^':
+                case '$':
+                    return new Atom(index + 1, ZERO);
+                case '(':
+                    GroupStructure.Group group = structure.groupAt(index);
+                    return switch (group.kind()) {
+                        case LOOKAROUND, FLAGS -> new Atom(group.close() + 1, ZERO);
+                        case CAPTURING -> new Atom(group.close() + 1, sequence(index + 1, group.close()));
+                        case NAMED -> new Atom(group.close() + 1, sequence(regex.indexOf('>', index) + 1, group.close()));
+                        case NON_CAPTURING -> new Atom(group.close() + 1, sequence(regex.indexOf(':', index) + 1, group.close()));
+                        case ATOMIC -> new Atom(group.close() + 1, sequence(index + 3, group.close()));
+                    };
+                default:
+                    int codePoint = regex.codePointAt(index);
+                    int length = Character.charCount(codePoint);
+                    return new Atom(index + length, ZERO, new Width(length, length), codePoint);
+            }
+        }
+
+        private Atom escape(int index) throws UnsupportedSyntaxException {
+            char ch = regex.charAt(index + 1);
+            if (!Character.isLetterOrDigit(ch)) {
+                int codePoint = regex.codePointAt(index + 1);
+                int length = Character.charCount(codePoint);
+                return new Atom(index + 1 + length, ZERO, new Width(length, length), codePoint);
+            }
+            switch (ch) {
+                case 'Q': {
+                    int end = regex.indexOf("\\E", index + 2);
+                    String quoted = regex.substring(index + 2, end < 0 ? regex.length() : end);
+                    if (quoted.isEmpty()) {
+                        throw new UnsupportedSyntaxException("empty quote");
+                    }
+                    int last = Character.charCount(quoted.codePointBefore(quoted.length()));
+                    return new Atom(end < 0 ? regex.length() : end + 2, new Width(quoted.length() - last, quoted.length() - last),
+                            new Width(last, last), -1);
+                }
+                case 'b':
+                case 'B':
+                    return new Atom(regex.startsWith("{", index + 2) ? regex.indexOf('}', index) + 1 : index + 2, ZERO);
+                case 'A':
+                case 'z':
+                case 'Z':
+                    return new Atom(index + 2, ZERO);
+                case 'k':
+                    return new Atom(regex.indexOf('>', index) + 1, new Width(0, UNBOUNDED));
+                case '0': {
+                    int end = index + 2;
+                    while (end < regex.length() && end < index + 5 && regex.charAt(end) >= '0' && regex.charAt(end) <= '7') {
+                        end++;
+                    }
+                    return new Atom(end, new Width(1, 1));
+                }
+                case 'x':
+                    return new Atom(regex.startsWith("{", index + 2) ? regex.indexOf('}', index) + 1 : index + 4, new Width(1, 2));
+                case 'u':
+                    return new Atom(index + 6, new Width(1, 2));
+                case 'p':
+                case 'P':
+                case 'N':
+                    return new Atom(regex.startsWith("{", index + 2) ? regex.indexOf('}', index) + 1 : index + 3, new Width(1, 2));
+                case 'c':
+                    return new Atom(index + 3, new Width(1, 1));
+                case 't':
+                case 'n':
+                case 'r':
+                case 'f':
+                case 'a':
+                case 'e':
+                    return new Atom(index + 2, new Width(1, 1));
+                case 'd':
+                case 'D':
+                case 'w':
+                case 'W':
+                case 's':
+                case 'S':
+                case 'h':
+                case 'H':
+                case 'v':
+                case 'V':
+                case 'R':
+                    return new Atom(index + 2, new Width(1, 2));
+                case 'X':
+                    return new Atom(index + 2, new Width(1, UNBOUNDED));
+                default:
+                    if (ch >= '1' && ch <= '9') {
+                        // a back reference, to a group that may have matched anything
+                        int end = index + 2;
+                        while (end < regex.length() && Character.isDigit(regex.charAt(end))) {
+                            end++;
+                        }
+                        return new Atom(end, new Width(0, UNBOUNDED));
+                    }
+                    throw new UnsupportedSyntaxException("\\" + ch);
+            }
+        }
+
+        /**
+         * @return the quantifier at the offset, with any lazy ? or possessive + after it, or once if there is none
+         */
+        private Quantifier quantifier(int index) {
+            if (index >= regex.length()) {
+                return new Quantifier(index, 1, 1);
+            }
+            int min;
+            int max;
+            int end = index + 1;
+            switch (regex.charAt(index)) {
+                case '?' -> {
+                    min = 0;
+                    max = 1;
+                }
+                case '*' -> {
+                    min = 0;
+                    max = UNBOUNDED;
+                }
+                case '+' -> {
+                    min = 1;
+                    max = UNBOUNDED;
+                }
+                case '{' -> {
+                    end = regex.indexOf('}', index) + 1;
+                    String bounds = regex.substring(index + 1, end - 1).trim();
+                    int comma = bounds.indexOf(',');
+                    min = Integer.parseInt(comma < 0 ? bounds : bounds.substring(0, comma).trim());
+                    max = comma < 0 ? min : comma == bounds.length() - 1 ? UNBOUNDED : Integer.parseInt(bounds.substring(comma + 1).trim());
+                }
+                default -> {
+                    return new Quantifier(index, 1, 1);
+                }
+            }
+            if (end < regex.length() && (regex.charAt(end) == '?' || regex.charAt(end) == '+')) {
+                end++;
+            }
+            return new Quantifier(end, min, max);
+        }
+    }
+}
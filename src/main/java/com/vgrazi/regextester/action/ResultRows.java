@@ -0,0 +1,136 @@
+package com.vgrazi.regextester.action;
+
+import java.util.Arrays;
+
+import static com.vgrazi.regextester.component.Constants.MAX_RESULT_ROW_CHARS;
+
+/**
+ * The lines of a find or split listing for the auxiliary pane, derived from the offsets of a {@link MatchSnapshot}
+ * only when a line is asked for, so that a listing of a million groups or pieces costs a few int arrays rather
+ * than a million Strings, and the pane only ever renders the lines in view. A line longer than
+ * {@link com.vgrazi.regextester.component.Constants#MAX_RESULT_ROW_CHARS} is cut short
+ */
+public abstract class ResultRows {
+    public static final ResultRows EMPTY = new ResultRows() {
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public String get(int row) {
+            throw new IndexOutOfBoundsException("No row " + row);
+        }
+    };
+
+    public abstract int size();
+
+    /**
+     * @return the text of the row, built on every call
+     */
+    public abstract String get(int row);
+
+    /**
+     * Lists each group that took part in each match as "group. text", with an empty row after a match whose last
+     * group took part, as the find command always has
+     */
+    static ResultRows groups(MatchSnapshot snapshot) {
+        return new GroupRows(snapshot);
+    }
+
+    /**
+     * Lists each piece between the supplied bounds as "index: text"
+     * @param bounds the start and end offset of each piece, as from {@link MatchSnapshot#splitBounds}
+     */
+    static ResultRows pieces(MatchSnapshot snapshot, int[] bounds) {
+        return new PieceRows(snapshot.getText(), bounds);
+    }
+
+    /**
+     * @return the rows joined by line feeds, as the auxiliary pane would show them as text
+     */
+    public String toText() {
+        StringBuilder builder = new StringBuilder();
+        for (int row = 0; row < size(); row++) {
+            builder.append(get(row)).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static String row(String label, String text, int start, int end) {
+        if (end - start > MAX_RESULT_ROW_CHARS) {
+            return label + text.substring(start, start + MAX_RESULT_ROW_CHARS) + String.format("... (%,d characters)", end - start);
+        }
+        return label + text.substring(start, end);
+    }
+
+    private static final class GroupRows extends ResultRows {
+        private final MatchSnapshot snapshot;
+        // the first row of each match, and the total at the end
+        private final int[] firstRow;
+
+        private GroupRows(MatchSnapshot snapshot) {
+            this.snapshot = snapshot;
+            int groupCount = snapshot.getGroupCount();
+            firstRow = new int[snapshot.getMatchCount() + 1];
+            int rows = 0;
+            for (int match = 0; match < snapshot.getMatchCount(); match++) {
+                firstRow[match] = rows;
+                for (int group = 0; group <= groupCount; group++) {
+                    if (snapshot.start(match, group) != -1) {
+                        rows++;
+                    }
+                }
+                if (snapshot.start(match, groupCount) != -1) {
+                    rows++;
+                }
+            }
+            firstRow[snapshot.getMatchCount()] = rows;
+        }
+
+        @Override
+        public int size() {
+            return firstRow[firstRow.length - 1];
+        }
+
+        @Override
+        public String get(int row) {
+            if (row < 0 || row >= size()) {
+                throw new IndexOutOfBoundsException("No row " + row);
+            }
+            // group 0 always takes part, so every match has a row, and the first rows are distinct
+            int match = Arrays.binarySearch(firstRow, 0, firstRow.length - 1, row);
+            if (match < 0) {
+                match = -match - 2;
+            }
+            int remaining = row - firstRow[match];
+            for (int group = 0; group <= snapshot.getGroupCount(); group++) {
+                int start = snapshot.start(match, group);
+                if (start != -1 && remaining-- == 0) {
+                    return row(group + ". ", snapshot.getText(), start, snapshot.end(match, group));
+                }
+            }
+            return "";
+        }
+    }
+
+    private static final class PieceRows extends ResultRows {
+        private final String text;
+        private final int[] bounds;
+
+        private PieceRows(String text, int[] bounds) {
+            this.text = text;
+            this.bounds = bounds;
+        }
+
+        @Override
+        public int size() {
+            return bounds.length / 2;
+        }
+
+        @Override
+        public String get(int row) {
+            return row(row + ": ", text, bounds[row * 2], bounds[row * 2 + 1]);
+        }
+    }
+}
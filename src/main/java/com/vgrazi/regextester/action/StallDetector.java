@@ -0,0 +1,140 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.Constants;
+
+import javax.swing.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the event dispatch thread for the window freezing. A watchdog thread posts a heartbeat to the event queue,
+ * and when the heartbeat has waited longer than the threshold, takes the stack of the event dispatch thread, which
+ * shows the task blocking it, along with the pattern, flags, command and input length last handed to
+ * {@link #setContext}. Once the heartbeat runs, the stall is added to a log of the latest
+ * {@link Constants#STALL_LOG_SIZE}, with how long it lasted. The threshold defaults to
+ * {@link Constants#STALL_THRESHOLD_MILLIS}, and may be set with the system property regextester.stall.millis
+ */
+public class StallDetector {
+    // how long the watchdog waits between heartbeats
+    private static final long HEARTBEAT_MILLIS = 100;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private final long thresholdMillis;
+    private final Deque<Stall> log = new ArrayDeque<>();
+    // the thread that ran the last heartbeat, which Swing replaces if a task throws
+    private volatile Thread eventDispatchThread;
+    private volatile Context context;
+
+    /**
+     * What the window was working on, snapshotted on the event dispatch thread, as the watchdog can't read the panes
+     * while that thread is blocked
+     */
+    public record Context(String regex, int flags, String actionCommand, long inputLength) {
+    }
+
+    /**
+     * @param millis   how long the heartbeat waited
+     * @param context  what the window was working on, or null if nothing was rendered yet
+     * @param stack    the stack of the event dispatch thread once the heartbeat had waited the threshold
+     */
+    public record Stall(LocalDateTime time, long millis, Context context, StackTraceElement[] stack) {
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format("%s  stalled for %,d ms%n", TIME_FORMAT.format(time), millis));
+            if (context != null) {
+                builder.append(String.format("  pattern %s, flags %d, %s over %,d characters%n", context.regex(), context.flags(),
+                        context.actionCommand(), context.inputLength()));
+            }
+            for (StackTraceElement element : stack) {
+                builder.append("    at ").append(element).append('\n');
+            }
+            return builder.toString();
+        }
+    }
+
+    public StallDetector(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    /**
+     * @return the configured threshold
+     */
+    public static long threshold() {
+        return Long.getLong("regextester.stall.millis", Constants.STALL_THRESHOLD_MILLIS);
+    }
+
+    /**
+     * Starts the watchdog, on a daemon thread of its own
+     */
+    public void start() {
+        Thread thread = new Thread(this::watch, "regex-stall-detector");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Records what the window is working on, for the stalls that follow. Call on the event dispatch thread
+     */
+    public void setContext(Context context) {
+        this.context = context;
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                CountDownLatch heartbeat = new CountDownLatch(1);
+                long posted = System.nanoTime();
+                SwingUtilities.invokeLater(() -> {
+                    eventDispatchThread = Thread.currentThread();
+                    heartbeat.countDown();
+                });
+                if (!heartbeat.await(thresholdMillis, TimeUnit.MILLISECONDS)) {
+                    Thread thread = eventDispatchThread;
+                    StackTraceElement[] stack = thread == null ? new StackTraceElement[0] : thread.getStackTrace();
+                    Context stalledContext = context;
+                    LocalDateTime time = LocalDateTime.now();
+                    // printed now as well, in case the window never recovers
+                    System.out.println("StallDetector: " + new Stall(time, thresholdMillis, stalledContext, stack));
+                    heartbeat.await();
+                    add(new Stall(time, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - posted), stalledContext, stack));
+                }
+                Thread.sleep(HEARTBEAT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            // nothing interrupts the watchdog, but if something does, stop watching
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void add(Stall stall) {
+        if (log.size() == Constants.STALL_LOG_SIZE) {
+            log.removeFirst();
+        }
+        log.addLast(stall);
+    }
+
+    /**
+     * @return the latest stalls, the oldest first
+     */
+    public synchronized List<Stall> getStalls() {
+        return new ArrayList<>(log);
+    }
+
+    /**
+     * @return the stall log as text, to view or save
+     */
+    public String report() {
+        List<Stall> stalls = getStalls();
+        StringBuilder builder = new StringBuilder(String.format("Stalls of the event dispatch thread of %,d ms or more: %,d%n%n",
+                thresholdMillis, stalls.size()));
+        stalls.forEach(stall -> builder.append(stall).append('\n'));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package com.vgrazi.regextester.action;
+
+/**
+ * An edit of the character pane text, as a single replacement: the characters from start to oldEnd of the text
+ * before the edit were replaced by those from start to newEnd of the text after it. The document events between two
+ * renders are merged into one edit covering all of them, see {@link #then}, so that the next render can rematch
+ * only around the edit, see {@link MatchSnapshot#rescan}
+ */
+public final class TextEdit {
+    private final int start;
+    private final int oldEnd;
+    private final int newEnd;
+
+    private TextEdit(int start, int oldEnd, int newEnd) {
+        this.start = start;
+        this.oldEnd = oldEnd;
+        this.newEnd = newEnd;
+    }
+
+    /**
+     * @param offset   where the edit starts
+     * @param removed  the number of characters removed there
+     * @param inserted the number of characters inserted in their place
+     */
+    public static TextEdit replace(int offset, int removed, int inserted) {
+        return new TextEdit(offset, offset + removed, offset + inserted);
+    }
+
+    /**
+     * @return this edit followed by the supplied one, whose offset is in the text after this edit
+     */
+    public TextEdit then(int offset, int removed, int inserted) {
+        int end = Math.max(newEnd, offset + removed);
+        // the unchanged characters between the two edits are the same in the text before both of them
+        return new TextEdit(Math.min(start, offset), oldEnd + end - newEnd, end - removed + inserted);
+    }
+
+    /**
+     * Checks that the edit turns the one text into the other: that they only differ between start and the ends.
+     * A document event missed, or a text normalized after the events, would otherwise rematch the wrong region
+     */
+    public boolean appliesTo(String before, String after) {
+        return oldEnd <= before.length() && newEnd <= after.length()
+                && before.length() - oldEnd == after.length() - newEnd
+                && before.regionMatches(0, after, 0, start)
+                && before.regionMatches(oldEnd, after, newEnd, before.length() - oldEnd);
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the end of the replaced characters, in the text before the edit
+     */
+    public int getOldEnd() {
+        return oldEnd;
+    }
+
+    /**
+     * @return the end of the inserted characters, in the text after the edit
+     */
+    public int getNewEnd() {
+        return newEnd;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TextEdit: [%d, %d) -> [%d, %d)", start, oldEnd, start, newEnd);
+    }
+}
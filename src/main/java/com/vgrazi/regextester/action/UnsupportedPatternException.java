@@ -0,0 +1,30 @@
+package com.vgrazi.regextester.action;
+
+/**
+ * Thrown when the {@link LinearPattern} engine can't run a pattern, because it uses a construct that needs
+ * backtracking, such as a backreference or a lookaround, or one the engine does not implement
+ */
+public class UnsupportedPatternException extends IllegalArgumentException {
+    private final String construct;
+    private final int index;
+
+    public UnsupportedPatternException(String construct, int index) {
+        super(String.format("The linear engine does not support %s%s", construct, index < 0 ? "" : ", at index " + index));
+        this.construct = construct;
+        this.index = index;
+    }
+
+    /**
+     * @return what the engine does not support, such as "backreferences"
+     */
+    public String getConstruct() {
+        return construct;
+    }
+
+    /**
+     * @return the index in the regex of the construct, or -1 if it is a flag
+     */
+    public int getIndex() {
+        return index;
+    }
+}
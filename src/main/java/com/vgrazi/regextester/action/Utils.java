@@ -7,7 +7,8 @@ public class Utils {
      * as a character, but the regex parser does not. So we need to adjust.
      * Therefore we must count the number of newlines between the start and
      * current character position.
-     * To do so, we take the relevant substring and count all line feeds
+     * To do so, we take the relevant substring and count all line feeds.
+     * The render path uses {@link LineIndex} instead, which does not copy the prefix for every match
      * @param s the target string to count
      * @return the number of line feeds in the string
      */
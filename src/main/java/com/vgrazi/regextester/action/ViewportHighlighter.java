@@ -0,0 +1,204 @@
+package com.vgrazi.regextester.action;
+
+import com.vgrazi.regextester.component.ColorRange;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.StyledDocument;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.vgrazi.regextester.component.Constants.BACKGROUND_COLOR;
+import static com.vgrazi.regextester.component.Constants.VIEWPORT_HIGHLIGHT_MARGIN;
+import static com.vgrazi.regextester.component.Constants.VIEWPORT_HIGHLIGHT_THRESHOLD;
+
+/**
+ * Keeps the full set of highlight ranges for the character pane, but once the document is longer than
+ * {@link com.vgrazi.regextester.component.Constants#VIEWPORT_HIGHLIGHT_THRESHOLD} only styles the part that is
+ * visible in the scroll pane, plus a margin, re-styling lazily as the user scrolls.
+ * That keeps the attribute cost proportional to the screen size rather than to the input size.
+ * Below the threshold the ranges are applied to the whole document, exactly as {@link Renderer#colorize} does.
+ * All methods must be called on the event dispatch thread
+ */
+public class ViewportHighlighter {
+    private final JTextPane pane;
+    private final JViewport viewport;
+    // the match highlights, in document order, and the group highlights overlaid on them
+    private List<ColorRange> ranges = List.of();
+    private List<ColorRange> overlay = List.of();
+    // the span styled by the last windowed render. Outside it the document has the default background
+    private int styledFrom;
+    private int styledTo;
+    // true while the styling outside the window is unknown, for example after a full-document render
+    private boolean styledEverywhere = true;
+    private boolean refreshPending;
+
+    private ViewportHighlighter(JTextPane pane, JViewport viewport) {
+        this.pane = pane;
+        this.viewport = viewport;
+    }
+
+    /**
+     * Creates the highlighter for the supplied pane, and attaches it, so that {@link #of(JTextPane)} can find it
+     * @param scrollPane the scroll pane containing the pane
+     */
+    public static ViewportHighlighter install(JTextPane pane, JScrollPane scrollPane) {
+        ViewportHighlighter highlighter = new ViewportHighlighter(pane, scrollPane.getViewport());
+        pane.putClientProperty(ViewportHighlighter.class, highlighter);
+        scrollPane.getViewport().addChangeListener(e -> highlighter.scheduleRefresh());
+        pane.getDocument().addDocumentListener(highlighter.new WindowTracker());
+        return highlighter;
+    }
+
+    /**
+     * @return the highlighter installed on the pane, or null if there is none
+     */
+    public static ViewportHighlighter of(JTextPane pane) {
+        return (ViewportHighlighter) pane.getClientProperty(ViewportHighlighter.class);
+    }
+
+    /**
+     * Replaces the highlights, discarding any group overlay, and renders them
+     */
+    public void setRanges(List<ColorRange> ranges) {
+        this.ranges = participating(ranges);
+        this.overlay = List.of();
+        refresh();
+    }
+
+    /**
+     * Overlays the supplied group highlights on the current highlights, and renders them
+     */
+    public void setOverlay(List<ColorRange> overlay) {
+        this.overlay = participating(overlay);
+        refresh();
+    }
+
+    /**
+     * Drops the ranges of groups that did not participate in a match (start -1), which have nothing to style
+     * and would break the document ordering that {@link #clip} relies on
+     */
+    private static List<ColorRange> participating(List<ColorRange> ranges) {
+        return ranges.stream().filter(range -> range.getStart() >= 0).toList();
+    }
+
+    private boolean isWindowed() {
+        return pane.getDocument().getLength() > VIEWPORT_HIGHLIGHT_THRESHOLD;
+    }
+
+    private void scheduleRefresh() {
+        if (refreshPending || !isWindowed()) {
+            return;
+        }
+        refreshPending = true;
+        SwingUtilities.invokeLater(() -> {
+            refreshPending = false;
+            refresh();
+        });
+    }
+
+    private void refresh() {
+        StyledDocument doc = pane.getStyledDocument();
+        if (!isWindowed()) {
+            Renderer.colorize(doc, true, ranges.toArray(new ColorRange[0]));
+            Renderer.colorize(doc, false, overlay.toArray(new ColorRange[0]));
+            styledEverywhere = true;
+            return;
+        }
+        int length = doc.getLength();
+        Rectangle visible = viewport.getViewRect();
+        int from = pane.viewToModel2D(new Point(visible.x, visible.y));
+        int to = pane.viewToModel2D(new Point(visible.x + visible.width, visible.y + visible.height));
+        // style a screenful either side, so that small scrolls don't show unstyled text before the refresh lands
+        int margin = Math.max(VIEWPORT_HIGHLIGHT_MARGIN, to - from);
+        from = Math.max(0, from - margin);
+        to = Math.min(length, to + margin);
+
+        AttributeSet font = Renderer.background(BACKGROUND_COLOR);
+        if (styledEverywhere) {
+            doc.setCharacterAttributes(0, length, font, true);
+            styledEverywhere = false;
+        } else {
+            resetSpan(doc, font, styledFrom, styledTo);
+        }
+        resetSpan(doc, font, from, to);
+        Renderer.colorize(doc, false, clip(ranges, from, to));
+        Renderer.colorize(doc, false, clip(overlay, from, to));
+        styledFrom = from;
+        styledTo = to;
+    }
+
+    private static void resetSpan(StyledDocument doc, AttributeSet font, int from, int to) {
+        int end = Math.min(to, doc.getLength());
+        if (end > from) {
+            doc.setCharacterAttributes(from, end - from, font, true);
+        }
+    }
+
+    /**
+     * Returns the ranges that intersect [from, to), clipped to it. The ranges are in document order
+     * and do not overlap, as produced by find(), so the first candidate is located by binary search
+     */
+    private static ColorRange[] clip(List<ColorRange> ranges, int from, int to) {
+        List<ColorRange> clipped = new ArrayList<>();
+        int low = 0;
+        int high = ranges.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ranges.get(mid).getEnd() < from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < ranges.size(); i++) {
+            ColorRange range = ranges.get(i);
+            if (range.getStart() >= to) {
+                break;
+            }
+            if (range.isInclusive()) {
+                clipped.add(new ColorRange(range.getColor(), Math.max(range.getStart(), from), Math.min(range.getEnd(), to - 1), true));
+            } else {
+                clipped.add(range);
+            }
+        }
+        return clipped.toArray(new ColorRange[0]);
+    }
+
+    /**
+     * Keeps the styled window aligned with the text as it is edited, so that the next refresh resets the right span
+     */
+    private class WindowTracker implements DocumentListener {
+        @Override
+        public void insertUpdate(DocumentEvent e) {
+            if (e.getOffset() <= styledTo) {
+                styledTo += e.getLength();
+                if (e.getOffset() < styledFrom) {
+                    styledFrom += e.getLength();
+                }
+            }
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            int removedEnd = e.getOffset() + e.getLength();
+            styledFrom = shift(styledFrom, e.getOffset(), removedEnd);
+            styledTo = shift(styledTo, e.getOffset(), removedEnd);
+        }
+
+        private int shift(int position, int removedFrom, int removedTo) {
+            if (position <= removedFrom) {
+                return position;
+            }
+            return position <= removedTo ? removedFrom : position - (removedTo - removedFrom);
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            // attribute changes don't move text
+        }
+    }
+}
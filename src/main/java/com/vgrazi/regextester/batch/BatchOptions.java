@@ -0,0 +1,184 @@
+package com.vgrazi.regextester.batch;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The command line of the batch subcommand
+ */
+public class BatchOptions {
+    public static final String USAGE = """
+            Usage: regex-tester batch [options] regex [file...]
+            Runs regex over each file, or over standard input if no file, or a file named -, is given.
+              --mode command          find, matches, looking-at, split, split-with-delimiters,
+                                      replace-all or replace-first (default find)
+              --replacement text      the replacement for the replace commands (default empty)
+              -i, --case-insensitive
+              -x, --comments
+              -s, --dotall
+              -l, --literal
+              -m, --multiline
+              --charset name          the charset of the input and output (default UTF-8)
+              --chunk-size chars      the number of characters decoded per read (default 4194304)
+              --max-match chars       the longest match that may span two chunks (default 65536)
+              -q, --quiet             don't write the throughput report to standard error
+              --scaling-report        instead of running the command, time the sequential find against the
+                                      parallel find on 1, 2, 4... threads, and check that their results are
+                                      identical. Each input is read into memory whole
+            Exits with 0 on success, 1 if find, matches or looking-at found no match, and 2 on an error,
+            or if a parallel find differed from the sequential one""";
+
+    static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    static final int DEFAULT_MAX_MATCH = 64 * 1024;
+    private static final Set<String> MODES = Set.of("find", "matches", "looking-at", "split", "split-with-delimiters",
+            "replace-all", "replace-first");
+
+    private String regex;
+    private int flags;
+    private String mode = "find";
+    private String replacement = "";
+    private Charset charset = StandardCharsets.UTF_8;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int maxMatch = DEFAULT_MAX_MATCH;
+    private boolean quiet;
+    private boolean scalingReport;
+    private final List<String> files = new ArrayList<>();
+
+    /**
+     * @throws IllegalArgumentException if the arguments are not valid, with a message saying why
+     */
+    public static BatchOptions parse(String... args) {
+        BatchOptions options = new BatchOptions();
+        int index = 0;
+        for (; index < args.length && args[index].startsWith("-") && !args[index].equals("-"); index++) {
+            String arg = args[index];
+            if (arg.equals("--")) {
+                // the regex follows, even if it starts with -
+                index++;
+                break;
+            }
+            switch (arg) {
+                case "-i", "--case-insensitive" -> options.flags |= Pattern.CASE_INSENSITIVE;
+                case "-x", "--comments" -> options.flags |= Pattern.COMMENTS;
+                case "-s", "--dotall" -> options.flags |= Pattern.DOTALL;
+                case "-l", "--literal" -> options.flags |= Pattern.LITERAL;
+                case "-m", "--multiline" -> options.flags |= Pattern.MULTILINE;
+                case "-q", "--quiet" -> options.quiet = true;
+                case "--scaling-report" -> options.scalingReport = true;
+                case "--mode" -> {
+                    options.mode = value(args, ++index, arg);
+                    if (!MODES.contains(options.mode)) {
+                        throw new IllegalArgumentException("Unknown mode " + options.mode);
+                    }
+                }
+                case "--replacement" -> options.replacement = value(args, ++index, arg);
+                case "--charset" -> options.charset = Charset.forName(value(args, ++index, arg));
+                case "--chunk-size" -> options.chunkSize = positive(value(args, ++index, arg), arg);
+                case "--max-match" -> options.maxMatch = positive(value(args, ++index, arg), arg);
+                default -> throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (index == args.length) {
+            throw new IllegalArgumentException("No regex given");
+        }
+        options.regex = args[index++];
+        for (; index < args.length; index++) {
+            options.files.add(args[index]);
+        }
+        if (options.files.isEmpty()) {
+            options.files.add("-");
+        }
+        return options;
+    }
+
+    /**
+     * Options for running a command over files from the GUI, rather than parsed from a command line, with the
+     * default charset and longest match
+     * @param mode a mode this runs, see {@link #isMode}
+     */
+    static BatchOptions of(String regex, int flags, String mode, String replacement, int chunkSize) {
+        if (!isMode(mode)) {
+            throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+        BatchOptions options = new BatchOptions();
+        options.regex = regex;
+        options.flags = flags;
+        options.mode = mode;
+        options.replacement = replacement;
+        options.chunkSize = chunkSize;
+        return options;
+    }
+
+    /**
+     * @return whether the radio-button command is one that batch runs
+     */
+    static boolean isMode(String mode) {
+        return MODES.contains(mode);
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index == args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[index];
+    }
+
+    private static int positive(String value, String option) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the error below
+        }
+        throw new IllegalArgumentException(option + " must be a positive number, not " + value);
+    }
+
+    public String getRegex() {
+        return regex;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public String getReplacement() {
+        return replacement;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getMaxMatch() {
+        return maxMatch;
+    }
+
+    public boolean isQuiet() {
+        return quiet;
+    }
+
+    public boolean isScalingReport() {
+        return scalingReport;
+    }
+
+    /**
+     * @return the files to read, in order, where - stands for standard input
+     */
+    public List<String> getFiles() {
+        return files;
+    }
+}
@@ -0,0 +1,370 @@
+package com.vgrazi.regextester.batch;
+
+import com.vgrazi.regextester.action.InterruptibleCharSequence;
+import com.vgrazi.regextester.action.MatchBudget;
+import com.vgrazi.regextester.action.ParallelFind;
+import com.vgrazi.regextester.action.PatternCache;
+import com.vgrazi.regextester.action.ReplacementTemplate;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the radio-button commands from the command line over files or standard input, without Swing, for example
+ * <pre>
+ * java -jar regex-tester.jar batch --mode split , data.csv
+ * </pre>
+ * Each command writes what the auxiliary pane shows for it, except that the replace commands write the replaced text
+ * as it is, without the ">" continuation marks, so that it can be piped on. The input is decoded in chunks and matched
+ * through a sliding window, so an input of any size runs in bounded memory. Matches may span chunks, using
+ * hitEnd() and requireEnd() to tell when a match could still change with more input; the results are exact as long
+ * as no match is longer than --max-match characters, and a run that meets a longer one fails rather than guess.
+ * A throughput report is written to standard error at the end
+ */
+public class BatchRunner {
+    // the characters kept before the search position, so that lookbehind, \b and ^ still see what precedes it
+    private static final int CONTEXT = 1024;
+
+    private final BatchOptions options;
+    private final Pattern pattern;
+    private final ReplacementTemplate template;
+    private final Writer out;
+    private final StringBuilder expanded = new StringBuilder();
+    // whether each find is matched on a budget, and stops when the thread is interrupted
+    private final boolean checked;
+    private long bytes;
+    private long matchCount;
+
+    BatchRunner(BatchOptions options, Writer out) {
+        this(options, out, false);
+    }
+
+    /**
+     * @param checked whether each find is matched through an {@link InterruptibleCharSequence} on a
+     *                {@link MatchBudget} of its own, as the GUI matches, rather than as fast as it can be
+     */
+    BatchRunner(BatchOptions options, Writer out, boolean checked) {
+        this.options = options;
+        this.out = out;
+        this.checked = checked;
+        pattern = PatternCache.shared().compile(options.getRegex(), options.getFlags());
+        // unlike Matcher, check the replacement up front, rather than after some output has already been written
+        template = options.getMode().startsWith("replace") ? ReplacementTemplate.compile(options.getReplacement(), pattern) : null;
+    }
+
+    /**
+     * Runs the batch subcommand
+     * @param args the arguments following "batch"
+     * @return the exit status
+     */
+    public static int run(String... args) {
+        BatchOptions options;
+        try {
+            options = BatchOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(BatchOptions.USAGE);
+            return 2;
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), options.getCharset()), 64 * 1024);
+        long startTime = System.nanoTime();
+        try {
+            BatchRunner runner = new BatchRunner(options, out);
+            if (options.isScalingReport()) {
+                return runner.scalingReport() ? 0 : 2;
+            }
+            boolean found = false;
+            for (String file : options.getFiles()) {
+                if (options.getFiles().size() > 1) {
+                    out.write("==> " + file + " <==\n");
+                }
+                try (ReadableByteChannel channel = file.equals("-") ? Channels.newChannel(System.in) : FileChannel.open(Path.of(file))) {
+                    found |= runner.process(new ChunkedReader(channel, options.getCharset(), options.getChunkSize()));
+                }
+            }
+            out.flush();
+            if (!options.isQuiet()) {
+                System.err.println(runner.report(System.nanoTime() - startTime));
+            }
+            String mode = options.getMode();
+            return found || mode.startsWith("split") || mode.startsWith("replace") ? 0 : 1;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | IllegalStateException | IOException e) {
+            try {
+                out.flush();
+            } catch (IOException ignored) {
+                // already failing, report the original error
+            }
+            System.err.println(e.getMessage());
+            return 2;
+        }
+    }
+
+    /**
+     * Reads each input whole, and reports how the parallel find scales on it, see {@link ParallelFind#scalingReport}
+     * @return true if every parallel find gave the same results as the sequential one
+     */
+    private boolean scalingReport() throws IOException {
+        boolean identical = true;
+        for (String file : options.getFiles()) {
+            try (ReadableByteChannel channel = file.equals("-") ? Channels.newChannel(System.in) : FileChannel.open(Path.of(file))) {
+                ChunkedReader reader = new ChunkedReader(channel, options.getCharset(), options.getChunkSize());
+                while (!reader.isEof()) {
+                    reader.read();
+                }
+                out.write(file + ": ");
+                identical &= ParallelFind.scalingReport(pattern, reader.getText().toString(), out);
+                out.flush();
+            }
+        }
+        return identical;
+    }
+
+    /**
+     * Runs the command over one input
+     * @return true if anything matched
+     */
+    boolean process(ChunkedReader reader) throws IOException {
+        long before = matchCount;
+        reader.read();
+        switch (options.getMode()) {
+            case "matches", "looking-at" -> matchFromStart(reader);
+            default -> scan(reader);
+        }
+        bytes += reader.getBytesRead();
+        return matchCount > before;
+    }
+
+    /**
+     * matches and looking-at need the whole match in the window, so the window grows until more input can no longer
+     * change the outcome. When there is no match, that is usually long before the end of the input
+     */
+    private void matchFromStart(ChunkedReader reader) throws IOException {
+        StringBuilder text = reader.getText();
+        Matcher matcher = pattern.matcher(text);
+        boolean matches = options.getMode().equals("matches");
+        while (true) {
+            if (checked) {
+                matcher.reset(budgeted(text));
+            } else {
+                matcher.reset();
+            }
+            boolean found = matches ? matcher.matches() : matcher.lookingAt();
+            boolean decided = found ? !matches && !matcher.hitEnd() && !matcher.requireEnd() : !matcher.hitEnd();
+            if (decided || reader.isEof()) {
+                if (found) {
+                    matchCount++;
+                    writeGroups(matcher, text);
+                }
+                return;
+            }
+            if (text.length() > options.getMaxMatch()) {
+                throw new IllegalStateException(options.getMode() + " needs more than --max-match " + options.getMaxMatch()
+                        + " characters of the input to decide");
+            }
+            reader.read();
+        }
+    }
+
+    /**
+     * The find loop shared by find, split and replace. Matches that are decided are handled, and the text between them
+     * is written out as it goes by; a match that reaches the end of the window is looked at again once the next chunk
+     * has been read
+     */
+    private void scan(ChunkedReader reader) throws IOException {
+        StringBuilder text = reader.getText();
+        Matcher matcher = pattern.matcher(text).useTransparentBounds(true).useAnchoringBounds(false);
+        String mode = options.getMode();
+        SplitWriter split = mode.startsWith("split") ? new SplitWriter(out, mode.equals("split-with-delimiters")) : null;
+        // input positions: where the next find() starts searching, and how far the input has been written out
+        long searchFrom = 0;
+        long copiedTo = 0;
+        boolean searching = true;
+        while (true) {
+            long offset = reader.getOffset();
+            if (searching && searchFrom - offset <= text.length()) {
+                if (checked) {
+                    // keeps the bounds, and the region is set just below
+                    matcher.reset(budgeted(text));
+                }
+                matcher.region((int) (searchFrom - offset), text.length());
+                if (matcher.find()) {
+                    if (reader.isEof() || !matcher.hitEnd() && !matcher.requireEnd()) {
+                        long start = offset + matcher.start();
+                        long end = offset + matcher.end();
+                        writeGap(split, text, (int) (copiedTo - offset), matcher.start());
+                        if (split != null) {
+                            split.match(text, matcher.start(), matcher.end(), end);
+                        } else if (template != null) {
+                            expanded.setLength(0);
+                            template.appendTo(expanded, matcher, text);
+                            out.append(expanded);
+                            searching = mode.equals("replace-all");
+                        } else {
+                            writeGroups(matcher, text);
+                        }
+                        matchCount++;
+                        copiedTo = end;
+                        searchFrom = end == start ? end + 1 : end;
+                        continue;
+                    }
+                    // more input could still extend this match, or turn an earlier attempt into a match
+                    if (text.length() - matcher.start() > options.getMaxMatch()) {
+                        throw new IllegalStateException("The match at offset " + (offset + matcher.start())
+                                + " may be longer than --max-match " + options.getMaxMatch() + " characters");
+                    }
+                } else if (!reader.isEof()) {
+                    // a match that begins before the last max-match characters would already have been found
+                    searchFrom = Math.max(searchFrom, offset + text.length() - options.getMaxMatch());
+                }
+            }
+            if (reader.isEof()) {
+                break;
+            }
+            if (!searching) {
+                searchFrom = offset + text.length();
+            }
+            // no match still to be found begins before searchFrom, so the text up to there can be written out and dropped
+            long gapEnd = Math.min(searchFrom, offset + text.length());
+            if (gapEnd > copiedTo) {
+                writeGap(split, text, (int) (copiedTo - offset), (int) (gapEnd - offset));
+                copiedTo = gapEnd;
+            }
+            reader.discard((int) Math.max(0, Math.min(copiedTo, searchFrom - CONTEXT) - offset));
+            reader.read();
+        }
+        long offset = reader.getOffset();
+        if (copiedTo - offset < text.length()) {
+            writeGap(split, text, (int) (copiedTo - offset), text.length());
+        }
+        if (split != null) {
+            split.finish();
+        }
+    }
+
+    /**
+     * Writes the text between matches, which only split and replace show
+     */
+    private void writeGap(SplitWriter split, StringBuilder text, int start, int end) throws IOException {
+        if (split != null) {
+            split.text(text, start, end);
+        } else if (template != null) {
+            out.append(text, start, end);
+        }
+    }
+
+    /**
+     * Writes the match as the find command lists it in the auxiliary pane
+     */
+    private void writeGroups(Matcher matcher, CharSequence text) throws IOException {
+        int groupCount = matcher.groupCount();
+        for (int i = 0; i <= groupCount; i++) {
+            if (matcher.start(i) != -1) {
+                out.write(Integer.toString(i));
+                out.write(". ");
+                out.append(text, matcher.start(i), matcher.end(i));
+                out.write('\n');
+                if (i == groupCount) {
+                    out.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the window, read on a budget of its own for the next find
+     */
+    private CharSequence budgeted(StringBuilder text) {
+        return new InterruptibleCharSequence(text, MatchBudget.start(pattern));
+    }
+
+    long getMatchCount() {
+        return matchCount;
+    }
+
+    /**
+     * @return the throughput so far, for the supplied elapsed time
+     */
+    String report(long nanos) {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        return String.format("%,d bytes, %,d matches in %.3f s: %.1f MB/s, %,.0f matches/s",
+                bytes, matchCount, seconds, bytes / 1e6 / seconds, matchCount / seconds);
+    }
+
+    /**
+     * Writes the pieces of the split commands as they go by, numbered as in the auxiliary pane, with the same pieces
+     * as Pattern.split with a limit of 0. A piece may arrive in parts, and empty pieces are held back until
+     * a non-empty one follows, because trailing empty pieces are dropped
+     */
+    private static class SplitWriter {
+        private final Writer out;
+        private final boolean withDelimiters;
+        private int piece;
+        private int pendingEmpty;
+        private boolean open;
+
+        SplitWriter(Writer out, boolean withDelimiters) {
+            this.out = out;
+            this.withDelimiters = withDelimiters;
+        }
+
+        /**
+         * Adds text to the current piece
+         */
+        void text(CharSequence text, int start, int end) throws IOException {
+            if (start == end) {
+                return;
+            }
+            if (!open) {
+                for (; pendingEmpty > 0; pendingEmpty--) {
+                    out.write(piece++ + ": \n");
+                }
+                out.write(piece + ": ");
+                open = true;
+            }
+            out.append(text, start, end);
+        }
+
+        /**
+         * Ends the current piece at a match
+         * @param inputEnd the end of the match in the input
+         */
+        void match(CharSequence text, int start, int end, long inputEnd) throws IOException {
+            if (inputEnd == 0) {
+                // no empty leading piece for a zero-width match at the beginning of the input
+                return;
+            }
+            endPiece();
+            if (withDelimiters) {
+                text(text, start, end);
+                endPiece();
+            }
+        }
+
+        private void endPiece() throws IOException {
+            if (open) {
+                out.write('\n');
+                piece++;
+                open = false;
+            } else {
+                pendingEmpty++;
+            }
+        }
+
+        void finish() throws IOException {
+            if (open) {
+                out.write('\n');
+                open = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.vgrazi.regextester.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes a channel one chunk at a time into a sliding text window. The caller matches over {@link #getText()},
+ * discards the prefix it has finished with, and reads the next chunk when a match could continue past the end
+ * of the window, so memory is bounded by the chunk size plus the longest unresolved match, not by the input size.
+ * Malformed input is decoded as the replacement character rather than failing the run
+ */
+class ChunkedReader {
+    private static final int MIN_BUFFER_SIZE = 16;
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+    private final StringBuilder text = new StringBuilder();
+    // the input position of the first character in the window
+    private long offset;
+    private long bytesRead;
+    private boolean eof;
+
+    ChunkedReader(ReadableByteChannel channel, Charset charset, int chunkSize) {
+        this.channel = channel;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // room for at least one whole character, however small the chunks
+        this.bytes = ByteBuffer.allocateDirect(Math.max(chunkSize, MIN_BUFFER_SIZE));
+        this.chars = CharBuffer.allocate(Math.max(chunkSize, MIN_BUFFER_SIZE));
+    }
+
+    /**
+     * The window. Only read it, and only between calls to {@link #read()} and {@link #discard(int)}
+     */
+    StringBuilder getText() {
+        return text;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return true once the whole input is in the window, meaning nothing more can follow it
+     */
+    boolean isEof() {
+        return eof;
+    }
+
+    /**
+     * Appends at least one more character to the window, unless the end of the input is reached first
+     */
+    void read() throws IOException {
+        int length = text.length();
+        while (text.length() == length && !eof) {
+            int count = channel.read(bytes);
+            if (count == -1) {
+                eof = true;
+            } else {
+                bytesRead += count;
+            }
+            bytes.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(bytes, chars, eof);
+                drain();
+            } while (result.isOverflow());
+            if (eof) {
+                while (decoder.flush(chars).isOverflow()) {
+                    drain();
+                }
+                drain();
+            }
+            bytes.compact();
+        }
+    }
+
+    private void drain() {
+        chars.flip();
+        text.append(chars);
+        chars.clear();
+    }
+
+    /**
+     * Drops the first count characters of the window
+     */
+    void discard(int count) {
+        text.delete(0, count);
+        offset += count;
+    }
+}
@@ -0,0 +1,203 @@
+package com.vgrazi.regextester.batch;
+
+import com.vgrazi.regextester.action.MatchBudgetExceededException;
+import com.vgrazi.regextester.action.ResultRows;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Runs a radio-button command over every file under a directory, for the corpus mode of the GUI. Each file is read
+ * in chunks by a {@link BatchRunner} of its own, on a virtual thread of its own, and at most
+ * {@link #concurrency()} files are matched at a time, as matching is bound by the cores rather than by the reads.
+ * Each file is matched on a budget of its own, so a file on which the pattern backtracks catastrophically is
+ * reported as having given up, rather than holding up the rest. Interrupting the thread running the scan cancels it.
+ * The commands batch does not run, such as Heatmap, run as find
+ */
+public final class CorpusScan {
+    // the characters decoded per read, fewer than on the command line, as many files are read at once
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // the number of slowest files listed first
+    private static final int SLOWEST_LISTED = 10;
+
+    /**
+     * @param error why the file's run stopped short, or null if it did not
+     */
+    public record FileResult(Path file, long bytes, long matches, long nanos, String error) {
+    }
+
+    private final Path directory;
+    private final String requested;
+    private final String mode;
+    private final List<FileResult> results;
+    private final long nanos;
+    private final List<FileResult> slowest;
+
+    private CorpusScan(Path directory, String requested, String mode, List<FileResult> results, long nanos) {
+        this.directory = directory;
+        this.requested = requested;
+        this.mode = mode;
+        this.results = results;
+        this.nanos = nanos;
+        slowest = results.stream().sorted(Comparator.comparingLong(FileResult::nanos).reversed()).limit(SLOWEST_LISTED).toList();
+    }
+
+    /**
+     * @return how many files are matched at a once, the number of cores unless set with the system property
+     * regextester.corpus.concurrency
+     */
+    public static int concurrency() {
+        return Math.max(1, Integer.getInteger("regextester.corpus.concurrency", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Runs the command over the files under the directory, in the order of their paths
+     * @param actionCommand the selected radio button's command
+     * @param replacement   the replacement pane text
+     * @throws java.util.regex.PatternSyntaxException if the regex does not compile
+     * @throws IllegalArgumentException if the replacement is not valid for a replace command
+     * @throws IOException if the directory can't be listed
+     * @throws CancellationException if the thread was interrupted
+     */
+    public static CorpusScan run(Path directory, String regex, int flags, String actionCommand, String replacement) throws IOException {
+        String mode = BatchOptions.isMode(actionCommand) ? actionCommand : "find";
+        BatchOptions options = BatchOptions.of(regex, flags, mode, replacement, CHUNK_SIZE);
+        // compiles the pattern and the replacement, so that they fail here rather than once per file
+        new BatchRunner(options, Writer.nullWriter(), true);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(Files::isRegularFile).sorted().toList();
+        }
+        long start = System.nanoTime();
+        Semaphore permits = new Semaphore(concurrency());
+        List<Future<FileResult>> futures = new ArrayList<>(files.size());
+        // closing waits for every file, and if this thread is interrupted meanwhile, interrupts them all
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path file : files) {
+                futures.add(executor.submit(() -> scan(file, options, permits)));
+            }
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Corpus scan cancelled");
+        }
+        List<FileResult> results = new ArrayList<>(files.size());
+        for (Future<FileResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException | InterruptedException e) {
+                throw new IllegalStateException("A file's run failed", e);
+            }
+        }
+        return new CorpusScan(directory, actionCommand, mode, results, System.nanoTime() - start);
+    }
+
+    /**
+     * Runs the command over one file, once a permit is free
+     */
+    private static FileResult scan(Path file, BatchOptions options, Semaphore permits) throws InterruptedException {
+        permits.acquire();
+        long start = System.nanoTime();
+        BatchRunner runner = new BatchRunner(options, Writer.nullWriter(), true);
+        ChunkedReader reader = null;
+        String error = null;
+        try (FileChannel channel = FileChannel.open(file)) {
+            reader = new ChunkedReader(channel, options.getCharset(), options.getChunkSize());
+            runner.process(reader);
+        } catch (MatchBudgetExceededException e) {
+            error = String.format("gave up after %,d steps, at offset %,d", e.getSteps(), e.getOffset());
+        } catch (IOException | IllegalStateException e) {
+            // such as a match longer than the window holds
+            error = e.getMessage();
+        } finally {
+            permits.release();
+        }
+        return new FileResult(file, reader == null ? 0 : reader.getBytesRead(), runner.getMatchCount(), System.nanoTime() - start, error);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the command run, which is find for the commands batch does not run
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    public List<FileResult> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the time the whole scan took
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Lists the totals, then the slowest files, then every file, for the auxiliary pane
+     */
+    public ResultRows rows() {
+        return new ResultRows() {
+            @Override
+            public int size() {
+                return results.isEmpty() ? 1 : 5 + slowest.size() + results.size();
+            }
+
+            @Override
+            public String get(int row) {
+                if (row == 0) {
+                    return totals();
+                }
+                FileResult result = fileAt(row);
+                if (result != null) {
+                    return row(result);
+                }
+                return row == 2 ? "Slowest files:" : row == 4 + slowest.size() ? "All files:" : "";
+            }
+        };
+    }
+
+    /**
+     * @return the file listed on the row of {@link #rows()}, or null if the row does not list one
+     */
+    public FileResult fileAt(int row) {
+        int slowestRow = row - 3;
+        if (slowestRow >= 0 && slowestRow < slowest.size()) {
+            return slowest.get(slowestRow);
+        }
+        int fileRow = row - 5 - slowest.size();
+        return fileRow >= 0 && fileRow < results.size() ? results.get(fileRow) : null;
+    }
+
+    private String totals() {
+        long bytes = results.stream().mapToLong(FileResult::bytes).sum();
+        long matches = results.stream().mapToLong(FileResult::matches).sum();
+        long failed = results.stream().filter(result -> result.error() != null).count();
+        return String.format("%s over %,d files, %,d bytes: %,d matches in %,.1f ms, %.1f MB/s, %d files at a time%s%s", mode,
+                results.size(), bytes, matches, nanos / 1e6, bytes / 1e3 / Math.max(1, nanos / 1e6), concurrency(),
+                failed == 0 ? "" : String.format(", %,d stopped short", failed),
+                requested.equals(mode) ? "" : String.format(" (%s runs as find over a folder)", requested));
+    }
+
+    private String row(FileResult result) {
+        return String.format("%,10d matches %,14d bytes %,10.1f ms %8.1f MB/s  %s%s", result.matches(), result.bytes(),
+                result.nanos() / 1e6, result.bytes() / 1e3 / Math.max(1e-3, result.nanos() / 1e6),
+                directory.relativize(result.file()), result.error() == null ? "" : "  (" + result.error() + ")");
+    }
+}
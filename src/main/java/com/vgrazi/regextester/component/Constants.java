@@ -15,4 +15,52 @@ public interface Constants {
     Font DEFAULT_LABEL_FONT = new Font("Arial", Font.PLAIN, 24);
     Font DEFAULT_BUTTON_FONT = new Font("Arial", Font.PLAIN, 16);
     Color FONT_COLOR = Color.BLACK;
+    // above this many characters, the character pane only styles the visible part of the document
+    int VIEWPORT_HIGHLIGHT_THRESHOLD = 100_000;
+    // the minimum number of characters styled either side of the visible part
+    int VIEWPORT_HIGHLIGHT_MARGIN = 2_000;
+    // the number of characters of an open file shown in the character pane at a time
+    int FILE_PAGE_SIZE = 64 * 1024;
+    // the most characters of results streamed into the auxiliary pane, beyond which the output is truncated
+    int MAX_STREAMED_RESULT_CHARS = 1_000_000;
+    // the most characters of a group or split piece shown on one row of the results list
+    int MAX_RESULT_ROW_CHARS = 1_000;
+    // the shortest text that the opt-in parallel find splits into chunks; shorter texts are searched sequentially
+    int PARALLEL_FIND_THRESHOLD = 1 << 20;
+    // a match run that reads more characters than this, or runs for longer than the following, is taken to be
+    // backtracking catastrophically, and gives up; see MatchBudget for overriding them
+    long MATCH_STEP_BUDGET = 500_000_000L;
+    long MATCH_TIME_BUDGET_MILLIS = 3_000;
+    // how long render requests are merged for, about one frame at 60 Hz
+    int RENDER_FRAME_MILLIS = 16;
+    // the heatmap grades, from the characters read least often to those read most often
+    Color[] HEAT_COLORS = {new Color(255, 255, 204), new Color(255, 237, 160), new Color(254, 217, 118),
+            new Color(254, 178, 76), new Color(253, 141, 60), new Color(252, 78, 42), new Color(227, 26, 28),
+            new Color(189, 0, 38)};
+    // the heatmap summary lists the hottest regions of up to this many characters within a line
+    int HEAT_REGION_SIZE = 64;
+    int HEAT_REGION_COUNT = 10;
+    // the Pattern set radio highlights the matches of each line of the set in the next of these, and colors the line too
+    Color[] PATTERN_SET_COLORS = {new Color(170, 232, 252), new Color(255, 214, 153), new Color(204, 255, 153),
+            new Color(255, 179, 217), new Color(214, 194, 255), new Color(255, 255, 153), new Color(153, 255, 221),
+            new Color(255, 190, 170), new Color(200, 220, 160), new Color(230, 200, 255)};
+    // how long the pattern and text must be left unchanged before the Benchmark radio times them, how long it warms
+    // the pattern up, and then measures it, and the most runs it times
+    int BENCHMARK_SETTLE_MILLIS = 750;
+    long BENCHMARK_WARMUP_MILLIS = 500;
+    long BENCHMARK_MEASUREMENT_MILLIS = 1_000;
+    int BENCHMARK_MAX_RUNS = 1_000_000;
+    // the Compare engines radio times each engine this many times and takes the fastest, lists this many of the
+    // matches that differ, and highlights those in this color
+    int ENGINE_COMPARISON_RUNS = 5;
+    int ENGINE_DIFFERENCES_LISTED = 20;
+    Color ENGINE_DIFFERENCE_COLOR = new Color(255, 153, 153);
+    // the part of an invalid replacement at fault, such as a reference to a group the pattern does not have
+    Color REPLACEMENT_ERROR_COLOR = new Color(255, 153, 153);
+    // the event dispatch thread is taken to have stalled when a heartbeat waits longer than this for it, and the
+    // stall log keeps this many of the latest stalls; see StallDetector for overriding the first
+    long STALL_THRESHOLD_MILLIS = 500;
+    int STALL_LOG_SIZE = 50;
+    // the number of times Prewarm runs each command over its sample, while the window comes up
+    int PREWARM_RUNS = 60;
 }
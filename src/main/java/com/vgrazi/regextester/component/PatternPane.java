@@ -1,12 +1,19 @@
 package com.vgrazi.regextester.component;
 
 import com.vgrazi.regextester.action.Calculator;
+import com.vgrazi.regextester.action.GroupStructure;
+import com.vgrazi.regextester.action.MatchWorker;
+import com.vgrazi.regextester.action.PatternCache;
+import com.vgrazi.regextester.action.PatternSet;
+import com.vgrazi.regextester.action.RenderScheduler;
+import com.vgrazi.regextester.action.RenderScheduler.Stage;
 import com.vgrazi.regextester.action.Renderer;
 import com.vgrazi.regextester.action.UnmatchedLeftParenException;
 
 import javax.swing.*;
 import javax.swing.event.CaretEvent;
 import javax.swing.event.CaretListener;
+import javax.swing.text.StyledDocument;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.datatransfer.*;
@@ -16,6 +23,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
+import static com.vgrazi.regextester.component.Constants.BACKGROUND_COLOR;
 import static com.vgrazi.regextester.component.Constants.GROUP_COLOR;
 import static com.vgrazi.regextester.component.Constants.RED_BORDER;
 import static com.vgrazi.regextester.component.Constants.WHITE_BORDER;
@@ -29,55 +37,28 @@ public class PatternPane extends JTextPane {
      */
     private JTextPane characterPane;
     private JTextPane auxiliaryPane;
-    private Runnable characterPaneRenderer;
-    private int lastHighlightedGroupIndex = -1;
+    private RenderScheduler renderScheduler;
+    // the group highlighted for the caret, if any, whose parentheses are restored when the caret moves off it
+    private GroupStructure.Group highlightedGroup;
+    // parsed on the first render after an edit, then only looked up as the caret moves. Null if the pattern is invalid
+    private GroupStructure groupStructure;
+    private boolean parsed;
     private int flags;
-    private final static Pattern CAPTURE_GROUP_PATTERN = Pattern.compile("\\((\\?([^<]+?))\\)");
+    // whether each line is a pattern of its own, for the Pattern set radio, rather than the text being one pattern
+    private boolean patternSet;
+    private final MatchWorker groupWorker = new MatchWorker("regex-group-worker");
+    private final static Pattern NAMED_GROUP_PATTERN = Pattern.compile("\\?<(.+?)>");
 
     public PatternPane(final JTextPane characterPane, final JTextPane auxiliaryPane, JTextPane replacementPane) {
         this.characterPane = characterPane;
         this.auxiliaryPane = auxiliaryPane;
         getStyledDocument().addStyle("highlights", null);
 
-        // Add a single key typed listener for immediate response
-        addKeyListener(new KeyAdapter() {
-            private long lastUpdateTime = 0;
-            private final long UPDATE_THRESHOLD = 50; // ms between updates
-
-            @Override
-            public void keyTyped(KeyEvent e) {
-                // Only update if enough time has passed since last update
-                long currentTime = System.currentTimeMillis();
-                if (currentTime - lastUpdateTime > UPDATE_THRESHOLD) {
-                    lastUpdateTime = currentTime;
-                    SwingUtilities.invokeLater(() -> {
-                        renderMatchingGroupsInCharacterPane();
-                        if (characterPane != null) {
-                            characterPane.repaint();
-                        }
-                    });
-                }
-            }
-
-            @Override
-            public void keyPressed(KeyEvent e) {
-                // Handle any immediate key presses if needed
-            }
-        });
-
+        // typing is picked up by the document listener below, and rendered by the RenderScheduler
         addCaretListener(new CaretListener() {
-            private boolean pending;
-
             @Override
             public void caretUpdate(CaretEvent e) {
-                if (pending) {
-                    return;
-                }
-                pending = true;
-                SwingUtilities.invokeLater(() -> {
-                    pending = false;
-                    renderMatchingGroupsInCharacterPane();
-                });
+                requestRender(Stage.PATTERN);
             }
         });
 
@@ -85,18 +66,22 @@ public class PatternPane extends JTextPane {
         addFocusListener(new FocusAdapter() {
             @Override
             public void focusLost(FocusEvent e) {
-                Renderer.resetColor(getStyledDocument());
+                if (!patternSet) {
+                    // a set keeps its lines colored like their matches
+                    Renderer.resetColor(getStyledDocument());
+                }
+                highlightedGroup = null;
             }
 
             @Override
             public void focusGained(FocusEvent e) {
-                // Update immediately when focus is gained
-                renderMatchingGroupsInCharacterPane();
+                requestRender(Stage.PATTERN);
             }
         });
 
         // Add property change listener to catch text changes
         addPropertyChangeListener("document", evt -> {
+            parsed = false;
             triggerRerender();
         });
 
@@ -104,11 +89,13 @@ public class PatternPane extends JTextPane {
         getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
             @Override
             public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                parsed = false;
                 triggerRerender();
             }
 
             @Override
             public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                parsed = false;
                 triggerRerender();
             }
 
@@ -160,90 +147,131 @@ public class PatternPane extends JTextPane {
     }
 
     private void triggerRerender() {
-        SwingUtilities.invokeLater(() -> {
-            renderMatchingGroupsInCharacterPane();
-            if (characterPaneRenderer != null) {
-                characterPaneRenderer.run();
-            }
-        });
+        requestRender(Stage.PATTERN, Stage.MATCHES, Stage.AUXILIARY);
+    }
+
+    private void requestRender(Stage... stages) {
+        if (renderScheduler != null) {
+            renderScheduler.request(stages);
+        }
     }
 
     /**
-     * Renders the matching groups, if any, in the character pane with additional highlighting
+     * Renders the matching groups, if any, in the character pane with additional highlighting.
+     * After an edit, validates and parses the pattern; otherwise only looks up the group at the caret
      */
     public void renderMatchingGroupsInCharacterPane() {
+        if (!parsed) {
+            parse();
+        }
+        if (groupStructure == null) {
+            return;
+        }
+        // if the cursor is just after either parenthesis of a capturing group, colorize that one
+        GroupStructure.Group group = groupStructure.capturingGroupAt(getCaretPosition() - 1);
+        StyledDocument document = getStyledDocument();
+        if (highlightedGroup != null && highlightedGroup != group) {
+            Renderer.colorize(document, false, new ColorRange(BACKGROUND_COLOR, highlightedGroup.open(), highlightedGroup.close(), false));
+        }
+        if (group == null) {
+            if (highlightedGroup != null) {
+                // drop any group highlight still being calculated for the previous caret position
+                groupWorker.nextGeneration();
+                // restore the match highlights the group highlights were drawn over
+                requestRender(Stage.MATCHES);
+            }
+            highlightedGroup = null;
+            return;
+        }
+        highlightedGroup = group;
+        Renderer.colorize(document, false, new ColorRange(GROUP_COLOR, group.open(), group.close(), false));
+        int groupNumber = group.number();
+        String regex = getText();
+        String target = characterPane.getText();
+        int flags = this.flags;
+        groupWorker.submit(groupWorker.nextGeneration(),
+                () -> Calculator.calculateMatchingGroups(target, groupNumber, regex, flags),
+                list -> Renderer.renderMatchingGroupsHighlightsInCharacterPane(characterPane, list),
+                e -> {
+                    Renderer.resetColor(getStyledDocument());
+                    highlightedGroup = null;
+                    // todo: work on error index
+//                    System.out.printf("Error index:%d%n", e.getIndex());
+//                    ColorRange errorRange = new ColorRange(Color.red, e.getIndex() -1, e.getIndex() + 1);
+//                    Renderer.colorize(getStyledDocument(), true, errorRange);
+
+                    setBorder(RED_BORDER);
+                    System.out.println("PatternPane.renderMatchingGroupsInCharacterPane " + e);
+                });
+    }
+
+    /**
+     * Validates the edited pattern and parses its groups, clearing any highlights of the previous pattern.
+     * Leaves no group structure if the pattern has an error, which is then shown instead
+     */
+    private void parse() {
+        parsed = true;
+        groupStructure = null;
+        highlightedGroup = null;
         String text = getText();
         Renderer.resetColor(getStyledDocument());
-        
+        if (patternSet) {
+            parsePatternSet(text);
+            return;
+        }
+
         // Check for syntax errors first
         try {
-            Pattern.compile(text, flags);
+            PatternCache.shared().compile(text, flags);
             setBorder(WHITE_BORDER);
         } catch (PatternSyntaxException e) {
             setBorder(RED_BORDER);
-            return; // Exit early if there's a syntax error
+            return;
         }
-        
-        try {
-            auxiliaryPane.setLayout(new BoxLayout(auxiliaryPane, BoxLayout.Y_AXIS));
-//            List<String> names = extractNamedGroups(text);
-//            auxiliaryPane.removeAll();
-//            ButtonGroup buttonGroup = new ButtonGroup();
-//            names.forEach(name->addRadioButton(name, buttonGroup, auxiliaryPane));
-//            auxiliaryPane.doLayout();
 
-            Matcher matcher = CAPTURE_GROUP_PATTERN.matcher(text);
-            String replaced = matcher.replaceAll("-$1-");
-
-            // note: gotcha! Syntax like (?i:hot) is not a capture group, even though it captures "hot".
-            // Therefore this is working correctly, don't treat that like a special case
-            // also, a named capture group (?<name>regex) is  a capture group, so we exclude that from the above pattern
-            ColorRange[] colorRanges = Calculator.parseGroupRanges(replaced, GROUP_COLOR);
-            // if the cursor is at the start or end of any range, colorize that one
-            int position = getCaretPosition();
-            int newHighlightedGroupIndex = -1;
-            for (int groupIndex = 0; groupIndex < colorRanges.length; groupIndex++) {
-                ColorRange range = colorRanges[groupIndex];
-                if (range.getStart() == position - 1 || range.getEnd() == position - 1) {
-                    newHighlightedGroupIndex = groupIndex;
-                    Renderer.colorize(getStyledDocument(), true, range);
-                    // group index starts at 1, so add 1 to the list position
-                    int finalGroupIndex = groupIndex;
-                    Runnable runnable = () -> {
-                        try {
-                            Renderer.renderMatchingGroupsHighlightsInCharacterPane(characterPane, finalGroupIndex + 1, getText(), flags);
-                        } catch (PatternSyntaxException e) {
-                            Renderer.resetColor(getStyledDocument());
-                            // todo: work on error index
-//                            System.out.printf("Error index:%d%n", e.getIndex());
-//                            ColorRange errorRange = new ColorRange(Color.red, e.getIndex() -1, e.getIndex() + 1);
-//                            Renderer.colorize(getStyledDocument(), true, errorRange);
-
-                            setBorder(RED_BORDER);
-                            System.out.println("PatternPane.renderMatchingGroupsInCharacterPane " + e + " index:" + e.getIndex());
-                        }
-                    };
-                    SwingUtilities.invokeLater(runnable);
-                    break;
-                }
-            }
+        auxiliaryPane.setLayout(new BoxLayout(auxiliaryPane, BoxLayout.Y_AXIS));
+//        List<String> names = extractNamedGroups(text);
+//        auxiliaryPane.removeAll();
+//        ButtonGroup buttonGroup = new ButtonGroup();
+//        names.forEach(name->addRadioButton(name, buttonGroup, auxiliaryPane));
+//        auxiliaryPane.doLayout();
 
-            if (newHighlightedGroupIndex == -1) {
-                if (lastHighlightedGroupIndex != -1 && characterPaneRenderer != null) {
-                    SwingUtilities.invokeLater(characterPaneRenderer);
-                }
-                lastHighlightedGroupIndex = -1;
-            } else {
-                lastHighlightedGroupIndex = newHighlightedGroupIndex;
-            }
+        // note: gotcha! Syntax like (?i:hot) is not a capture group, even though it captures "hot".
+        // Therefore this is working correctly, don't treat that like a special case
+        // also, a named capture group (?<name>regex) is  a capture group, numbered along with the others
+        try {
+            groupStructure = GroupStructure.parse(text, flags);
         } catch (UnmatchedLeftParenException e1) {
             ColorRange range = new ColorRange(Color.red, e1.getPosition(), e1.getPosition()+1);
             Renderer.colorize(getStyledDocument(), true, range);
         }
     }
 
-    public void setCharacterPaneRenderer(Runnable characterPaneRenderer) {
-        this.characterPaneRenderer = characterPaneRenderer;
+    /**
+     * Validates each line of a pattern set, and colors each line like the highlights of its matches. A set has no
+     * group highlights for the caret
+     */
+    private void parsePatternSet(String text) {
+        try {
+            List<PatternSet.Rule> rules = PatternSet.compile(text, flags).getRules();
+            setBorder(WHITE_BORDER);
+            ColorRange[] ranges = new ColorRange[rules.size()];
+            for (int rule = 0; rule < rules.size(); rule++) {
+                PatternSet.Rule line = rules.get(rule);
+                ranges[rule] = new ColorRange(PatternSet.colorOf(rule), line.offset(), line.offset() + line.regex().length() - 1);
+            }
+            Renderer.colorize(getStyledDocument(), false, ranges);
+        } catch (PatternSyntaxException e) {
+            setBorder(RED_BORDER);
+        }
+    }
+
+    /**
+     * Sets the scheduler this pane's edits and caret moves are rendered by. It renders the {@link Stage#PATTERN}
+     * stage by calling {@link #renderMatchingGroupsInCharacterPane()}
+     */
+    public void setRenderScheduler(RenderScheduler renderScheduler) {
+        this.renderScheduler = renderScheduler;
     }
 
     private void addRadioButton(final String name, ButtonGroup buttonGroup, JComponent parent) {
@@ -262,8 +290,7 @@ public class PatternPane extends JTextPane {
     public static List<String> extractNamedGroups(String text) {
         List<String> list = new ArrayList<>();
         try {
-            Pattern pattern = Pattern.compile("\\?<(.+?)>");
-            Matcher matcher = pattern.matcher(text);
+            Matcher matcher = NAMED_GROUP_PATTERN.matcher(text);
             while(matcher.find()) {
                 list.add(matcher.group(1));
             }
@@ -275,8 +302,20 @@ public class PatternPane extends JTextPane {
         return list;
     }
 
+    /**
+     * @param patternSet true to treat each line as a pattern of its own, see {@link PatternSet}
+     */
+    public void setPatternSet(boolean patternSet) {
+        if (this.patternSet != patternSet) {
+            this.patternSet = patternSet;
+            parsed = false;
+            requestRender(Stage.PATTERN);
+        }
+    }
+
     public void setFlags(int flags) {
         this.flags = flags;
-        renderMatchingGroupsInCharacterPane();
+        parsed = false;
+        requestRender(Stage.PATTERN);
     }
 }
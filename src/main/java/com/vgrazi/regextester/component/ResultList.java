@@ -0,0 +1,50 @@
+package com.vgrazi.regextester.component;
+
+import com.vgrazi.regextester.action.PipelineMetrics;
+import com.vgrazi.regextester.action.ResultRows;
+
+import javax.swing.*;
+import java.awt.Cursor;
+
+import static com.vgrazi.regextester.component.Constants.DEFAULT_PANE_FONT;
+
+/**
+ * Shows the find and split listings in the auxiliary pane's place. The rows are built by the {@link ResultRows}
+ * only as they scroll into view, and the cell size is taken from a sample of them rather than from measuring every
+ * row, so a listing of a million rows shows as fast as one of ten
+ */
+public class ResultList extends JList<String> {
+    // how many rows are measured to size the cells
+    private static final int SAMPLE_ROWS = 1_000;
+
+    public ResultList() {
+        setFont(DEFAULT_PANE_FONT);
+        setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+        setRows(ResultRows.EMPTY);
+    }
+
+    public void setRows(ResultRows rows) {
+        long start = System.nanoTime();
+        String widest = " ";
+        for (int row = 0; row < Math.min(rows.size(), SAMPLE_ROWS); row++) {
+            String text = rows.get(row);
+            if (text.length() > widest.length()) {
+                widest = text;
+            }
+        }
+        // set before the model, so that the new model is never measured row by row
+        setPrototypeCellValue(widest);
+        setModel(new AbstractListModel<>() {
+            @Override
+            public int getSize() {
+                return rows.size();
+            }
+
+            @Override
+            public String getElementAt(int index) {
+                return rows.get(index);
+            }
+        });
+        PipelineMetrics.shared().auxiliaryUpdated(System.nanoTime() - start);
+    }
+}
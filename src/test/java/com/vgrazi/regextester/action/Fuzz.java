@@ -0,0 +1,37 @@
+package com.vgrazi.regextester.action;
+
+import java.util.Random;
+
+/**
+ * The random inputs the seeded fuzz tests share, and how they show them in a failure message
+ */
+final class Fuzz {
+    private Fuzz() {
+    }
+
+    /**
+     * @return a text of the length, each character picked at random from the alphabet. Repeating a character in the
+     * alphabet makes it more likely
+     */
+    static String text(Random random, String alphabet, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return the element picked at random
+     */
+    static String pick(Random random, String[] choices) {
+        return choices[random.nextInt(choices.length)];
+    }
+
+    /**
+     * @return the text with its line feeds, carriage returns and tabs escaped, to be read in a failure message
+     */
+    static String visible(String text) {
+        return text.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
+    }
+}
@@ -0,0 +1,82 @@
+package com.vgrazi.regextester.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the group found at each offset of a regex, for the syntax whose parentheses are not groups, and for each
+ * kind of group. Each expectation has a character per offset of the regex: the number of the capturing group with
+ * a parenthesis there, - for the parenthesis of any other group, or . for none
+ */
+class GroupStructureTest {
+    @Test
+    void findsTheGroupAtEachOffset() {
+        String[][] table = {
+                // regex, group at each offset
+                {"(a)(b)", "1.12.2"},
+                {"\\(a\\)(b)", ".....1.1"},
+                {"\\\\(a)", "..1.1"},
+                {"a\\[(b)]", "...1.1."},
+                {"[(](a)", "...1.1"},
+                {"[^)](a)", "....1.1"},
+                {"[[a](](a)", "......1.1"},
+                {"[]()](a)", ".....1.1"},
+                {"[^]()](a)", "......1.1"},
+                {"[a&&[^)]](b)", ".........1.1"},
+                {"[\\]()](a)", "......1.1"},
+                {"\\Q(a)\\E(b)", ".......1.1"},
+                {"\\Q(a)", "....."},
+                {"(?<name>a)(b)", "1........12.2"},
+                {"(?:a)(b)", "-...-1.1"},
+                {"(?=a)(?!b)(?<=c)(?<!d)(e)", "-...--...--....--....-1.1"},
+                {"(?i)(a)(?-i:b)(c)", "-..-1.1-.....-2.2"},
+                {"(?>a)((b)|c)", "-...-12.2..1"},
+                {"((?<x>a)(?:(b)))", "12.....2-..3.3-1"},
+        };
+        for (String[] row : table) {
+            String regex = row[0];
+            GroupStructure structure = GroupStructure.parse(regex, 0);
+            assertEquals(row[1], groupsAt(structure, regex), regex);
+            assertEquals(Pattern.compile(regex).matcher("").groupCount(), structure.getCapturingGroups().size(), regex);
+        }
+    }
+
+    @Test
+    void tellsTheKindsOfGroupApart() {
+        GroupStructure structure = GroupStructure.parse("(a)(?<name>b)(?:c)(?i:d)(?i)(?=e)(?!f)(?<=g)(?<!h)(?>i)", 0);
+        assertEquals(List.of(GroupStructure.Kind.CAPTURING, GroupStructure.Kind.NAMED, GroupStructure.Kind.NON_CAPTURING,
+                        GroupStructure.Kind.NON_CAPTURING, GroupStructure.Kind.FLAGS, GroupStructure.Kind.LOOKAROUND,
+                        GroupStructure.Kind.LOOKAROUND, GroupStructure.Kind.LOOKAROUND, GroupStructure.Kind.LOOKAROUND,
+                        GroupStructure.Kind.ATOMIC),
+                structure.getGroups().stream().map(GroupStructure.Group::kind).toList());
+        assertEquals("name", structure.getCapturingGroups().get(1).name());
+        assertEquals(2, structure.getCapturingGroups().get(1).number());
+    }
+
+    @Test
+    void skipsCommentsAndLiteralPatterns() {
+        String regex = "# (\n(a)";
+        assertEquals("....1.1", groupsAt(GroupStructure.parse(regex, Pattern.COMMENTS), regex));
+        assertEquals(".......", groupsAt(GroupStructure.parse(regex, Pattern.LITERAL), regex));
+    }
+
+    @Test
+    void reportsTheUnmatchedParenthesis() {
+        assertEquals(3, assertThrows(UnmatchedLeftParenException.class, () -> GroupStructure.parse("(a))", 0)).getPosition());
+        assertEquals(0, assertThrows(UnmatchedLeftParenException.class, () -> GroupStructure.parse("((a)", 0)).getPosition());
+    }
+
+    private static String groupsAt(GroupStructure structure, String regex) {
+        StringBuilder groups = new StringBuilder();
+        for (int offset = 0; offset < regex.length(); offset++) {
+            GroupStructure.Group group = structure.groupAt(offset);
+            groups.append(group == null ? '.' : group.kind().isCapturing() ? Character.forDigit(group.number(), 10) : '-');
+        }
+        return groups.toString();
+    }
+}
@@ -0,0 +1,150 @@
+package com.vgrazi.regextester.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the linear engine against java.util.regex over random patterns and texts. Every match must be the same;
+ * so must the groups, for patterns with no group inside a repetition, where java.util.regex can leave the groups of
+ * an iteration that failed set
+ */
+class LinearMatcherTest {
+    private static final String[] ATOMS = {"a", "b", ".", "[ab]", "\\w", "\\s", "\\b", "^", "$", ""};
+    private static final String[] QUANTIFIERS = {"*", "+", "?", "{0,2}", "{2}", "{1,3}", "*?", "+?", "??", "{1,3}?"};
+    private static final String ALPHABET = "ab \n";
+
+    @Test
+    void findsWhatJavaUtilRegexFinds() {
+        Random random = new Random(20240601);
+        for (int run = 0; run < 10_000; run++) {
+            boolean[] repeatedGroup = new boolean[1];
+            String regex = alternation(random, 0, false, repeatedGroup);
+            int flags = random.nextInt(4) == 0 ? Pattern.MULTILINE : 0;
+            String text = Fuzz.text(random, ALPHABET, random.nextInt(10));
+            Pattern pattern;
+            LinearPattern linear;
+            try {
+                pattern = Pattern.compile(regex, flags);
+                linear = LinearPattern.compile(regex, flags);
+            } catch (PatternSyntaxException e) {
+                // such as a group name used twice
+                continue;
+            }
+            String expected = matches(pattern.matcher(text), !repeatedGroup[0]);
+            String actual = matches(linear.matcher(text), !repeatedGroup[0]);
+            assertEquals(expected, actual, () -> String.format("%s (flags %d) over \"%s\"", regex, flags, Fuzz.visible(text)));
+        }
+    }
+
+    @Test
+    void matchesAndLooksAtWhatJavaUtilRegexDoes() {
+        Random random = new Random(20240602);
+        for (int run = 0; run < 5_000; run++) {
+            String regex = alternation(random, 0, false, new boolean[1]);
+            String text = Fuzz.text(random, ALPHABET, random.nextInt(8));
+            Matcher matcher;
+            LinearPattern linear;
+            try {
+                matcher = Pattern.compile(regex).matcher(text);
+                linear = LinearPattern.compile(regex, 0);
+            } catch (PatternSyntaxException e) {
+                continue;
+            }
+            String description = String.format("%s over \"%s\"", regex, Fuzz.visible(text));
+            assertEquals(matcher.matches(), linear.matcher(text).matches(), description);
+            assertEquals(matcher.lookingAt() ? matcher.end() : -1, lookingAtEnd(linear.matcher(text)), description);
+        }
+    }
+
+    @Test
+    void leavesALoopOnlyForTheThreadWhoseIterationMatchedNothing() {
+        // .? taking the space reaches the loop at 2 first, where an empty iteration ends it and fails; .? taking
+        // nothing goes round it from 1, and its second iteration starts at 2 too
+        for (String regex : new String[]{"..?(?:\\b.?){2}b", ".(?:.|)(?:\\b.?){2}b", "..?(?:\\b(?:|.)){2}b"}) {
+            assertEquals(matches(Pattern.compile(regex).matcher("a ab"), true), matches(LinearPattern.compile(regex, 0).matcher("a ab"), true), regex);
+        }
+    }
+
+    @Test
+    void refusesPatternsWhoseThreadsWouldNotFitInMemory() {
+        // each of the 3,000 copies of the nullable loop has a progress slot, so that the slots grow with the square
+        assertThrows(UnsupportedPatternException.class, () -> LinearPattern.compile("(?:(?:a?)*){3000}", 0));
+    }
+
+    private static int lookingAtEnd(LinearMatcher matcher) {
+        return matcher.lookingAt() ? matcher.end() : -1;
+    }
+
+    /**
+     * @return the offsets of every match, and of its groups if asked for
+     */
+    private static String matches(Matcher matcher, boolean groups) {
+        List<String> matches = new ArrayList<>();
+        while (matcher.find()) {
+            StringBuilder match = new StringBuilder();
+            for (int group = 0; group <= (groups ? matcher.groupCount() : 0); group++) {
+                match.append(matcher.start(group)).append(',').append(matcher.end(group)).append(' ');
+            }
+            matches.add(match.toString().trim());
+        }
+        return matches.toString();
+    }
+
+    private static String matches(LinearMatcher matcher, boolean groups) {
+        List<String> matches = new ArrayList<>();
+        while (matcher.find()) {
+            StringBuilder match = new StringBuilder();
+            for (int group = 0; group <= (groups ? matcher.groupCount() : 0); group++) {
+                match.append(matcher.start(group)).append(',').append(matcher.end(group)).append(' ');
+            }
+            matches.add(match.toString().trim());
+        }
+        return matches.toString();
+    }
+
+    /**
+     * @param repeated      whether the alternation is inside a repetition
+     * @param repeatedGroup set to true if a capturing group is generated inside a repetition
+     */
+    private static String alternation(Random random, int depth, boolean repeated, boolean[] repeatedGroup) {
+        StringBuilder regex = new StringBuilder(sequence(random, depth, repeated, repeatedGroup));
+        while (random.nextInt(4) == 0) {
+            regex.append('|').append(sequence(random, depth, repeated, repeatedGroup));
+        }
+        return regex.toString();
+    }
+
+    private static String sequence(Random random, int depth, boolean repeated, boolean[] repeatedGroup) {
+        StringBuilder regex = new StringBuilder();
+        for (int items = 1 + random.nextInt(3); items > 0; items--) {
+            String quantifier = random.nextInt(3) == 0 ? Fuzz.pick(random, QUANTIFIERS) : "";
+            int kind = random.nextInt(depth < 2 ? 4 : 1);
+            if (kind == 0) {
+                String atom = Fuzz.pick(random, ATOMS);
+                // java.util.regex does not allow a quantifier on nothing, or on an anchor or boundary
+                regex.append(atom).append(atom.length() == 1 && atom.charAt(0) != '^' && atom.charAt(0) != '$'
+                        || atom.startsWith("[") || atom.equals("\\w") || atom.equals("\\s") ? quantifier : "");
+                continue;
+            }
+            boolean inside = repeated || !quantifier.isEmpty();
+            String body = alternation(random, depth + 1, inside, repeatedGroup);
+            if (kind == 1) {
+                regex.append("(?:").append(body).append(')');
+            } else {
+                repeatedGroup[0] |= inside;
+                regex.append(kind == 2 ? "(" : "(?<g" + depth + items + random.nextInt(100) + ">").append(body).append(')');
+            }
+            regex.append(quantifier);
+        }
+        return regex.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package com.vgrazi.regextester.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the incremental rescan against a full find() loop, after random edits of a random text, one at a time and
+ * merged as the document events between two renders are
+ */
+class MatchSnapshotTest {
+    private static final String[] PATTERNS = {"a", "a+", "ab|b", "x*", "\\bab\\b", "\\b", "(?<=a)b", "a(?=b)", "(?<!a)b",
+            "(a)(b)?", "(\\w)\\1", "a.{0,3}b", "(?s).{2}", "[ab]{2,}?", "1+|a*", "\\s+", "b$", "^a", "\\Aab", "ab\\z",
+            "(?:a|ab)(?:c|bcd)?", "a[^x]*x", "(?<w>\\w+) \\k<w>"};
+    private static final String ALPHABET = "aabbx 1\n";
+
+    @Test
+    void rescanFindsWhatAFullScanFinds() {
+        Random random = new Random(20240527);
+        for (int run = 0; run < 300; run++) {
+            String regex = Fuzz.pick(random, PATTERNS);
+            Pattern pattern = Pattern.compile(regex, random.nextBoolean() ? Pattern.MULTILINE : 0);
+            String text = Fuzz.text(random, ALPHABET, random.nextInt(60));
+            MatchSnapshot.scan(pattern, text);
+            for (int edit = 0; edit < 30; edit++) {
+                String previousText = text;
+                TextEdit textEdit = null;
+                // up to three document events merged into one edit
+                for (int event = random.nextInt(3); event >= 0; event--) {
+                    int offset = random.nextInt(text.length() + 1);
+                    int removed = random.nextInt(Math.min(4, text.length() - offset) + 1);
+                    String inserted = Fuzz.text(random, ALPHABET, random.nextInt(4));
+                    text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+                    textEdit = textEdit == null ? TextEdit.replace(offset, removed, inserted.length())
+                            : textEdit.then(offset, removed, inserted.length());
+                }
+                assertTrue(textEdit.appliesTo(previousText, text), textEdit + " from " + previousText + " to " + text);
+                MatchSnapshot snapshot = MatchSnapshot.rescan(pattern, text, previousText, textEdit);
+                int[] expected = ParallelFind.findSequential(pattern, text, null);
+                assertArrayEquals(expected, offsets(snapshot), String.format("%s after %s, from \"%s\" to \"%s\"",
+                        pattern, textEdit, Fuzz.visible(previousText), Fuzz.visible(text)));
+            }
+        }
+    }
+
+    /**
+     * @return the snapshot's offsets, packed as {@link ParallelFind} packs them
+     */
+    private static int[] offsets(MatchSnapshot snapshot) {
+        int stride = (snapshot.getGroupCount() + 1) * 2;
+        int[] offsets = new int[snapshot.getMatchCount() * stride];
+        for (int match = 0; match < snapshot.getMatchCount(); match++) {
+            for (int group = 0; group <= snapshot.getGroupCount(); group++) {
+                offsets[match * stride + group * 2] = snapshot.start(match, group);
+                offsets[match * stride + group * 2 + 1] = snapshot.end(match, group);
+            }
+        }
+        return offsets;
+    }
+}
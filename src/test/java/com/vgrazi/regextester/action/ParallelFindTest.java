@@ -0,0 +1,63 @@
+package com.vgrazi.regextester.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the parallel find against the sequential find() loop, over random texts cut into chunks of a few
+ * characters, so that nearly every match starts, ends or runs across a chunk boundary
+ */
+class ParallelFindTest {
+    private static final String[] PATTERNS = {"a", "ab", "a*", "a+b?", "\\w+", "\\s+", "[\\t-\\r]+", "[\\a-\\r]+",
+            "[^a]+", "[^\\n]+", "[ab\\n]+", "a.b", "(?s)a.b", "a\\Rb", "^a+$", "(?m)^a+$", "(a)|(b)", "(a+)(\\n?)(b*)",
+            "b\\z", "(?:ab|a)+", "\\ba\\w*\\b", "a{2,3}", "\\Qa\nb\\E", "\t", "[\\x00-\\x7f]{3}", "\\p{Cntrl}+", ""};
+    private static final String ALPHABET = "aab \n\t\r";
+
+    @Test
+    void findsWhatTheSequentialLoopFinds() {
+        Random random = new Random(20240518);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int run = 0; run < 3_000; run++) {
+                String regex = Fuzz.pick(random, PATTERNS);
+                int flags = random.nextBoolean() ? Pattern.DOTALL : 0;
+                Pattern pattern = Pattern.compile(regex, flags);
+                String text = Fuzz.text(random, ALPHABET, random.nextInt(120));
+                int chunkSize = 1 + random.nextInt(8);
+                int[] expected = ParallelFind.findSequential(pattern, text, null);
+                // the results are only exact for matches up to the overlap in length
+                int overlap = Math.max(1 + random.nextInt(8), longest(expected, (pattern.matcher("").groupCount() + 1) * 2));
+                int[] actual = ParallelFind.find(pattern, text, pool, chunkSize, overlap, null);
+                assertArrayEquals(expected, actual, () -> String.format("%s (flags %d) over %s, chunks of %d, overlap %d",
+                        regex, flags, Fuzz.visible(text), chunkSize, overlap));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void classesThatMatchALineFeedAreNotLineBounded() {
+        for (String regex : new String[]{"[\\t-\\r]", "[\\a-\\r]", "[\u0001-\u007f]", "[^a]", "[a[^b]]", "[\\s]", "[\\x0a]", "\\s", "(?s)."}) {
+            assertFalse(ParallelFind.isLineBounded(regex, 0), regex);
+        }
+        for (String regex : new String[]{"[a-z]+", "[^\\n]+", "[\\t]", "[\\x0b-\\r]", "a.b", "\\Q\\s\\E", "[a&&[^\\n]]"}) {
+            assertTrue(ParallelFind.isLineBounded(regex, 0), regex);
+        }
+    }
+
+    private static int longest(int[] offsets, int stride) {
+        int longest = 0;
+        for (int match = 0; match < offsets.length; match += stride) {
+            longest = Math.max(longest, offsets[match + 1] - offsets[match]);
+        }
+        return longest;
+    }
+}
@@ -0,0 +1,80 @@
+package com.vgrazi.regextester.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks that searching for the required literal first finds exactly what the plain find() loop finds, groups and
+ * all, for patterns whose literal sits next to what looks around it, and under the flags that change what it matches
+ */
+class PrefilteredFinderTest {
+    private static final String[] PATTERNS = {"ab", "ab+c", "a+b", "x?ab", "(?<=a)b", "(?<=b)ab", "(?<!a)ab", "ab(?=a)",
+            "ab(?!b)", "\\bab", "ab\\b", "\\Bab\\B", "^ab", "ab$", "^a.b$", "\\Aab", "ab\\z", "ab\\Z", "(ab|ba)c",
+            "(?:a|bb)ab", "c(a|b)", "(x)?ab", "(a)?(b)?c", "a(b)?c", "a.{0,3}c", "a.*c", "[ab]{2}c", "(?i)ab",
+            "(?i:a)b", "a(?i)b", "(?-i)ab", "\\w+ab", "ab\\s+\\w", "(a)\\1b", "(?<n>a)b\\k<n>", "a\\.b", "\\Qa.b\\E",
+            "a\\Q\\E?b", "\\u0061b", "(?>a|ab)c", "a{2}b", "a{1,2}?b", "(?s)a.b", "\\x{61}b", "ki", "a?ik", "(?<=k)i"};
+    private static final int[] FLAGS = {0, Pattern.MULTILINE, Pattern.CASE_INSENSITIVE,
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE, Pattern.MULTILINE | Pattern.CASE_INSENSITIVE, Pattern.DOTALL};
+    // k and the Kelvin sign, and i and the dotless i, are the same letter ignoring case only with UNICODE_CASE
+    private static final String ALPHABET = "aabbAB c.\n\rKk\u212AiI\u0131";
+
+    @Test
+    void findsWhatThePlainFindLoopFinds() {
+        Random random = new Random(20240612);
+        for (int run = 0; run < 20_000; run++) {
+            String regex = Fuzz.pick(random, PATTERNS);
+            int flags = FLAGS[random.nextInt(FLAGS.length)];
+            Pattern pattern = Pattern.compile(regex, flags);
+            String text = Fuzz.text(random, ALPHABET, random.nextInt(24));
+            RequiredLiteral literal = RequiredLiteral.analyze(regex, flags);
+            Matcher matcher = pattern.matcher(text);
+            PrefilteredFinder finder = new PrefilteredFinder(matcher, text, literal);
+            List<String> actual = new ArrayList<>();
+            for (boolean found = finder.find(0); found; found = finder.findNext()) {
+                actual.add(match(matcher));
+            }
+            assertEquals(plainFindLoop(pattern.matcher(text)), actual,
+                    () -> String.format("%s (flags %d, %s) over \"%s\"", regex, flags, literal, Fuzz.visible(text)));
+        }
+    }
+
+    @Test
+    void findsALiteralInTheTopLevelSequenceOnly() {
+        for (String regex : new String[]{"ab", "(?<=a)b", "\\bab", "^ab$", "(x)?ab", "a(b)?c", "(?i)ab", "a\\.b"}) {
+            assertNotNull(RequiredLiteral.analyze(regex, 0), regex);
+        }
+        for (String regex : new String[]{"ab|c", "(?:ab)?", "a?b?", "(?x)a b", "\\Gab", "[ab]", ""}) {
+            assertNull(RequiredLiteral.analyze(regex, 0), regex);
+        }
+        assertNull(RequiredLiteral.analyze("ab", Pattern.COMMENTS));
+        assertEquals("a.b", RequiredLiteral.analyze("a.b", Pattern.LITERAL).getLiteral());
+    }
+
+    private static List<String> plainFindLoop(Matcher matcher) {
+        List<String> matches = new ArrayList<>();
+        while (matcher.find()) {
+            matches.add(match(matcher));
+        }
+        return matches;
+    }
+
+    /**
+     * @return the offsets of the match and of each of its groups
+     */
+    private static String match(Matcher matcher) {
+        StringBuilder match = new StringBuilder();
+        for (int group = 0; group <= matcher.groupCount(); group++) {
+            match.append(matcher.start(group)).append(',').append(matcher.end(group)).append(' ');
+        }
+        return match.toString().trim();
+    }
+}
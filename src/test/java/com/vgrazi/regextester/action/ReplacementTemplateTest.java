@@ -0,0 +1,65 @@
+package com.vgrazi.regextester.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the parsed replacement against Matcher.replaceAll and replaceFirst, for the replaced text and for the
+ * message of an invalid replacement
+ */
+class ReplacementTemplateTest {
+    private static final String[] PATTERNS = {"a", "(a)", "(a)(b)?", "(?<name>a)(?<n2>b)?", "(a)|(b)",
+            "(a)(b)?(c)?(d)?(e)?(f)?(g)?(h)?(i)?(j)?(k)?", "(a)(b)?(c)?(d)?(e)?(f)?(g)?(h)?(i)?(j)?(k)?(l)?"};
+    private static final String REPLACEMENT_ALPHABET = "$$$\\\\{}x0129name";
+    private static final String ALPHABET = "aab c";
+
+    @Test
+    void replacesAsMatcherDoes() throws IOException {
+        for (String[] test : new String[][]{
+                // pattern, replacement
+                {"(a)", "$12"}, {"(a)(b)?(c)?(d)?(e)?(f)?(g)?(h)?(i)?(j)?(k)?", "$12"}, {"(a)(b)?(c)?(d)?(e)?(f)?(g)?(h)?(i)?(j)?(k)?(l)?", "$12"},
+                {"a", "$1"}, {"(?<name>a)", "[${name}]"}, {"(?<name>a)", "${nam}"}, {"(?<name>a)", "${}"}, {"(?<name>a)", "${name"},
+                {"(?<name>a)", "${1a}"}, {"(a)", "x\\"}, {"(a)", "x$"}, {"(a)", "$a"}, {"(a)", "$-"}, {"(a)", "\\$1\\\\"},
+                {"(a)|(b)", "<$1|$2>"}, {"(a)(b)?", "$2$1$0"}}) {
+            assertSameAsMatcher(Pattern.compile(test[0]), test[1], "aab cab");
+        }
+    }
+
+    @Test
+    void replacesRandomReplacementsAsMatcherDoes() throws IOException {
+        Random random = new Random(20240620);
+        for (int run = 0; run < 20_000; run++) {
+            Pattern pattern = Pattern.compile(Fuzz.pick(random, PATTERNS));
+            String replacement = Fuzz.text(random, REPLACEMENT_ALPHABET, random.nextInt(8));
+            // Matcher only reads the replacement when there is a match
+            String text = "a" + Fuzz.text(random, ALPHABET, random.nextInt(10));
+            assertSameAsMatcher(pattern, replacement, text);
+        }
+    }
+
+    private static void assertSameAsMatcher(Pattern pattern, String replacement, String text) throws IOException {
+        for (boolean all : new boolean[]{true, false}) {
+            String expected;
+            try {
+                expected = all ? pattern.matcher(text).replaceAll(replacement) : pattern.matcher(text).replaceFirst(replacement);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                expected = "invalid: " + e.getMessage();
+            }
+            String actual;
+            try {
+                StringBuilder out = new StringBuilder();
+                ReplacementTemplate.compile(replacement, pattern).replace(pattern.matcher(text), text, all, out, null);
+                actual = out.toString();
+            } catch (ReplacementSyntaxException e) {
+                actual = "invalid: " + e.getDescription();
+            }
+            assertEquals(expected, actual, String.format("%s replacing %s with \"%s\" over \"%s\"",
+                    all ? "replaceAll" : "replaceFirst", pattern, replacement, text));
+        }
+    }
+}